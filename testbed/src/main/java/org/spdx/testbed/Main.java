@@ -5,8 +5,16 @@
 package org.spdx.testbed;
 
 import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
+import javax.annotation.Nullable;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.DefaultParser;
 import org.apache.commons.cli.HelpFormatter;
@@ -14,8 +22,10 @@ import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 import org.spdx.library.InvalidSPDXAnalysisException;
+import org.spdx.testbed.util.ReferenceDocumentCache;
 import org.spdx.testbed.util.TestCaseFinder;
 import org.spdx.testbed.util.TestCaseSelector;
+import org.spdx.testbed.util.TestManifest;
 import org.spdx.tools.InvalidFileNameException;
 
 /**
@@ -23,92 +33,328 @@ import org.spdx.tools.InvalidFileNameException;
  */
 public class Main {
 
+  // Options holding paths, which the client of a daemon makes absolute
+  private static final Set<String> PATH_OPTIONS = Set.of("f", "r", "d", "b", "o");
+
   /**
    * Main entrypoint method.
    */
   public static void main(String[] args) throws IOException, InvalidSPDXAnalysisException,
       InvalidFileNameException {
-    var options = new Options();
-    options.addOption(Option.builder("t").longOpt("test_cases")
-        .desc("For possible values see the readme. At least one of -c or -t has to be specified")
-        .hasArgs().argName("TEST_CASES")
-        .build());
-    options.addOption(Option.builder("c").longOpt("test_categories")
-        .desc("For possible values see the readme. At least one of -c or -t has to be specified")
-        .hasArg().argName("TEST_CATEGORIES")
-        .build());
-    options.addOption(Option.builder("f").longOpt("input_files")
-        .desc("The files to be processed").hasArgs().argName("FILES").required().build());
-    options.addOption(Option.builder("h").longOpt("help").desc("Display usage").required(false)
-        .build());
-
-    var parser = new DefaultParser();
+    var options = createOptions();
     CommandLine cmd;
-
     try {
-      cmd = parser.parse(options, args);
+      cmd = new DefaultParser().parse(options, args);
     } catch (ParseException e) {
       System.err.println(e.getMessage());
 
-      printUsage(options);
+      printUsage(options, System.out);
       System.exit(1);
       return;
     }
 
+    int exitCode;
+    if (cmd.hasOption("S")) {
+      exitCode = serve(cmd.getOptionValue("S"), options);
+    } else if (cmd.hasOption("p")) {
+      exitCode = submit(cmd, options);
+    } else {
+      exitCode = run(cmd, options, System.out, System.err, new TestCaseFinder(),
+          TestOptions.DEFAULT);
+    }
+    if (exitCode != 0) {
+      System.exit(exitCode);
+    }
+  }
+
+  // The daemon keeps the process running after this returns
+  private static int serve(String portValue, Options options) throws IOException {
+    var port = parsePort(portValue, options, System.out, System.err);
+    if (port.isEmpty()) {
+      return 1;
+    }
+    var daemon = TestDaemon.start(port.get());
+    System.out.println("Listening on port " + daemon.getPort());
+    return 0;
+  }
+
+  private static int submit(CommandLine cmd, Options options) throws IOException {
+    var port = parsePort(cmd.getOptionValue("p"), options, System.out, System.err);
+    if (port.isEmpty()) {
+      return 1;
+    }
+    return TestDaemon.submit(port.get(), forwardedArguments(cmd), System.out);
+  }
+
+  /**
+   * Runs the tests requested by the provided arguments like {@link #main(String[])}, but prints to
+   * the provided streams, finds the test cases via the provided finder, and returns the exit code
+   * instead of exiting. The options of the arguments are added to the provided base options. Used
+   * by the {@link TestDaemon} for each request.
+   */
+  static int run(String[] args, PrintStream out, PrintStream err, TestCaseFinder testCaseFinder,
+      TestOptions baseOptions)
+      throws IOException, InvalidSPDXAnalysisException, InvalidFileNameException {
+    var options = createOptions();
+    CommandLine cmd;
+    try {
+      cmd = new DefaultParser().parse(options, args);
+    } catch (ParseException e) {
+      err.println(e.getMessage());
+
+      printUsage(options, out);
+      return 1;
+    }
+    if (cmd.hasOption("S") || cmd.hasOption("p")) {
+      err.println("The options -S and -p can't be passed to a daemon.");
+      return 1;
+    }
+    return run(cmd, options, out, err, testCaseFinder, baseOptions);
+  }
+
+  private static int run(CommandLine cmd, Options options, PrintStream out, PrintStream err,
+      TestCaseFinder testCaseFinder, TestOptions baseOptions)
+      throws IOException, InvalidSPDXAnalysisException, InvalidFileNameException {
     if (cmd.hasOption("h")) {
-      printUsage(options);
-      System.exit(0);
+      printUsage(options, out);
+      return 0;
     }
 
-    if (!cmd.hasOption("t") && !cmd.hasOption("c")) {
-      printUsage(options);
-      System.exit(1);
+    var batch = cmd.hasOption("b");
+    if (!batch && ((!cmd.hasOption("t") && !cmd.hasOption("c")) || !cmd.hasOption("f"))) {
+      printUsage(options, out);
+      return 1;
     }
 
-    var testCaseSelector = new TestCaseSelector();
+    TestPipeline pipeline;
+    try {
+      pipeline = createPipeline(cmd, out, createTestOptions(cmd, baseOptions));
+    } catch (IllegalArgumentException ex) {
+      err.println(ex.getMessage());
+      printUsage(options, out);
+      return 1;
+    }
+
+    if (batch) {
+      var unsuccessfulTests = runBatch(pipeline, Path.of(cmd.getOptionValue("b")),
+          cmd.getOptionValue("o"), testCaseFinder);
+      if (unsuccessfulTests > 0) {
+        err.println(unsuccessfulTests + " tests of the batch failed or found differences.");
+        return 1;
+      }
+      return 0;
+    }
+
+    if (cmd.hasOption("t")) {
+      reportUnknownTestCaseNames(cmd.getOptionValues("t"), out, testCaseFinder);
+    }
+    var testCaseSelector = new TestCaseSelector(testCaseFinder);
     List<TestCase> selectedTestCases;
     try {
       selectedTestCases = testCaseSelector.selectTestCases(cmd.getOptionValues("t"),
           cmd.getOptionValues("c"));
     } catch (IllegalArgumentException ex) {
-      System.err.println(ex.getMessage());
-      System.err.println("Use the -h option to see general usage instructions");
-      System.exit(1);
-      return;
+      err.println(ex.getMessage());
+      err.println("Use the -h option to see general usage instructions");
+      return 1;
     }
 
     var files = cmd.getOptionValues("f");
 
     if (selectedTestCases.size() == 0) {
-      var allTestCaseNames = new TestCaseFinder().findAllTestCases().stream()
+      var allTestCaseNames = testCaseFinder.findAllTestCases().stream()
           .map(TestCase::getName)
           .sorted()
           .collect(Collectors.toList());
-      System.err.println(
+      err.println(
           "No test cases found that fit the input parameters! Available test cases are listed "
               + "below. Please check out the readme for further information.");
-      allTestCaseNames.forEach(System.err::println);
-      System.exit(1);
+      allTestCaseNames.forEach(err::println);
+      return 1;
     } else if (selectedTestCases.size() != files.length) {
-      System.err.println(
+      err.println(
           "The number of input files does not match the number of selected test cases. "
               + files.length + " input files were provided, but " + selectedTestCases.size()
               + " test cases were selected:");
-      selectedTestCases.forEach(innerTestCase -> System.err.println(innerTestCase.getName()));
-      System.exit(1);
+      selectedTestCases.forEach(innerTestCase -> err.println(innerTestCase.getName()));
+      return 1;
     }
 
     // TODO: do something with the test results
-    for (int i = 0; i < selectedTestCases.size(); i++) {
-      var inputFile = files[i];
-      selectedTestCases.get(i).test(inputFile);
+    pipeline.run(selectedTestCases, List.of(files));
+    return 0;
+  }
+
+  private static Options createOptions() {
+    var options = new Options();
+    options.addOption(Option.builder("t").longOpt("test_cases")
+        .desc("For possible values see the readme. At least one of -c or -t has to be specified")
+        .hasArgs().argName("TEST_CASES")
+        .build());
+    options.addOption(Option.builder("c").longOpt("test_categories")
+        .desc("For possible values see the readme. At least one of -c or -t has to be specified")
+        .hasArg().argName("TEST_CATEGORIES")
+        .build());
+    options.addOption(Option.builder("f").longOpt("input_files")
+        .desc("The files to be processed. Required unless -b is specified").hasArgs()
+        .argName("FILES").build());
+    options.addOption(Option.builder("b").longOpt("batch")
+        .desc("Manifest of the tests to run instead of those specified by -t, -c and -f, see the"
+            + " readme")
+        .hasArg().argName("MANIFEST")
+        .build());
+    options.addOption(Option.builder("o").longOpt("results")
+        .desc("File to which the result of each test of a batch is written as newline-delimited"
+            + " json")
+        .hasArg().argName("FILE")
+        .build());
+    options.addOption(Option.builder("r").longOpt("reference_cache")
+        .desc("Directory in which the reference documents are cached between runs")
+        .hasArg().argName("DIRECTORY")
+        .build());
+    options.addOption(Option.builder("d").longOpt("differences_dir")
+        .desc("Directory to which the differences are written as newline-delimited json")
+        .hasArg().argName("DIRECTORY")
+        .build());
+    options.addOption(Option.builder("s").longOpt("compare_model_stores")
+        .desc("Compare the model stores of the documents directly instead of their json")
+        .build());
+    options.addOption(Option.builder("m").longOpt("compact_store")
+        .desc("Deserialize the input documents into a compact store to reduce the heap usage")
+        .build());
+    options.addOption(Option.builder("j").longOpt("deserialize_json")
+        .desc("Deserialize input documents in json format via the library instead of reading them"
+            + " as they are")
+        .build());
+    options.addOption(Option.builder("w").longOpt("workers")
+        .desc("Number of workers that prepare, compare and report the tests, e.g. 2,4,1."
+            + " Defaults to 1,1,1")
+        .hasArg().argName("WORKERS")
+        .build());
+    options.addOption(Option.builder("q").longOpt("queue_depth")
+        .desc("Number of tests that wait between two stages at most. Defaults to 1")
+        .hasArg().argName("DEPTH")
+        .build());
+    options.addOption(Option.builder("S").longOpt("serve")
+        .desc("Start a daemon that runs the tests requested via -p, and keeps the test cases and"
+            + " their reference documents in memory. A port of 0 picks a free port")
+        .hasArg().argName("PORT")
+        .build());
+    options.addOption(Option.builder("p").longOpt("daemon_port")
+        .desc("Run the tests in the daemon listening on the port, instead of in this process")
+        .hasArg().argName("PORT")
+        .build());
+    options.addOption(Option.builder("h").longOpt("help").desc("Display usage").required(false)
+        .build());
+    return options;
+  }
+
+  // The manifest is read and the results are written while the tests run. Returns the number of
+  // tests that could not be run or did not succeed.
+  private static int runBatch(TestPipeline pipeline, Path manifestPath,
+      @Nullable String resultsFile, TestCaseFinder testCaseFinder)
+      throws IOException, InvalidSPDXAnalysisException {
+    var unsuccessfulTests = new AtomicInteger();
+    try (var manifest = TestManifest.open(manifestPath, testCaseFinder)) {
+      if (resultsFile == null) {
+        pipeline.run(manifest, countingUnsuccessfulTests(unsuccessfulTests, null));
+        return unsuccessfulTests.get();
+      }
+      try (var results = NdjsonResultWriter.toFile(Path.of(resultsFile))) {
+        pipeline.run(manifest, countingUnsuccessfulTests(unsuccessfulTests, results));
+      }
+    }
+    return unsuccessfulTests.get();
+  }
+
+  // The listener is called by all reporting workers
+  private static TestPipeline.ResultListener countingUnsuccessfulTests(
+      AtomicInteger unsuccessfulTests, @Nullable TestPipeline.ResultListener listener) {
+    return (position, task, result, failure) -> {
+      if (result == null || !Boolean.TRUE.equals(result.success)) {
+        unsuccessfulTests.incrementAndGet();
+      }
+      if (listener != null) {
+        listener.completed(position, task, result, failure);
+      }
+    };
+  }
+
+  // The options only apply to the test cases of this run, so runs of a daemon don't share them
+  private static TestOptions createTestOptions(CommandLine cmd, TestOptions baseOptions) {
+    return baseOptions.toBuilder()
+        .referenceCache(cmd.hasOption("r") ? new ReferenceDocumentCache(
+            Path.of(cmd.getOptionValue("r"))) : null)
+        .differencesDirectory(cmd.hasOption("d") ? Path.of(cmd.getOptionValue("d")) : null)
+        .compareModelStores(cmd.hasOption("s"))
+        .compactInputStore(cmd.hasOption("m"))
+        .deserializeJsonInputs(cmd.hasOption("j"))
+        .streamingThreshold(Long.getLong(TestOptions.STREAMING_THRESHOLD_PROPERTY,
+            TestOptions.DEFAULT.getStreamingThreshold()))
+        .build();
+  }
+
+  private static TestPipeline createPipeline(CommandLine cmd, PrintStream out,
+      TestOptions testOptions) {
+    var workers = cmd.getOptionValue("w", "1,1,1").split(",");
+    if (workers.length != 3) {
+      throw new IllegalArgumentException(
+          "Three numbers of workers are required, for preparing, comparing and reporting.");
+    }
+    try {
+      return new TestPipeline(Integer.parseInt(workers[0].trim()),
+          Integer.parseInt(workers[1].trim()), Integer.parseInt(workers[2].trim()),
+          Integer.parseInt(cmd.getOptionValue("q", "1")), out, testOptions);
+    } catch (NumberFormatException ex) {
+      throw new IllegalArgumentException("Not a number: " + ex.getMessage(), ex);
+    }
+  }
+
+  // The test cases found for a name are kept by the finder, so selecting them afterwards does not
+  // scan the classpath again
+  private static void reportUnknownTestCaseNames(String[] names, PrintStream out,
+      TestCaseFinder testCaseFinder) {
+    for (var name : names) {
+      if (testCaseFinder.findTestCasesByNames(List.of(name)).isEmpty()) {
+        out.println("No test case found for name " + name + "!");
+      }
+    }
+  }
+
+  private static Optional<Integer> parsePort(String port, Options options, PrintStream out,
+      PrintStream err) {
+    try {
+      return Optional.of(Integer.parseInt(port));
+    } catch (NumberFormatException ex) {
+      err.println("Not a port: " + port);
+      printUsage(options, out);
+      return Optional.empty();
+    }
+  }
+
+  // The daemon resolves relative paths against its own working directory
+  private static List<String> forwardedArguments(CommandLine cmd) {
+    var arguments = new ArrayList<String>();
+    for (var option : cmd.getOptions()) {
+      if (option.getOpt().equals("p")) {
+        continue;
+      }
+      arguments.add("-" + option.getOpt());
+      for (var value : Optional.ofNullable(option.getValues()).orElse(new String[0])) {
+        arguments.add(PATH_OPTIONS.contains(option.getOpt())
+            ? Path.of(value).toAbsolutePath().toString() : value);
+      }
     }
+    return arguments;
   }
 
-  private static void printUsage(Options options) {
+  private static void printUsage(Options options, PrintStream out) {
     var helper = new HelpFormatter();
     var helpHeader = "Test if the input files solve the specified test cases.\n\n";
     var helpFooter = "\n";
-    helper.printHelp("spdx-tools-java-solver.jar", helpHeader, options, helpFooter, true);
+    var writer = new PrintWriter(out);
+    helper.printHelp(writer, helper.getWidth(), "spdx-tools-java-solver.jar", helpHeader, options,
+        helper.getLeftPadding(), helper.getDescPadding(), helpFooter, true);
+    writer.flush();
   }
 }
@@ -0,0 +1,67 @@
+// SPDX-FileCopyrightText: TNG Technology Consulting GmbH
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.spdx.testbed;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import javax.annotation.Nullable;
+
+/**
+ * Writes the outcome of each test as a json object on a line of its own as soon as the test is
+ * completed, so that the results of a long batch are available while it is still running. Each
+ * object holds the position of the test in its source, the test case, the input file, the format
+ * if one was provided, whether the test succeeded, the numbers of reported and elided differences,
+ * and the message of the exception if the test could not be run.
+ */
+public class NdjsonResultWriter implements TestPipeline.ResultListener, Closeable {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private final Writer writer;
+
+  public NdjsonResultWriter(Writer writer) {
+    this.writer = writer;
+  }
+
+  /**
+   * Creates a writer to the provided file, which is replaced if it exists.
+   */
+  public static NdjsonResultWriter toFile(Path file) throws IOException {
+    return new NdjsonResultWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8));
+  }
+
+  @Override
+  public synchronized void completed(int position, TestPipeline.Task task,
+      @Nullable TestResult result, @Nullable Throwable failure) throws IOException {
+    var line = MAPPER.createObjectNode()
+        .put("position", position)
+        .put("testCase", task.getTestCase().getName())
+        .put("inputFile", task.getInputFile());
+    if (task.getFormat() != null) {
+      line.put("format", task.getFormat().name());
+    }
+    if (result != null) {
+      line.put("success", Boolean.TRUE.equals(result.success))
+          .put("reportedDifferences", result.differences.size())
+          .put("elidedDifferences", result.elidedDifferenceCount);
+    } else {
+      line.put("success", false)
+          .put("error", failure == null ? null : String.valueOf(failure.getMessage()));
+    }
+    writer.write(MAPPER.writeValueAsString(line));
+    writer.write('\n');
+    writer.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    writer.close();
+  }
+}
@@ -4,10 +4,15 @@
 
 package org.spdx.testbed;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import org.spdx.library.InvalidSPDXAnalysisException;
 import org.spdx.tools.InvalidFileNameException;
+import org.spdx.tools.SpdxToolsHelper;
 
 /**
  * Main interface for all test cases.
@@ -15,14 +20,92 @@ import org.spdx.tools.InvalidFileNameException;
 public interface TestCase extends Comparable<TestCase> {
 
   /**
-   * Runs the test case against the provided file.
+   * Runs the test case against the provided file and prints its report to the standard output.
    */
-  TestResult test(String inputFile) throws InvalidSPDXAnalysisException, IOException,
-      InvalidFileNameException;
+  default TestResult test(String inputFile) throws InvalidSPDXAnalysisException, IOException,
+      InvalidFileNameException {
+    return test(inputFile, System.out);
+  }
+
+  /**
+   * Runs the test case against the provided file and prints its report to the provided stream.
+   */
+  TestResult test(String inputFile, PrintStream out) throws InvalidSPDXAnalysisException,
+      IOException, InvalidFileNameException;
+
+  /**
+   * Prepares running the test case against the provided file, e.g. by reading the file, so that
+   * the returned test only needs to compare. Used by the {@link TestPipeline}, which runs the
+   * stages of different tests on different threads. By default, the whole test is run when
+   * comparing, and its report is held until it is printed, so that it is printed as a whole and to
+   * the stream the pipeline provides.
+   */
+  default PreparedTest prepare(String inputFile) throws InvalidSPDXAnalysisException,
+      IOException, InvalidFileNameException {
+    return () -> {
+      var report = new ByteArrayOutputStream();
+      TestResult result;
+      try (var reportOut = new PrintStream(report, true, StandardCharsets.UTF_8)) {
+        result = test(inputFile, reportOut);
+      }
+      return out -> {
+        report.writeTo(out);
+        out.flush();
+        return result;
+      };
+    };
+  }
+
+  /**
+   * Prepares running the test case against the provided file like {@link #prepare(String)}, but
+   * reads the file in the provided format instead of the format that its extension implies, unless
+   * no format is provided. By default, only files without a provided format are supported.
+   */
+  default PreparedTest prepare(String inputFile, @Nullable SpdxToolsHelper.SerFileType format)
+      throws InvalidSPDXAnalysisException, IOException, InvalidFileNameException {
+    if (format != null) {
+      throw new IllegalArgumentException(
+          getName() + " does not support reading the input file in a provided format.");
+    }
+    return prepare(inputFile);
+  }
+
+  /**
+   * Prepares running the test case against the provided file like
+   * {@link #prepare(String, SpdxToolsHelper.SerFileType)}, but applies the provided options. By
+   * default, the options are ignored.
+   */
+  default PreparedTest prepare(String inputFile, @Nullable SpdxToolsHelper.SerFileType format,
+      TestOptions options)
+      throws InvalidSPDXAnalysisException, IOException, InvalidFileNameException {
+    return prepare(inputFile, format);
+  }
 
   String getName();
 
   default int compareTo(@Nonnull TestCase other) {
     return getName().compareTo(other.getName());
   }
+
+  /**
+   * Test whose input is ready to be compared.
+   */
+  @FunctionalInterface
+  interface PreparedTest {
+
+    CompletedTest compare() throws InvalidSPDXAnalysisException, IOException,
+        InvalidFileNameException;
+  }
+
+  /**
+   * Test whose comparison is completed, but not reported yet.
+   */
+  @FunctionalInterface
+  interface CompletedTest {
+
+    /**
+     * Prints the report of the test and returns its result.
+     */
+    TestResult print(PrintStream out) throws IOException;
+  }
 }
@@ -0,0 +1,280 @@
+// SPDX-FileCopyrightText: TNG Technology Consulting GmbH
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.spdx.testbed;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.spdx.testbed.util.TestCaseFinder;
+
+/**
+ * Long-running process that runs the tests requested by clients, so that starting the JVM, finding
+ * the test cases and building their reference documents is paid once instead of per run. The
+ * daemon only listens on the loopback address, and runs one request at a time, since the options
+ * of a request are applied to the whole process while the request runs.
+ *
+ * <p>A request is a POST to {@code /run} whose body holds the arguments of {@link Main} as a json
+ * array of strings, e.g. {@code ["-t", "generationMinimalTest", "-f", "/tmp/minimal.json"]}. Paths
+ * are resolved against the working directory of the daemon. The response holds the output of the
+ * run as it is printed, followed by a last line with the exit code of the run, e.g.
+ * {@code exit 0}.
+ *
+ * <p>Since a run reads and writes the paths it names, requests have to prove that they come from
+ * the user running the daemon: The daemon writes a random token to a file that only this user can
+ * read, see {@link #getTokenFile(Path, int)}, and requests have to send it as bearer token in the
+ * {@code Authorization} header. Requests also need the content type {@code application/json} and
+ * a {@code Host} header naming the loopback address, which a web page in a local browser can't
+ * send without the consent of the daemon.
+ */
+public class TestDaemon {
+
+  static final String EXIT_CODE_PREFIX = "exit ";
+
+  private static final String RUN_PATH = "/run";
+  private static final String JSON_CONTENT_TYPE = "application/json";
+  private static final String BEARER_PREFIX = "Bearer ";
+  private static final int TOKEN_LENGTH = 32;
+  private static final Path DEFAULT_TOKEN_DIRECTORY = Path.of(System.getProperty("user.home"),
+      ".spdx-testbed");
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private final HttpServer server;
+  private final ExecutorService executor;
+  private final byte[] token;
+  private final Path tokenFile;
+  private final TestCaseFinder testCaseFinder = new TestCaseFinder();
+  // The reference documents are kept for the lifetime of the daemon, and released once it stops
+  private final TestOptions baseOptions = TestOptions.builder()
+      .keptReferences(new ConcurrentHashMap<>())
+      .build();
+
+  private TestDaemon(HttpServer server, ExecutorService executor, byte[] token, Path tokenFile) {
+    this.server = server;
+    this.executor = executor;
+    this.token = token;
+    this.tokenFile = tokenFile;
+  }
+
+  /**
+   * Starts a daemon that listens on the provided port of the loopback address, or on a free port
+   * if the port is 0, and writes its token to the default token directory in the home directory of
+   * the user. The daemon keeps running until it is stopped.
+   */
+  public static TestDaemon start(int port) throws IOException {
+    return start(port, DEFAULT_TOKEN_DIRECTORY);
+  }
+
+  /**
+   * Same as {@link #start(int)}, but writes the token to the provided directory.
+   */
+  public static TestDaemon start(int port, Path tokenDirectory) throws IOException {
+    var server = HttpServer.create(
+        new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+    var token = new byte[TOKEN_LENGTH];
+    new SecureRandom().nextBytes(token);
+    var encodedToken = Base64.getUrlEncoder().withoutPadding().encodeToString(token);
+    var tokenFile = getTokenFile(tokenDirectory, server.getAddress().getPort());
+    try {
+      writeToken(tokenFile, encodedToken);
+    } catch (IOException e) {
+      server.stop(0);
+      throw e;
+    }
+
+    var executor = Executors.newSingleThreadExecutor();
+    var daemon = new TestDaemon(server, executor,
+        encodedToken.getBytes(StandardCharsets.US_ASCII), tokenFile);
+    server.createContext(RUN_PATH, daemon::handle);
+    server.setExecutor(executor);
+    server.start();
+    return daemon;
+  }
+
+  /**
+   * Returns the file holding the token of the daemon that listens on the provided port.
+   */
+  public static Path getTokenFile(Path tokenDirectory, int port) {
+    return tokenDirectory.resolve("daemon-" + port + ".token");
+  }
+
+  // The file is created with its permissions, so the token is never readable by others
+  private static void writeToken(Path tokenFile, String token) throws IOException {
+    var posix = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+    var directory = tokenFile.toAbsolutePath().getParent();
+    if (!Files.isDirectory(directory)) {
+      if (posix) {
+        Files.createDirectories(directory,
+            PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+      } else {
+        Files.createDirectories(directory);
+      }
+    }
+    Files.deleteIfExists(tokenFile);
+    if (posix) {
+      Files.createFile(tokenFile,
+          PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+    } else {
+      Files.createFile(tokenFile);
+    }
+    Files.writeString(tokenFile, token, StandardCharsets.US_ASCII);
+  }
+
+  /**
+   * Sends the arguments to the daemon that listens on the provided port of the loopback address,
+   * prints the output of the run as it arrives, and returns the exit code of the run. The token of
+   * the daemon is read from the default token directory.
+   *
+   * @throws IOException if the daemon can't be reached or doesn't complete the run
+   */
+  public static int submit(int port, List<String> arguments, PrintStream out)
+      throws IOException {
+    return submit(port, DEFAULT_TOKEN_DIRECTORY, arguments, out);
+  }
+
+  /**
+   * Same as {@link #submit(int, List, PrintStream)}, but reads the token of the daemon from the
+   * provided directory.
+   *
+   * @throws IOException if the token can't be read, or the daemon can't be reached or doesn't
+   *                     complete the run
+   */
+  public static int submit(int port, Path tokenDirectory, List<String> arguments,
+      PrintStream out) throws IOException {
+    var token = Files.readString(getTokenFile(tokenDirectory, port), StandardCharsets.US_ASCII)
+        .trim();
+    var url = new URL("http", InetAddress.getLoopbackAddress().getHostAddress(), port, RUN_PATH);
+    var connection = (HttpURLConnection) url.openConnection();
+    connection.setRequestMethod("POST");
+    connection.setRequestProperty("Content-Type", JSON_CONTENT_TYPE);
+    connection.setRequestProperty("Authorization", BEARER_PREFIX + token);
+    connection.setDoOutput(true);
+    try (var body = connection.getOutputStream()) {
+      body.write(MAPPER.writeValueAsBytes(arguments));
+    }
+    if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+      throw new IOException("The daemon rejected the request with status "
+          + connection.getResponseCode() + ".");
+    }
+
+    // The last line holds the exit code, so each line is only printed once the next one arrives
+    try (var reader = new BufferedReader(
+        new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+      String previousLine = null;
+      for (var line = reader.readLine(); line != null; line = reader.readLine()) {
+        if (previousLine != null) {
+          out.println(previousLine);
+        }
+        previousLine = line;
+      }
+      out.flush();
+      if (previousLine == null || !previousLine.startsWith(EXIT_CODE_PREFIX)) {
+        throw new IOException("The daemon closed the connection before the run was completed.");
+      }
+      return Integer.parseInt(previousLine.substring(EXIT_CODE_PREFIX.length()));
+    }
+  }
+
+  public int getPort() {
+    return server.getAddress().getPort();
+  }
+
+  /**
+   * Stops the daemon, without waiting for a running request, and deletes its token file.
+   */
+  public void stop() throws IOException {
+    server.stop(0);
+    executor.shutdownNow();
+    Files.deleteIfExists(tokenFile);
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    try {
+      if (!"POST".equals(exchange.getRequestMethod())) {
+        exchange.sendResponseHeaders(HttpURLConnection.HTTP_BAD_METHOD, -1);
+        return;
+      }
+      if (!isAuthorized(exchange)) {
+        exchange.sendResponseHeaders(HttpURLConnection.HTTP_FORBIDDEN, -1);
+        return;
+      }
+      if (!isJson(exchange.getRequestHeaders().getFirst("Content-Type"))) {
+        exchange.sendResponseHeaders(HttpURLConnection.HTTP_UNSUPPORTED_TYPE, -1);
+        return;
+      }
+      String[] arguments;
+      try {
+        arguments = MAPPER.readValue(exchange.getRequestBody(), String[].class);
+      } catch (JsonProcessingException e) {
+        exchange.sendResponseHeaders(HttpURLConnection.HTTP_BAD_REQUEST, -1);
+        return;
+      }
+      exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+      // The output is streamed, so its length is unknown
+      exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, 0);
+      var out = new PrintStream(exchange.getResponseBody(), true, StandardCharsets.UTF_8);
+      var exitCode = run(arguments, out);
+      out.println(EXIT_CODE_PREFIX + exitCode);
+      out.flush();
+    } finally {
+      exchange.close();
+    }
+  }
+
+  // The host is checked as well, so that pages whose domain resolves to the loopback address can't
+  // send requests as if they came from the same origin
+  private boolean isAuthorized(HttpExchange exchange) {
+    var host = exchange.getRequestHeaders().getFirst("Host");
+    var loopbackHost = InetAddress.getLoopbackAddress().getHostAddress() + ":" + getPort();
+    if (!loopbackHost.equals(host) && !("localhost:" + getPort()).equals(host)) {
+      return false;
+    }
+    var authorization = exchange.getRequestHeaders().getFirst("Authorization");
+    if (authorization == null || !authorization.startsWith(BEARER_PREFIX)) {
+      return false;
+    }
+    return MessageDigest.isEqual(token, authorization.substring(BEARER_PREFIX.length()).trim()
+        .getBytes(StandardCharsets.US_ASCII));
+  }
+
+  private static boolean isJson(String contentType) {
+    if (contentType == null) {
+      return false;
+    }
+    var separator = contentType.indexOf(';');
+    var mediaType = separator < 0 ? contentType : contentType.substring(0, separator);
+    return mediaType.trim().toLowerCase(Locale.ROOT).equals(JSON_CONTENT_TYPE);
+  }
+
+  private int run(String[] arguments, PrintStream out) {
+    try {
+      return Main.run(arguments, out, out, testCaseFinder, baseOptions);
+    } catch (Exception e) {
+      out.println("The run failed: " + e.getMessage());
+      return 1;
+    }
+  }
+}
@@ -0,0 +1,92 @@
+// SPDX-FileCopyrightText: TNG Technology Consulting GmbH
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.spdx.testbed;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import javax.annotation.Nullable;
+import lombok.Builder;
+import lombok.Getter;
+import org.spdx.testbed.util.ReferenceDocumentCache;
+
+/**
+ * Options that control how test cases read their inputs, build their references and report their
+ * differences. The options of a run are passed to each test case it prepares, so runs in the same
+ * process, e.g. the requests of a {@link TestDaemon}, don't affect each other.
+ */
+@Builder(toBuilder = true)
+@Getter
+public class TestOptions {
+
+  /**
+   * Options of runs that don't specify any.
+   */
+  public static final TestOptions DEFAULT = TestOptions.builder().build();
+
+  /**
+   * System property holding the size in bytes from which input documents in json format are
+   * streamed, which the CLI reads into {@link #getStreamingThreshold()}.
+   */
+  public static final String STREAMING_THRESHOLD_PROPERTY = "spdx.testbed.streamingThreshold";
+
+  /**
+   * Directory to which the differences are written as newline-delimited json, one file per test
+   * case and input file. The differences are printed if it is not set.
+   */
+  @Nullable
+  private final Path differencesDirectory;
+
+  /**
+   * Cache of the serialized reference documents, if any.
+   */
+  @Nullable
+  private final ReferenceDocumentCache referenceCache;
+
+  /**
+   * Serialized reference documents that are kept in memory across runs, keyed by the class of the
+   * test case, so that a long-running process like the {@link TestDaemon} builds each of them only
+   * once. The references are loaded for each run if it is not set.
+   */
+  @Nullable
+  private final Map<Class<?>, ObjectNode> keptReferences;
+
+  /**
+   * Executor on which the reference documents are built while the input documents are read. The
+   * {@link TestPipeline} provides one per run, with a thread per preparing worker. References are
+   * built on the preparing thread if it is not set, and whenever they are kept or cached, since
+   * loading them is cheap then.
+   */
+  @Nullable
+  private final Executor referenceBuilder;
+
+  /**
+   * Whether the model stores of the documents are compared directly, instead of the documents
+   * serialized as json. The reference documents are neither serialized nor cached then, and the
+   * paths of the differences consist of the property names of the model store.
+   */
+  private final boolean compareModelStores;
+
+  /**
+   * Whether input documents in json format are deserialized via java-spdx-library, like those in
+   * other formats, instead of being read and normalized as they are. This also applies to inputs
+   * that would be streamed otherwise, so their size is bounded by the heap again.
+   */
+  private final boolean deserializeJsonInputs;
+
+  /**
+   * Whether the input documents are deserialized into a compact model store, which needs a
+   * fraction of the heap of the default store for large documents.
+   */
+  private final boolean compactInputStore;
+
+  /**
+   * Size in bytes from which input documents in json format are compared while they are streamed,
+   * instead of being read as a whole, so that their size is not bounded by the heap.
+   */
+  @Builder.Default
+  private final long streamingThreshold = 16 * 1024 * 1024;
+}
@@ -0,0 +1,415 @@
+// SPDX-FileCopyrightText: TNG Technology Consulting GmbH
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.spdx.testbed;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+import org.spdx.library.InvalidSPDXAnalysisException;
+import org.spdx.tools.InvalidFileNameException;
+import org.spdx.tools.SpdxToolsHelper;
+
+/**
+ * Runs test cases against their input files in three stages that overlap across the tests:
+ * Preparing a test reads its input file while the reference document is built, comparing runs the
+ * comparison, and reporting prints the outcome. Each stage has its own workers, and consecutive
+ * stages are connected by bounded queues. A stage waits once the queue to the next stage is full,
+ * and the tests are only taken from their source once a preparing worker is free, so at most the
+ * tests in the hands of the workers and in the queues are held in memory.
+ *
+ * <p>The report of each test is printed as a whole, in the order in which the tests complete.
+ */
+public class TestPipeline {
+
+  private static final Run END = new Run(-1, null);
+
+  private final int preparingWorkers;
+  private final int comparingWorkers;
+  private final int reportingWorkers;
+  private final int queueDepth;
+  private final PrintStream out;
+  private final TestOptions options;
+
+  /**
+   * Creates a pipeline with the provided number of workers per stage, which prints the reports to
+   * the provided stream. A queue depth of zero hands each test directly from a worker to a worker
+   * of the next stage.
+   *
+   * @throws IllegalArgumentException if a stage has no worker or the queue depth is negative
+   */
+  public TestPipeline(int preparingWorkers, int comparingWorkers, int reportingWorkers,
+      int queueDepth, PrintStream out) {
+    this(preparingWorkers, comparingWorkers, reportingWorkers, queueDepth, out,
+        TestOptions.DEFAULT);
+  }
+
+  /**
+   * Same as {@link #TestPipeline(int, int, int, int, PrintStream)}, but prepares the tests with the
+   * provided options.
+   *
+   * @throws IllegalArgumentException if a stage has no worker or the queue depth is negative
+   */
+  public TestPipeline(int preparingWorkers, int comparingWorkers, int reportingWorkers,
+      int queueDepth, PrintStream out, TestOptions options) {
+    if (preparingWorkers < 1 || comparingWorkers < 1 || reportingWorkers < 1) {
+      throw new IllegalArgumentException("Each stage needs at least one worker.");
+    }
+    if (queueDepth < 0) {
+      throw new IllegalArgumentException("The queue depth must not be negative.");
+    }
+    this.preparingWorkers = preparingWorkers;
+    this.comparingWorkers = comparingWorkers;
+    this.reportingWorkers = reportingWorkers;
+    this.queueDepth = queueDepth;
+    this.out = out;
+    this.options = options;
+  }
+
+  /**
+   * Runs each test case against the input file at the same position, and returns the results in
+   * the same order. A test that fails with an exception doesn't stop the others, but its exception
+   * is thrown once all tests are completed. If several tests fail, the exception of the first one
+   * is thrown.
+   */
+  public List<TestResult> run(List<TestCase> testCases, List<String> inputFiles)
+      throws IOException, InvalidSPDXAnalysisException, InvalidFileNameException {
+    if (testCases.size() != inputFiles.size()) {
+      throw new IllegalArgumentException("Each test case needs exactly one input file.");
+    }
+    var tasks = new ArrayDeque<Task>();
+    for (var i = 0; i < testCases.size(); i++) {
+      tasks.add(new Task(testCases.get(i), inputFiles.get(i), null));
+    }
+    var results = new TestResult[tasks.size()];
+    var failures = new Throwable[tasks.size()];
+    run(tasks::poll, (position, task, result, failure) -> {
+      results[position] = result;
+      failures[position] = failure;
+    });
+
+    for (var failure : failures) {
+      if (failure != null) {
+        rethrow(failure);
+      }
+    }
+    return Arrays.asList(results);
+  }
+
+  /**
+   * Runs the tasks of the source, which are only taken from it once a preparing worker is free, and
+   * passes the outcome of each task to the listener. Tasks that fail with an exception are passed
+   * to the listener with that exception and don't stop the others. If the source or the listener
+   * fail, no further tasks are taken, and the exception is thrown once the tasks that were already
+   * taken are completed.
+   */
+  public void run(TaskSource source, ResultListener listener)
+      throws IOException, InvalidSPDXAnalysisException {
+    var feed = new Feed(source);
+    var prepared = createQueue();
+    var completed = createQueue();
+    // Each preparing worker builds at most one reference document at a time while it reads an
+    // input, so the reference builder needs no more threads than there are preparing workers
+    var referenceBuilder = Executors.newFixedThreadPool(preparingWorkers,
+        createThreadFactory("test-pipeline-reference-"));
+    var runOptions = options.toBuilder().referenceBuilder(referenceBuilder).build();
+    var workers = new ArrayList<Thread>();
+    workers.addAll(startStage("prepare", preparingWorkers, feed::take, prepared, comparingWorkers,
+        run -> run.prepared = run.task.testCase.prepare(run.task.inputFile, run.task.format,
+            runOptions)));
+    workers.addAll(startStage("compare", comparingWorkers, prepared::take, completed,
+        reportingWorkers, run -> {
+          run.completed = run.prepared.compare();
+          // Releases the input document
+          run.prepared = null;
+        }));
+    workers.addAll(startStage("report", reportingWorkers, completed::take, null, 0,
+        run -> complete(run, listener, feed)));
+
+    try {
+      for (var worker : workers) {
+        worker.join();
+      }
+    } catch (InterruptedException e) {
+      workers.forEach(Thread::interrupt);
+      Thread.currentThread().interrupt();
+      throw new InvalidSPDXAnalysisException("Interrupted while running the test cases.", e);
+    } finally {
+      referenceBuilder.shutdownNow();
+    }
+
+    if (feed.failure instanceof IOException) {
+      throw (IOException) feed.failure;
+    }
+    if (feed.failure != null) {
+      rethrowUnchecked(feed.failure);
+    }
+  }
+
+  // The threads don't keep the process alive, e.g. if a run is interrupted
+  private static ThreadFactory createThreadFactory(String namePrefix) {
+    var threadCount = new AtomicInteger();
+    return task -> {
+      var thread = new Thread(task, namePrefix + threadCount.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  private BlockingQueue<Run> createQueue() {
+    return queueDepth == 0 ? new SynchronousQueue<>() : new ArrayBlockingQueue<>(queueDepth);
+  }
+
+  private List<Thread> startStage(String name, int workerCount, Input input,
+      @Nullable BlockingQueue<Run> output, int nextWorkerCount, Step step) {
+    var activeWorkers = new AtomicInteger(workerCount);
+    var workers = new ArrayList<Thread>();
+    for (var i = 0; i < workerCount; i++) {
+      var worker = new Thread(() -> work(input, output, nextWorkerCount, step, activeWorkers),
+          "test-pipeline-" + name + "-" + i);
+      worker.start();
+      workers.add(worker);
+    }
+    return workers;
+  }
+
+  // Tests that failed skip the remaining stages except for the last one, which reports them
+  private static void work(Input input, @Nullable BlockingQueue<Run> output,
+      int nextWorkerCount, Step step, AtomicInteger activeWorkers) {
+    try {
+      for (var run = input.take(); run != END; run = input.take()) {
+        if (run.failure == null || output == null) {
+          try {
+            step.process(run);
+          } catch (Exception | Error e) {
+            run.failure = e;
+          }
+        }
+        if (output != null) {
+          output.put(run);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      // The last worker of the stage ends the workers of the next stage
+      if (activeWorkers.decrementAndGet() == 0 && output != null) {
+        end(output, nextWorkerCount);
+      }
+    }
+  }
+
+  private static void end(BlockingQueue<Run> queue, int workerCount) {
+    try {
+      for (var i = 0; i < workerCount; i++) {
+        queue.put(END);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  // A failing report is passed to the listener like a failing test, a failing listener stops the
+  // feed
+  private void complete(Run run, ResultListener listener, Feed feed) {
+    TestResult result = null;
+    try {
+      result = report(run);
+    } catch (IOException | RuntimeException | Error e) {
+      run.failure = e;
+    }
+    try {
+      listener.completed(run.position, run.task, result, run.failure);
+    } catch (IOException | RuntimeException | Error e) {
+      feed.abort(e);
+    }
+  }
+
+  private TestResult report(Run run) throws IOException {
+    // Reports are printed as a whole, so those of concurrent workers don't interleave
+    var buffer = new ByteArrayOutputStream();
+    var bufferStream = new PrintStream(buffer, true, StandardCharsets.UTF_8);
+    TestResult result = null;
+    if (run.failure == null) {
+      result = run.completed.print(bufferStream);
+      run.completed = null;
+    } else {
+      bufferStream.println("\nCould not run " + run.task.testCase.getName() + " against "
+          + run.task.inputFile + ": " + run.failure.getMessage());
+    }
+    bufferStream.flush();
+    synchronized (out) {
+      out.print(buffer.toString(StandardCharsets.UTF_8));
+      out.flush();
+    }
+    return result;
+  }
+
+  private static void rethrow(Throwable failure)
+      throws IOException, InvalidSPDXAnalysisException, InvalidFileNameException {
+    if (failure instanceof IOException) {
+      throw (IOException) failure;
+    }
+    if (failure instanceof InvalidSPDXAnalysisException) {
+      throw (InvalidSPDXAnalysisException) failure;
+    }
+    if (failure instanceof InvalidFileNameException) {
+      throw (InvalidFileNameException) failure;
+    }
+    rethrowUnchecked(failure);
+  }
+
+  private static void rethrowUnchecked(Throwable failure) {
+    if (failure instanceof RuntimeException) {
+      throw (RuntimeException) failure;
+    }
+    if (failure instanceof Error) {
+      throw (Error) failure;
+    }
+    throw new IllegalStateException(failure);
+  }
+
+  /**
+   * Test case to run against an input file, which is read in the provided format, or in the format
+   * that its extension implies if none is provided.
+   */
+  public static final class Task {
+
+    private final TestCase testCase;
+    private final String inputFile;
+    @Nullable
+    private final SpdxToolsHelper.SerFileType format;
+
+    public Task(TestCase testCase, String inputFile, @Nullable SpdxToolsHelper.SerFileType format) {
+      this.testCase = testCase;
+      this.inputFile = inputFile;
+      this.format = format;
+    }
+
+    public TestCase getTestCase() {
+      return testCase;
+    }
+
+    public String getInputFile() {
+      return inputFile;
+    }
+
+    @Nullable
+    public SpdxToolsHelper.SerFileType getFormat() {
+      return format;
+    }
+  }
+
+  /**
+   * Provides the tasks to run, one at a time.
+   */
+  @FunctionalInterface
+  public interface TaskSource {
+
+    /**
+     * Returns the next task, or null if there are no further tasks.
+     */
+    @Nullable
+    Task next() throws IOException;
+  }
+
+  /**
+   * Receives the outcome of each task from the reporting workers, in the order in which the tasks
+   * complete.
+   */
+  @FunctionalInterface
+  public interface ResultListener {
+
+    /**
+     * Called once the task at the provided position of its source is reported, with either its
+     * result or the exception that stopped it.
+     */
+    void completed(int position, Task task, @Nullable TestResult result,
+        @Nullable Throwable failure) throws IOException;
+  }
+
+  @FunctionalInterface
+  private interface Input {
+
+    Run take() throws InterruptedException;
+  }
+
+  @FunctionalInterface
+  private interface Step {
+
+    void process(Run run) throws Exception;
+  }
+
+  /**
+   * Takes the tasks from their source for the preparing workers, until the source is exhausted or
+   * the run is aborted.
+   */
+  private static final class Feed {
+
+    private final TaskSource source;
+    private int nextPosition;
+    private boolean ended;
+    @Nullable
+    private Throwable failure;
+
+    Feed(TaskSource source) {
+      this.source = source;
+    }
+
+    synchronized Run take() {
+      if (!ended) {
+        try {
+          var task = source.next();
+          if (task != null) {
+            return new Run(nextPosition++, task);
+          }
+          ended = true;
+        } catch (IOException | RuntimeException | Error e) {
+          abort(e);
+        }
+      }
+      return END;
+    }
+
+    synchronized void abort(Throwable failure) {
+      if (this.failure == null) {
+        this.failure = failure;
+      }
+      ended = true;
+    }
+  }
+
+  /**
+   * Task of a single test, its position in the source, and the state of the test between the
+   * stages.
+   */
+  private static final class Run {
+
+    private final int position;
+    private final Task task;
+    @Nullable
+    private TestCase.PreparedTest prepared;
+    @Nullable
+    private TestCase.CompletedTest completed;
+    @Nullable
+    private Throwable failure;
+
+    Run(int position, Task task) {
+      this.position = position;
+      this.task = task;
+    }
+  }
+}
@@ -19,4 +19,8 @@ public class TestResult {
 
   @Builder.Default
   List<Difference> differences = new ArrayList<>();
+
+  // Number of differences that were detected, but left out of the list above
+  @Builder.Default
+  long elidedDifferenceCount = 0;
 }
@@ -4,10 +4,13 @@
 
 package org.spdx.testbed.generationtestcases;
 
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 import org.spdx.library.InvalidSPDXAnalysisException;
 import org.spdx.library.model.SpdxDocument;
 import org.spdx.library.model.SpdxNoneElement;
+import org.spdx.testbed.util.DocumentSection;
 import org.spdx.testbed.util.testclassification.TestName;
 
 /**
@@ -39,6 +42,12 @@ public class GenerationBaselineSbomTestCase extends GenerationTestCase {
     return document;
   }
 
+  @Override
+  protected Set<DocumentSection> getComparedSections() {
+    return EnumSet.of(DocumentSection.PACKAGES, DocumentSection.FILES,
+        DocumentSection.RELATIONSHIPS);
+  }
+
   @Override
   public String getName() {
     return "generationBaselineSbomTest";
@@ -4,12 +4,15 @@
 
 package org.spdx.testbed.generationtestcases;
 
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 import org.spdx.library.InvalidSPDXAnalysisException;
 import org.spdx.library.model.Annotation;
 import org.spdx.library.model.SpdxDocument;
 import org.spdx.library.model.enumerations.AnnotationType;
 import org.spdx.storage.IModelStore;
+import org.spdx.testbed.util.DocumentSection;
 import org.spdx.testbed.util.testclassification.TestName;
 
 /**
@@ -56,6 +59,12 @@ public class GenerationDocumentTestCase extends GenerationTestCase {
     return document;
   }
 
+  @Override
+  protected Set<DocumentSection> getComparedSections() {
+    return EnumSet.of(DocumentSection.FILES, DocumentSection.RELATIONSHIPS,
+        DocumentSection.ANNOTATIONS);
+  }
+
   @Override
   public String getName() {
     return "generationDocumentTest";
@@ -4,7 +4,9 @@
 
 package org.spdx.testbed.generationtestcases;
 
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 import org.spdx.library.InvalidSPDXAnalysisException;
 import org.spdx.library.model.Annotation;
 import org.spdx.library.model.Checksum;
@@ -14,6 +16,7 @@ import org.spdx.library.model.enumerations.ChecksumAlgorithm;
 import org.spdx.library.model.enumerations.FileType;
 import org.spdx.library.model.license.LicenseInfoFactory;
 import org.spdx.storage.IModelStore;
+import org.spdx.testbed.util.DocumentSection;
 import org.spdx.testbed.util.testclassification.TestName;
 
 /**
@@ -59,6 +62,11 @@ public class GenerationFileTestCase extends GenerationTestCase {
     return document;
   }
 
+  @Override
+  protected Set<DocumentSection> getComparedSections() {
+    return EnumSet.of(DocumentSection.FILES, DocumentSection.RELATIONSHIPS);
+  }
+
   @Override
   public String getName() {
     return "generationFileTest";
@@ -4,12 +4,15 @@
 
 package org.spdx.testbed.generationtestcases;
 
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 import org.spdx.library.InvalidSPDXAnalysisException;
 import org.spdx.library.model.SpdxDocument;
 import org.spdx.library.model.SpdxNoneElement;
 import org.spdx.library.model.license.ExtractedLicenseInfo;
 import org.spdx.library.model.license.LicenseInfoFactory;
+import org.spdx.testbed.util.DocumentSection;
 import org.spdx.testbed.util.testclassification.TestName;
 
 /**
@@ -91,6 +94,12 @@ public class GenerationLicenseTestCase extends GenerationTestCase {
     return document;
   }
 
+  @Override
+  protected Set<DocumentSection> getComparedSections() {
+    return EnumSet.of(DocumentSection.PACKAGES, DocumentSection.FILES, DocumentSection.SNIPPETS,
+        DocumentSection.EXTRACTED_LICENSES, DocumentSection.RELATIONSHIPS);
+  }
+
   @Override
   public String getName() {
     return "generationLicenseTest";
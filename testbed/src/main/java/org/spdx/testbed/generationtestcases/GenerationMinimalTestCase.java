@@ -4,9 +4,12 @@
 
 package org.spdx.testbed.generationtestcases;
 
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 import org.spdx.library.InvalidSPDXAnalysisException;
 import org.spdx.library.model.SpdxDocument;
+import org.spdx.testbed.util.DocumentSection;
 import org.spdx.testbed.util.testclassification.TestName;
 
 /**
@@ -32,6 +35,11 @@ public class GenerationMinimalTestCase extends GenerationTestCase {
     return document;
   }
 
+  @Override
+  protected Set<DocumentSection> getComparedSections() {
+    return EnumSet.of(DocumentSection.FILES, DocumentSection.RELATIONSHIPS);
+  }
+
   @Override
   public String getName() {
     return "generationMinimalTest";
@@ -5,10 +5,25 @@
 package org.spdx.testbed.generationtestcases;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import java.io.File;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import javax.annotation.Nullable;
 import org.spdx.library.InvalidSPDXAnalysisException;
 import org.spdx.library.ModelCopyManager;
 import org.spdx.library.Version;
@@ -19,8 +34,16 @@ import org.spdx.library.model.enumerations.ChecksumAlgorithm;
 import org.spdx.storage.IModelStore;
 import org.spdx.storage.simple.InMemSpdxStore;
 import org.spdx.testbed.TestCase;
+import org.spdx.testbed.TestOptions;
 import org.spdx.testbed.TestResult;
 import org.spdx.testbed.util.Comparisons;
+import org.spdx.testbed.util.DocumentSection;
+import org.spdx.testbed.util.ReferenceDocumentCache;
+import org.spdx.testbed.util.SpdxJsonNormalizer;
+import org.spdx.testbed.util.json.ComparisonRules;
+import org.spdx.testbed.util.json.DifferenceCollector;
+import org.spdx.testbed.util.json.NdjsonDifferenceSink;
+import org.spdx.testbed.util.store.CompactModelStore;
 import org.spdx.testbed.util.testclassification.GenerationTest;
 import org.spdx.tools.InvalidFileNameException;
 import org.spdx.tools.SpdxToolsHelper;
@@ -32,34 +55,350 @@ import org.spdx.tools.SpdxToolsHelper;
 @GenerationTest
 public abstract class GenerationTestCase implements TestCase {
 
+  // Files that differences are being written to, so that comparisons of the same test case and
+  // input file that run at the same time, e.g. in a batch, write to different files
+  private static final Set<Path> OPEN_DIFFERENCES_FILES = ConcurrentHashMap.newKeySet();
+  private static final int MAX_INPUT_FILE_NAME_LENGTH = 100;
+
+  // Keeps the report readable and the memory footprint bounded if the input differs completely
+  static final int MAX_REPORTED_DIFFERENCES = 1000;
+  static final int MAX_REPORTED_VALUE_SIZE = 10_000;
+  // Written differences are not held in memory, since comparisons that write them to a sink do not
+  // buffer any differences
+  static final int MAX_WRITTEN_DIFFERENCES = 1_000_000;
+
+  private static final ObjectWriter REPORT_WRITER = new ObjectMapper()
+      .writerWithDefaultPrettyPrinter();
+
+  /**
+   * Input document that is ready to be compared with the reference.
+   */
+  @FunctionalInterface
+  private interface Input {
+
+    void compareWith(Reference reference, DifferenceCollector collector)
+        throws IOException, InvalidSPDXAnalysisException;
+  }
+
   @Override
-  public TestResult test(String inputFilePath) throws IOException, InvalidFileNameException,
-      InvalidSPDXAnalysisException {
-    var inputDoc = getInputDoc(inputFilePath);
-    System.out.println(
-        "\n----------------------------------------------------------------------------------\n");
-    System.out.println("Running " + getName() + " against " + inputFilePath);
-    var referenceDoc = buildReferenceDocument();
-    var differences = Comparisons.findDifferencesInSerializedJson(inputDoc, referenceDoc);
-
-    if (differences.isEmpty()) {
-      System.out.print(this.getClass().getSimpleName() + " succeeded!\n");
-      return TestResult.builder().success(true).build();
-    } else {
-      System.out.println("Test failure in " + this.getClass().getSimpleName() + "!");
-      System.out.println("The input document " + inputFilePath
+  public TestResult test(String inputFilePath, PrintStream out) throws IOException,
+      InvalidFileNameException, InvalidSPDXAnalysisException {
+    return prepare(inputFilePath).compare().print(out);
+  }
+
+  @Override
+  public PreparedTest prepare(String inputFilePath) throws IOException,
+      InvalidFileNameException, InvalidSPDXAnalysisException {
+    return prepare(inputFilePath, null);
+  }
+
+  @Override
+  public PreparedTest prepare(String inputFilePath, @Nullable SpdxToolsHelper.SerFileType format)
+      throws IOException, InvalidFileNameException, InvalidSPDXAnalysisException {
+    return prepare(inputFilePath, format, TestOptions.DEFAULT);
+  }
+
+  @Override
+  public PreparedTest prepare(String inputFilePath, @Nullable SpdxToolsHelper.SerFileType format,
+      TestOptions options)
+      throws IOException, InvalidFileNameException, InvalidSPDXAnalysisException {
+    var referenceBuilder = options.getReferenceBuilder();
+    if (referenceBuilder == null || isReferenceLoaded(options)) {
+      var input = readInput(inputFilePath, format, options);
+      var reference = prepareReference(options);
+      return () -> compare(input, reference, inputFilePath, options);
+    }
+
+    // The reference is built while the input document is parsed
+    var reference = new FutureTask<>(() -> prepareReference(options));
+    referenceBuilder.execute(reference);
+    Input input;
+    try {
+      input = readInput(inputFilePath, format, options);
+    } catch (Exception e) {
+      // A queued build never starts, and a running one is interrupted
+      reference.cancel(true);
+      throw e;
+    }
+    return () -> compare(input, join(reference), inputFilePath, options);
+  }
+
+  // Kept and cached references are loaded instead of being built
+  private boolean isReferenceLoaded(TestOptions options) throws IOException {
+    if (options.isCompareModelStores()) {
+      return false;
+    }
+    var keptReferences = options.getKeptReferences();
+    if (keptReferences != null && keptReferences.containsKey(getClass())) {
+      return true;
+    }
+    var cache = options.getReferenceCache();
+    return cache != null && cache.contains(getName(), getClass());
+  }
+
+  // The report only holds the differences, so the documents are released once it is returned
+  private CompletedTest compare(Input input, Reference reference, String inputFilePath,
+      TestOptions options) throws IOException, InvalidSPDXAnalysisException {
+    if (options.getDifferencesDirectory() != null) {
+      return compareWritingDifferences(input, reference, inputFilePath,
+          options.getDifferencesDirectory());
+    }
+
+    var collector = createDifferenceCollector();
+    input.compareWith(reference, collector);
+
+    return out -> {
+      printHeader(out, inputFilePath);
+      if (collector.getDifferenceCount() == 0) {
+        out.print(this.getClass().getSimpleName() + " succeeded!\n");
+        return TestResult.builder().success(true).build();
+      }
+      var differences = collector.getDifferences();
+      out.println("Test failure in " + this.getClass().getSimpleName() + "!");
+      out.println("The input document " + inputFilePath
           + " did not meet the expectations. The following differences were detected:");
-      var objectMapper = new ObjectMapper();
-      objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
-      System.out.println(objectMapper.writeValueAsString(differences));
-      return TestResult.builder().success(false).differences(differences).build();
+      out.println(REPORT_WRITER.writeValueAsString(differences));
+      if (collector.getElidedDifferenceCount() > 0) {
+        out.println(collector.getElidedDifferenceCount()
+            + " further differences were detected, but not reported.");
+      }
+      return TestResult.builder()
+          .success(false)
+          .differences(differences)
+          .elidedDifferenceCount(collector.getElidedDifferenceCount())
+          .build();
+    };
+  }
+
+  // The differences are written to the file while the comparison is still running
+  private CompletedTest compareWritingDifferences(Input input, Reference reference,
+      String inputFilePath, Path differencesDirectory)
+      throws IOException, InvalidSPDXAnalysisException {
+    Files.createDirectories(differencesDirectory);
+    var differencesFile = claimDifferencesFile(differencesDirectory, inputFilePath);
+    DifferenceCollector collector;
+    try {
+      var sink = NdjsonDifferenceSink.toFile(differencesFile);
+      collector = new DifferenceCollector(MAX_WRITTEN_DIFFERENCES, MAX_REPORTED_VALUE_SIZE, sink);
+      try (sink) {
+        input.compareWith(reference, collector);
+      }
+    } finally {
+      OPEN_DIFFERENCES_FILES.remove(differencesFile);
+    }
+
+    return out -> {
+      printHeader(out, inputFilePath);
+      if (collector.getDifferenceCount() == 0) {
+        out.print(this.getClass().getSimpleName() + " succeeded!\n");
+        return TestResult.builder().success(true).build();
+      }
+      out.println("Test failure in " + this.getClass().getSimpleName() + "!");
+      out.println("The input document " + inputFilePath
+          + " did not meet the expectations. The detected differences were written to "
+          + differencesFile + ".");
+      if (collector.getElidedDifferenceCount() > 0) {
+        out.println(collector.getElidedDifferenceCount()
+            + " further differences were detected, but not written.");
+      }
+      return TestResult.builder()
+          .success(false)
+          .elidedDifferenceCount(collector.getElidedDifferenceCount())
+          .build();
+    };
+  }
+
+  // Files of earlier runs against the same input file are replaced, while comparisons that run at
+  // the same time get a numbered file each
+  private Path claimDifferencesFile(Path differencesDirectory, String inputFilePath) {
+    var fileName = getDifferencesFileName(inputFilePath);
+    var directory = differencesDirectory.toAbsolutePath().normalize();
+    var differencesFile = directory.resolve(fileName + ".ndjson");
+    for (var i = 2; !OPEN_DIFFERENCES_FILES.add(differencesFile); i++) {
+      differencesFile = directory.resolve(fileName + "-" + i + ".ndjson");
+    }
+    return differencesFile;
+  }
+
+  /**
+   * Returns the name of the file that the differences to the provided input file are written to,
+   * without extension. It consists of the name of the test case, the name of the input file with
+   * all characters other than letters, digits, dots, dashes and underscores replaced, and a hash of
+   * the absolute path of the input file, since a batch may hold input files with the same name.
+   */
+  String getDifferencesFileName(String inputFilePath) {
+    var inputFile = Path.of(inputFilePath).toAbsolutePath().normalize();
+    var inputFileName = inputFile.getFileName() == null ? ""
+        : inputFile.getFileName().toString().replaceAll("[^A-Za-z0-9._-]", "_");
+    if (inputFileName.length() > MAX_INPUT_FILE_NAME_LENGTH) {
+      inputFileName = inputFileName.substring(0, MAX_INPUT_FILE_NAME_LENGTH);
+    }
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not supported by the platform.", e);
+    }
+    var hash = digest.digest(inputFile.toString().getBytes(StandardCharsets.UTF_8));
+    var pathHash = new StringBuilder();
+    for (var i = 0; i < 4; i++) {
+      pathHash.append(String.format("%02x", hash[i]));
     }
+    return getName() + "-" + inputFileName + "-" + pathHash;
+  }
+
+  private void printHeader(PrintStream out, String inputFilePath) {
+    out.println(
+        "\n----------------------------------------------------------------------------------\n");
+    out.println("Running " + getName() + " against " + inputFilePath);
+  }
+
+  // Json inputs are read as they are, unless the model stores are compared or they are deserialized
+  // on request. Large ones are only read while they are compared, in a stream.
+  private Input readInput(String inputFilePath, @Nullable SpdxToolsHelper.SerFileType format,
+      TestOptions options)
+      throws IOException, InvalidFileNameException, InvalidSPDXAnalysisException {
+    var rules = getComparisonRules();
+    var isJson = format == null ? SpdxJsonNormalizer.isJsonFile(inputFilePath)
+        : format == SpdxToolsHelper.SerFileType.JSON;
+    if (!options.isCompareModelStores() && !options.isDeserializeJsonInputs() && isJson) {
+      var inputFile = Path.of(inputFilePath);
+      var sections = getComparedSections();
+      if (Files.size(inputFile) >= options.getStreamingThreshold()) {
+        return (reference, collector) -> Comparisons.findDifferencesInJsonFile(inputFile,
+            sections, reference.json, rules, collector);
+      }
+      var inputJson = Comparisons.readJson(inputFile, sections);
+      return (reference, collector) -> Comparisons.findDifferencesInJson(inputJson,
+          reference.json, rules, ForkJoinPool.commonPool(), collector);
+    }
+    var inputDoc = getInputDoc(inputFilePath, format, options);
+    return (reference, collector) -> {
+      if (reference.document != null) {
+        Comparisons.findDifferencesInModelStores(inputDoc, reference.document, rules, collector);
+      } else {
+        Comparisons.findDifferencesInSerializedJson(inputDoc, reference.json, rules,
+            ForkJoinPool.commonPool(), collector);
+      }
+    };
+  }
+
+  // Builds the reference document, and serializes it unless the model stores are compared
+  private Reference prepareReference(TestOptions options)
+      throws IOException, InvalidSPDXAnalysisException {
+    if (options.isCompareModelStores()) {
+      return new Reference(buildReferenceDocument(), null);
+    }
+    return new Reference(null, getReferenceJson(options));
+  }
+
+  private static Reference join(Future<Reference> reference)
+      throws IOException, InvalidSPDXAnalysisException {
+    try {
+      return reference.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InvalidSPDXAnalysisException("Interrupted while building the reference document.",
+          e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      if (e.getCause() instanceof InvalidSPDXAnalysisException) {
+        throw (InvalidSPDXAnalysisException) e.getCause();
+      }
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  /**
+   * Creates the collector for the differences detected by the test case. Override this to change
+   * the maximum number of reported differences or the maximum size of reported values.
+   */
+  protected DifferenceCollector createDifferenceCollector() {
+    return new DifferenceCollector(MAX_REPORTED_DIFFERENCES, MAX_REPORTED_VALUE_SIZE);
+  }
+
+  /**
+   * Returns the rules for comparing the input document with the reference document. Override this
+   * to adjust the comparison for parts of the document, e.g. by extending
+   * {@link ComparisonRules#DEFAULT} via {@link ComparisonRules#toBuilder()}.
+   */
+  protected ComparisonRules getComparisonRules() {
+    return ComparisonRules.DEFAULT;
+  }
+
+  /**
+   * Returns the sections of the input document that the test case compares, which have to include
+   * all sections of the reference document. Input documents in json format are read without the
+   * other sections, which are only checked for being empty. Override this for test cases that
+   * cover a part of the document only.
+   */
+  protected Set<DocumentSection> getComparedSections() {
+    return EnumSet.allOf(DocumentSection.class);
+  }
+
+  /**
+   * Returns the reference document serialized as json. If the options hold a
+   * {@link ReferenceDocumentCache}, the document is only built if the cache does not contain it
+   * yet. If the options keep the references in memory, it is only loaded once per test case
+   * class.
+   */
+  ObjectNode getReferenceJson(TestOptions options)
+      throws InvalidSPDXAnalysisException, IOException {
+    var keptReferences = options.getKeptReferences();
+    if (keptReferences == null) {
+      return loadReferenceJson(options);
+    }
+    var referenceJson = keptReferences.get(getClass());
+    if (referenceJson == null) {
+      referenceJson = loadReferenceJson(options);
+      keptReferences.putIfAbsent(getClass(), referenceJson);
+    }
+    // The comparison normalizes the reference in place, so each comparison gets a copy
+    return referenceJson.deepCopy();
+  }
+
+  private ObjectNode loadReferenceJson(TestOptions options)
+      throws InvalidSPDXAnalysisException, IOException {
+    var cache = options.getReferenceCache();
+    if (cache == null) {
+      return Comparisons.asJson(buildReferenceDocument());
+    }
+    return cache.getReferenceJson(getName(), getClass(), this::buildReferenceDocument);
   }
 
   protected SpdxDocument getInputDoc(String filePath) throws IOException,
       InvalidFileNameException, InvalidSPDXAnalysisException {
+    return getInputDoc(filePath, null);
+  }
+
+  /**
+   * Deserializes the input document in the provided format, or in the format that the extension of
+   * the file implies if none is provided.
+   */
+  protected SpdxDocument getInputDoc(String filePath, @Nullable SpdxToolsHelper.SerFileType format)
+      throws IOException, InvalidFileNameException, InvalidSPDXAnalysisException {
+    return getInputDoc(filePath, format, TestOptions.DEFAULT);
+  }
+
+  /**
+   * Same as {@link #getInputDoc(String, SpdxToolsHelper.SerFileType)}, but deserializes the input
+   * document into the model store that the provided options ask for.
+   */
+  protected SpdxDocument getInputDoc(String filePath, @Nullable SpdxToolsHelper.SerFileType format,
+      TestOptions options)
+      throws IOException, InvalidFileNameException, InvalidSPDXAnalysisException {
+    var file = new File(filePath);
     try {
-      return SpdxToolsHelper.deserializeDocument(new File(filePath));
+      var fileType = format == null ? SpdxToolsHelper.fileToFileType(file) : format;
+      if (options.isCompactInputStore()) {
+        return CompactModelStore.deserializeDocument(file, fileType);
+      }
+      return SpdxToolsHelper.deserializeDocument(file, fileType);
     } catch (InvalidSPDXAnalysisException e) {
       throw new InvalidSPDXAnalysisException(
           "The input file does not seem to be a valid SPDX document: " + e.getMessage(), e);
@@ -93,4 +432,21 @@ public abstract class GenerationTestCase implements TestCase {
     return Checksum.create(modelStore, documentUri, ChecksumAlgorithm.SHA1,
         "d6a770ba38583ed4bb4525bd96e50461655d2758");
   }
+
+  /**
+   * Reference prepared for the comparison, either the document itself or the document serialized
+   * as json.
+   */
+  private static final class Reference {
+
+    @Nullable
+    private final SpdxDocument document;
+    @Nullable
+    private final ObjectNode json;
+
+    Reference(@Nullable SpdxDocument document, @Nullable ObjectNode json) {
+      this.document = document;
+      this.json = json;
+    }
+  }
 }
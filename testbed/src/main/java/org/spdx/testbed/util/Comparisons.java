@@ -4,23 +4,47 @@
 
 package org.spdx.testbed.util;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import javax.annotation.Nonnull;
 import org.spdx.jacksonstore.JacksonSerializer;
 import org.spdx.jacksonstore.MultiFormatStore;
 import org.spdx.library.InvalidSPDXAnalysisException;
 import org.spdx.library.model.ModelObject;
 import org.spdx.library.model.SpdxDocument;
+import org.spdx.testbed.util.json.ComparisonRules;
 import org.spdx.testbed.util.json.Difference;
+import org.spdx.testbed.util.json.DifferenceCollector;
 import org.spdx.testbed.util.json.JsonComparison;
+import org.spdx.testbed.util.json.ModelStoreComparison;
+import org.spdx.testbed.util.json.ParallelJsonComparison;
+import org.spdx.testbed.util.json.StreamingJsonComparison;
 
 /**
  * Exposes methods for comparing two SPDX documents.
  */
 public class Comparisons {
 
+  // Shared by all serializations, since mappers are thread-safe and expensive to create
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private static final String SKIPPED_SECTION = "Not read, since the test case does not compare it";
+
   /**
    * Compares the two provided documents and returns a list of differences. Each difference is
    * provided with the respective values from the documents, the path of the property in the
@@ -33,23 +57,287 @@ public class Comparisons {
    * <p>Note: For technical reasons, the comparison is performed by serializing the documents to
    * json and comparing the jsons. Two of those reasons are the handling of anonymous id's in the
    * datastructure provided by java-spdx-library, and subtleties regarding related elements that can
-   * lead to infinite recursion.
+   * lead to infinite recursion. {@link #findDifferencesInModelStores} compares the model stores
+   * directly instead.
+   *
+   * <p>The serialized documents are canonicalized before they are compared: Every object and list
+   * is assigned a content hash that does not depend on the ordering of fields and list elements.
+   * Subtrees with the same hash on both sides are skipped, so only the parts of the documents that
+   * actually changed are walked.
+   *
+   * <p>The two documents are serialized concurrently, the expected one on the common pool.
+   *
+   * @return a list of {@link Difference}s
+   * @throws InvalidSPDXAnalysisException In case of parsing errors
+   */
+  public static List<Difference> findDifferencesInSerializedJson(
+      @Nonnull SpdxDocument actualDocument,
+      @Nonnull SpdxDocument expectedDocument) throws InvalidSPDXAnalysisException {
+    var expectedJson = ForkJoinPool.commonPool().submit(() -> asJson(expectedDocument));
+    var actualJson = asJson(actualDocument);
+    return JsonComparison.findDifferences(actualJson, join(expectedJson));
+  }
+
+  /**
+   * Same as {@link #findDifferencesInSerializedJson(SpdxDocument, SpdxDocument)}, but the
+   * comparison of the serialized documents is distributed on the provided pool. The returned
+   * differences are identical, including their ordering.
    *
    * @return a list of {@link Difference}s
    * @throws InvalidSPDXAnalysisException In case of parsing errors
    */
   public static List<Difference> findDifferencesInSerializedJson(
+      @Nonnull SpdxDocument actualDocument,
+      @Nonnull SpdxDocument expectedDocument,
+      @Nonnull ForkJoinPool pool) throws InvalidSPDXAnalysisException {
+    var collector = DifferenceCollector.unlimited();
+    findDifferencesInSerializedJson(actualDocument, expectedDocument, pool, collector);
+    return collector.getDifferences();
+  }
+
+  /**
+   * Same as {@link #findDifferencesInSerializedJson(SpdxDocument, SpdxDocument, ForkJoinPool)},
+   * but passes the differences to the provided collector. Once the budget of the collector is
+   * exhausted, further differences are only counted, so the comparison of documents that differ
+   * substantially still has a bounded memory footprint. The two documents are serialized
+   * concurrently, the expected one on the provided pool.
+   *
+   * @throws InvalidSPDXAnalysisException In case of parsing errors
+   */
+  public static void findDifferencesInSerializedJson(
+      @Nonnull SpdxDocument actualDocument,
+      @Nonnull SpdxDocument expectedDocument,
+      @Nonnull ForkJoinPool pool,
+      @Nonnull DifferenceCollector collector) throws InvalidSPDXAnalysisException {
+    var expectedJson = pool.submit(() -> asJson(expectedDocument));
+    var actualJson = asJson(actualDocument);
+    ParallelJsonComparison.findDifferences(actualJson, join(expectedJson),
+        ComparisonRules.DEFAULT, pool, collector);
+  }
+
+  /**
+   * Same as
+   * {@link #findDifferencesInSerializedJson(SpdxDocument, SpdxDocument, ForkJoinPool,
+   * DifferenceCollector)}, but with an expected document that has already been serialized via
+   * {@link #asJson(ModelObject)}, e.g. by the {@link ReferenceDocumentCache}.
+   *
+   * @throws InvalidSPDXAnalysisException In case of parsing errors
+   */
+  public static void findDifferencesInSerializedJson(
+      @Nonnull SpdxDocument actualDocument,
+      @Nonnull ObjectNode expectedJson,
+      @Nonnull ForkJoinPool pool,
+      @Nonnull DifferenceCollector collector) throws InvalidSPDXAnalysisException {
+    findDifferencesInSerializedJson(actualDocument, expectedJson, ComparisonRules.DEFAULT, pool,
+        collector);
+  }
+
+  /**
+   * Same as
+   * {@link #findDifferencesInSerializedJson(SpdxDocument, ObjectNode, ForkJoinPool,
+   * DifferenceCollector)}, but applies the provided rules instead of the default ones.
+   *
+   * @throws InvalidSPDXAnalysisException In case of parsing errors
+   */
+  public static void findDifferencesInSerializedJson(
+      @Nonnull SpdxDocument actualDocument,
+      @Nonnull ObjectNode expectedJson,
+      @Nonnull ComparisonRules rules,
+      @Nonnull ForkJoinPool pool,
+      @Nonnull DifferenceCollector collector) throws InvalidSPDXAnalysisException {
+    var actualJson = asJson(actualDocument);
+    ParallelJsonComparison.findDifferences(actualJson, expectedJson, rules, pool, collector);
+  }
+
+  /**
+   * Reads an SPDX document in json format without deserializing it via java-spdx-library, and
+   * normalizes it via {@link SpdxJsonNormalizer}. This skips the round trip through a model store
+   * that {@link #findDifferencesInSerializedJson} requires, which dominates the cost of comparing
+   * large documents.
+   *
+   * <p>Note: Unlike deserializing, reading the document does not validate it.
+   *
+   * @throws IOException In case the file cannot be read or does not contain a json object
+   */
+  public static ObjectNode readJson(@Nonnull Path file) throws IOException {
+    return readJson(file, EnumSet.allOf(DocumentSection.class));
+  }
+
+  /**
+   * Same as {@link #readJson(Path)}, but only reads the provided sections of the document. The
+   * other sections are skipped without building their trees. Those that are not empty are replaced
+   * by a text saying that they were skipped, so they still differ from a document in which they
+   * are absent or differ otherwise.
+   *
+   * @throws IOException In case the file cannot be read or does not contain a json object
+   */
+  public static ObjectNode readJson(@Nonnull Path file, @Nonnull Set<DocumentSection> sections)
+      throws IOException {
+    var skippedFields = getSkippedFields(sections);
+    var json = MAPPER.createObjectNode();
+    try (var parser = MAPPER.createParser(Files.newInputStream(file))) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new IOException("The input file does not contain a json object: " + file);
+      }
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        var fieldName = parser.getCurrentName();
+        var token = parser.nextToken();
+        if (skippedFields.contains(fieldName) && token.isStructStart()) {
+          if (skipContent(parser)) {
+            json.put(fieldName, SKIPPED_SECTION);
+          }
+        } else {
+          json.set(fieldName, MAPPER.readTree(parser));
+        }
+      }
+    }
+    SpdxJsonNormalizer.normalize(json);
+    return json;
+  }
+
+  private static Set<String> getSkippedFields(Set<DocumentSection> sections) {
+    var skippedFields = new HashSet<String>();
+    for (var section : DocumentSection.values()) {
+      if (!sections.contains(section)) {
+        skippedFields.add(section.getFieldName());
+      }
+    }
+    return skippedFields;
+  }
+
+  // Advances the parser from the start to the end of a container and returns whether it has content
+  static boolean skipContent(JsonParser parser) throws IOException {
+    var token = parser.nextToken();
+    if (token.isStructEnd()) {
+      return false;
+    }
+    var depth = 1;
+    while (!token.isStructEnd() || --depth > 0) {
+      if (token.isStructStart()) {
+        depth++;
+      }
+      token = parser.nextToken();
+    }
+    return true;
+  }
+
+  /**
+   * Compares a document read via {@link #readJson(Path)} with an expected document that has been
+   * serialized via {@link #asJson(ModelObject)}, distributing the comparison on the provided pool.
+   * The expected document is normalized in place the same way as the actual document first.
+   */
+  public static void findDifferencesInJson(
+      @Nonnull ObjectNode actualJson,
+      @Nonnull ObjectNode expectedJson,
+      @Nonnull ComparisonRules rules,
+      @Nonnull ForkJoinPool pool,
+      @Nonnull DifferenceCollector collector) {
+    SpdxJsonNormalizer.normalize(expectedJson);
+    ParallelJsonComparison.findDifferences(actualJson, expectedJson, rules, pool, collector);
+  }
+
+  /**
+   * Compares the two provided documents by walking the property graphs of their model stores,
+   * without serializing them to json. Elements with an Spdx id are matched by their id and compared
+   * once, anonymous elements are matched by a hash of their content. Values are compared with the
+   * same normalization as in {@link #findDifferencesInSerializedJson}, but the paths of the
+   * differences consist of the property names of the model store, see
+   * {@link ModelStoreComparison}.
+   *
+   * @return a list of {@link Difference}s
+   * @throws InvalidSPDXAnalysisException In case the model stores cannot be read
+   */
+  public static List<Difference> findDifferencesInModelStores(
       @Nonnull SpdxDocument actualDocument,
       @Nonnull SpdxDocument expectedDocument) throws InvalidSPDXAnalysisException {
-    var expectedJson = asJson(actualDocument);
-    var actualJson = asJson(expectedDocument);
-    return JsonComparison.findDifferences(expectedJson, actualJson);
+    var collector = DifferenceCollector.unlimited();
+    findDifferencesInModelStores(actualDocument, expectedDocument, ComparisonRules.DEFAULT,
+        collector);
+    return collector.getDifferences();
+  }
+
+  /**
+   * Same as {@link #findDifferencesInModelStores(SpdxDocument, SpdxDocument)}, but applies the
+   * provided rules to the property names and passes the differences to the provided collector.
+   *
+   * @throws InvalidSPDXAnalysisException In case the model stores cannot be read
+   */
+  public static void findDifferencesInModelStores(
+      @Nonnull SpdxDocument actualDocument,
+      @Nonnull SpdxDocument expectedDocument,
+      @Nonnull ComparisonRules rules,
+      @Nonnull DifferenceCollector collector) throws InvalidSPDXAnalysisException {
+    ModelStoreComparison.findDifferences(actualDocument.getModelStore(),
+        actualDocument.getDocumentUri(), expectedDocument.getModelStore(),
+        expectedDocument.getDocumentUri(), rules, collector);
   }
 
-  private static ObjectNode asJson(ModelObject modelObject) throws InvalidSPDXAnalysisException {
-    var serializer = new JacksonSerializer(new ObjectMapper(),
-        MultiFormatStore.Format.JSON_PRETTY, MultiFormatStore.Verbose.COMPACT,
-        modelObject.getModelStore());
+  /**
+   * Compares the SPDX document in json format in the provided file with an expected document that
+   * has been serialized via {@link #asJson(ModelObject)}, without holding the actual document in
+   * memory. The semantics are the same as in {@link #findDifferencesInJson} for a document read
+   * via {@link #readJson(Path, Set)}, but the actual document is consumed as a token stream and
+   * normalized while it is read, see {@link StreamingJsonComparison}. The normalization takes a
+   * first pass over the file. The expected document is normalized in place first.
+   *
+   * <p>The file is mapped into memory if its size allows, so that the differences reference the
+   * values that only exist in the actual document by their range in the file instead of holding
+   * them as trees. Those values are reported as they are in the file, without the normalization.
+   *
+   * <p>Note: Unlike {@link #findDifferencesInJson}, the comparison runs on the calling thread only.
+   *
+   * @throws IOException In case the file cannot be read or does not contain a json object
+   */
+  public static void findDifferencesInJsonFile(
+      @Nonnull Path actualFile,
+      @Nonnull Set<DocumentSection> sections,
+      @Nonnull ObjectNode expectedJson,
+      @Nonnull ComparisonRules rules,
+      @Nonnull DifferenceCollector collector) throws IOException {
+    var normalization = SpdxJsonNormalizer.forStream(actualFile, getSkippedFields(sections),
+        TextNode.valueOf(SKIPPED_SECTION));
+    SpdxJsonNormalizer.normalize(expectedJson);
+    try (var channel = FileChannel.open(actualFile, StandardOpenOption.READ)) {
+      if (channel.size() <= Integer.MAX_VALUE) {
+        // The mapping stays valid after the channel is closed, as long as the buffer is referenced
+        var source = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        StreamingJsonComparison.findDifferences(source, expectedJson, rules, normalization,
+            collector);
+        return;
+      }
+    }
+    try (var actualParser = MAPPER.createParser(Files.newInputStream(actualFile))) {
+      StreamingJsonComparison.findDifferences(actualParser, expectedJson, rules, normalization,
+          collector);
+    }
+  }
+
+  /**
+   * Serializes the provided document to json, the same way as for the comparisons.
+   *
+   * @throws InvalidSPDXAnalysisException In case the document cannot be serialized
+   */
+  public static ObjectNode asJson(ModelObject modelObject) throws InvalidSPDXAnalysisException {
+    var serializer = new JacksonSerializer(MAPPER, MultiFormatStore.Format.JSON_PRETTY,
+        MultiFormatStore.Verbose.COMPACT, modelObject.getModelStore());
     return serializer.docToJsonNode(modelObject.getDocumentUri());
   }
+
+  private static ObjectNode join(ForkJoinTask<ObjectNode> serialization)
+      throws InvalidSPDXAnalysisException {
+    try {
+      return serialization.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InvalidSPDXAnalysisException("Interrupted while serializing the document.", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof InvalidSPDXAnalysisException) {
+        throw (InvalidSPDXAnalysisException) e.getCause();
+      }
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException(e.getCause());
+    }
+  }
 }
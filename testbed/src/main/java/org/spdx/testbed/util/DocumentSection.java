@@ -0,0 +1,29 @@
+// SPDX-FileCopyrightText: TNG Technology Consulting GmbH
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.spdx.testbed.util;
+
+/**
+ * Lists the top-level sections of SPDX documents in json format that hold the elements of a
+ * document, and that test cases may thus skip if they don't compare them. All other top-level
+ * fields are small and always read.
+ */
+public enum DocumentSection {
+  PACKAGES("packages"),
+  FILES("files"),
+  SNIPPETS("snippets"),
+  EXTRACTED_LICENSES("hasExtractedLicensingInfos"),
+  RELATIONSHIPS("relationships"),
+  ANNOTATIONS("annotations");
+
+  private final String fieldName;
+
+  DocumentSection(String fieldName) {
+    this.fieldName = fieldName;
+  }
+
+  public String getFieldName() {
+    return fieldName;
+  }
+}
@@ -0,0 +1,244 @@
+// SPDX-FileCopyrightText: TNG Technology Consulting GmbH
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.spdx.testbed.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.zip.ZipFile;
+import org.spdx.jacksonstore.JacksonSerializer;
+import org.spdx.library.InvalidSPDXAnalysisException;
+import org.spdx.library.model.SpdxDocument;
+
+/**
+ * Persists the serialized reference documents of test cases in a directory, so validation runs
+ * don't have to build and serialize them again. Reference documents only change along with the
+ * code that builds and serializes them, so the entries are keyed by the name of the test case and a
+ * content version, which is derived from the jars or class directories holding the test case, the
+ * testbed, the Spdx-Java-Library and its json serializer. If the version of this code can't be
+ * determined, the documents are built without being cached. Whenever an entry is written, the
+ * entries of the same test case with other content versions are deleted, so the directory doesn't
+ * grow with each rebuild of the testbed. Cached documents are read with a single memory-mapped
+ * read. The content hashes used by the comparison are recomputed from the loaded document, which
+ * costs a single pass over it.
+ */
+public class ReferenceDocumentCache {
+
+  /**
+   * Builds the reference document of a test case.
+   */
+  @FunctionalInterface
+  public interface ReferenceDocumentBuilder {
+
+    SpdxDocument build() throws InvalidSPDXAnalysisException;
+  }
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  // Classes whose code serializes the reference documents, besides the test cases building them
+  private static final List<Class<?>> SERIALIZATION_CLASSES = List.of(Comparisons.class,
+      SpdxDocument.class, JacksonSerializer.class);
+  private static final int CONTENT_VERSION_BYTES = 8;
+  // The code doesn't change while the testbed runs, so each jar or directory is only digested once
+  private static final Map<Path, byte[]> CODE_SOURCE_DIGESTS = new ConcurrentHashMap<>();
+
+  private final Path directory;
+
+  public ReferenceDocumentCache(Path directory) {
+    this.directory = directory;
+  }
+
+  /**
+   * Returns the serialized reference document of the provided test case. The document is only
+   * built and serialized if the cache does not contain it yet, and stored afterwards. It is built
+   * each time if the content version of the test case can't be determined.
+   *
+   * @param testCaseName  name of the test case
+   * @param testCaseClass class of the test case, which determines the content version
+   * @param builder       builds the reference document in case of a cache miss
+   * @throws InvalidSPDXAnalysisException In case the reference document cannot be built
+   * @throws IOException                  In case the cache cannot be read or written
+   */
+  public ObjectNode getReferenceJson(String testCaseName, Class<?> testCaseClass,
+      ReferenceDocumentBuilder builder) throws InvalidSPDXAnalysisException, IOException {
+    var contentVersion = contentVersionOf(testCaseClass);
+    if (contentVersion.isEmpty()) {
+      return Comparisons.asJson(builder.build());
+    }
+    var entry = entryOf(testCaseName, contentVersion.get());
+    if (Files.isRegularFile(entry)) {
+      return read(entry);
+    }
+
+    var referenceJson = Comparisons.asJson(builder.build());
+    write(entry, referenceJson);
+    deleteOtherVersions(testCaseName, entry);
+    return referenceJson;
+  }
+
+  /**
+   * Returns whether the cache contains the serialized reference document of the provided test
+   * case, so that it is read instead of being built.
+   *
+   * @param testCaseName  name of the test case
+   * @param testCaseClass class of the test case, which determines the content version
+   * @throws IOException In case the content version cannot be determined
+   */
+  public boolean contains(String testCaseName, Class<?> testCaseClass) throws IOException {
+    var contentVersion = contentVersionOf(testCaseClass);
+    return contentVersion.isPresent()
+        && Files.isRegularFile(entryOf(testCaseName, contentVersion.get()));
+  }
+
+  private Path entryOf(String testCaseName, String contentVersion) {
+    return directory.resolve(testCaseName + "-" + contentVersion + ".json");
+  }
+
+  private static ObjectNode read(Path entry) throws IOException {
+    try (var channel = FileChannel.open(entry, StandardOpenOption.READ)) {
+      var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      return (ObjectNode) MAPPER.readTree(new ByteBufferBackedInputStream(buffer));
+    }
+  }
+
+  // Entries are written to a temporary file first, so concurrent runs never read a partial entry
+  private void write(Path entry, ObjectNode referenceJson) throws IOException {
+    Files.createDirectories(directory);
+    var temporaryFile = Files.createTempFile(directory, entry.getFileName().toString(), ".tmp");
+    try {
+      MAPPER.writeValue(temporaryFile.toFile(), referenceJson);
+      try {
+        Files.move(temporaryFile, entry, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temporaryFile, entry, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(temporaryFile);
+    }
+  }
+
+  // Entries of other test cases don't match, since content versions are hexadecimal and have a
+  // fixed length. Entries that are deleted concurrently, e.g. by another run, are skipped.
+  private void deleteOtherVersions(String testCaseName, Path entry) throws IOException {
+    var entryPattern = Pattern.compile(Pattern.quote(testCaseName + "-") + "\\p{XDigit}{"
+        + 2 * CONTENT_VERSION_BYTES + "}\\.json");
+    List<Path> otherVersions;
+    try (var entries = Files.list(directory)) {
+      otherVersions = entries
+          .filter(path -> !path.equals(entry))
+          .filter(path -> entryPattern.matcher(path.getFileName().toString()).matches())
+          .collect(Collectors.toList());
+    }
+    for (var otherVersion : otherVersions) {
+      Files.deleteIfExists(otherVersion);
+    }
+  }
+
+  // Covers the code of the test case, including its superclasses and the helpers it uses, and the
+  // code serializing the reference document. Code that isn't loaded from a jar or a directory is
+  // covered by the version of its package, and without that there is no content version.
+  static Optional<String> contentVersionOf(Class<?> testCaseClass) throws IOException {
+    var classes = new ArrayList<Class<?>>();
+    classes.add(testCaseClass);
+    classes.addAll(SERIALIZATION_CLASSES);
+    var digest = createDigest();
+    var digestedCodeSources = new HashSet<Path>();
+    for (var type : classes) {
+      var codeSource = codeSourceOf(type);
+      if (codeSource.isPresent()) {
+        if (digestedCodeSources.add(codeSource.get())) {
+          digest.update(digestCodeSource(codeSource.get()));
+        }
+        continue;
+      }
+      var version = type.getPackage() == null ? null
+          : type.getPackage().getImplementationVersion();
+      if (version == null) {
+        return Optional.empty();
+      }
+      digest.update(version.getBytes(StandardCharsets.UTF_8));
+    }
+    var hash = digest.digest();
+    var contentVersion = new StringBuilder();
+    for (var i = 0; i < CONTENT_VERSION_BYTES; i++) {
+      contentVersion.append(String.format("%02x", hash[i]));
+    }
+    return Optional.of(contentVersion.toString());
+  }
+
+  private static Optional<Path> codeSourceOf(Class<?> type) {
+    var codeSource = type.getProtectionDomain().getCodeSource();
+    if (codeSource == null || codeSource.getLocation() == null) {
+      return Optional.empty();
+    }
+    try {
+      var path = Path.of(codeSource.getLocation().toURI()).toAbsolutePath().normalize();
+      return Files.exists(path) ? Optional.of(path) : Optional.empty();
+    } catch (URISyntaxException | IllegalArgumentException | FileSystemNotFoundException e) {
+      return Optional.empty();
+    }
+  }
+
+  // Jars are covered by the names and checksums of their entries, which are read from the central
+  // directory without extracting the entries, and directories by the files they contain
+  private static byte[] digestCodeSource(Path codeSource) throws IOException {
+    var codeSourceDigest = CODE_SOURCE_DIGESTS.get(codeSource);
+    if (codeSourceDigest != null) {
+      return codeSourceDigest;
+    }
+    var digest = createDigest();
+    if (Files.isDirectory(codeSource)) {
+      List<Path> files;
+      try (var paths = Files.walk(codeSource)) {
+        files = paths.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+      }
+      for (var file : files) {
+        digest.update(codeSource.relativize(file).toString().getBytes(StandardCharsets.UTF_8));
+        digest.update(Files.readAllBytes(file));
+      }
+    } else {
+      try (var jar = new ZipFile(codeSource.toFile())) {
+        var entries = jar.entries();
+        while (entries.hasMoreElements()) {
+          var entry = entries.nextElement();
+          digest.update(entry.getName().getBytes(StandardCharsets.UTF_8));
+          digest.update(ByteBuffer.allocate(2 * Long.BYTES).putLong(entry.getCrc())
+              .putLong(entry.getSize()).array());
+        }
+      }
+    }
+    codeSourceDigest = digest.digest();
+    CODE_SOURCE_DIGESTS.put(codeSource, codeSourceDigest);
+    return codeSourceDigest;
+  }
+
+  private static MessageDigest createDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not supported by the platform.", e);
+    }
+  }
+}
@@ -0,0 +1,283 @@
+// SPDX-FileCopyrightText: TNG Technology Consulting GmbH
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.spdx.testbed.util;
+
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+import org.spdx.library.InvalidSPDXAnalysisException;
+import org.spdx.library.ModelCopyManager;
+import org.spdx.library.SpdxConstants;
+import org.spdx.library.model.license.LicenseInfoFactory;
+import org.spdx.storage.simple.InMemSpdxStore;
+import org.spdx.testbed.util.json.StreamNormalization;
+
+/**
+ * Normalizes SPDX documents in json format that are compared without deserializing them via
+ * java-spdx-library, so they can be compared with documents serialized by the library. Both
+ * documents of a comparison are normalized the same way, which makes the normalization independent
+ * of the details of the serializer. It covers the differences between equivalent documents that
+ * the comparison doesn't handle itself:
+ *
+ * <ul>
+ *   <li>License expressions are rendered the way the library renders them after parsing, e.g.
+ *   with the canonical case of listed license ids.</li>
+ *   <li>The elements described by the document are listed both in documentDescribes and as
+ *   DESCRIBES relationships of the document, no matter which of the two forms the document
+ *   uses.</li>
+ * </ul>
+ *
+ * <p>Documents that are too large to be held as a tree are normalized while they are streamed
+ * instead, see {@link #forStream}.
+ */
+public class SpdxJsonNormalizer {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private static final String DEFAULT_DOCUMENT_URI = "https://normalized.spdx.json";
+  private static final String DOCUMENT_NAMESPACE = "documentNamespace";
+  private static final String DESCRIBES = "DESCRIBES";
+  private static final String DOCUMENT_DESCRIBES = "documentDescribes";
+  private static final String RELATIONSHIPS = "relationships";
+  private static final String SPDX_ELEMENT_ID = "spdxElementId";
+  private static final String RELATIONSHIP_TYPE = "relationshipType";
+  private static final String RELATED_SPDX_ELEMENT = "relatedSpdxElement";
+
+  private static final Map<String, List<String>> LICENSE_FIELDS_BY_LIST = Map.of(
+      "packages", List.of("licenseConcluded", "licenseDeclared", "licenseInfoFromFiles"),
+      "files", List.of("licenseConcluded", "licenseInfoInFiles"),
+      "snippets", List.of("licenseConcluded", "licenseInfoInSnippets"));
+
+  // License expressions are parsed into a throwaway store, so parsing has no lasting side effects
+  private final InMemSpdxStore licenseStore = new InMemSpdxStore();
+  private final ModelCopyManager copyManager = new ModelCopyManager();
+  private final Map<String, String> normalizedLicenses = new HashMap<>();
+  private final String documentUri;
+
+  private SpdxJsonNormalizer(String documentUri) {
+    this.documentUri = documentUri;
+  }
+
+  /**
+   * Checks whether the file is an SPDX document in json format, judging by its name.
+   */
+  public static boolean isJsonFile(String filePath) {
+    return filePath.toLowerCase(Locale.ROOT).endsWith(".json");
+  }
+
+  /**
+   * Normalizes the provided document in place.
+   */
+  public static void normalize(ObjectNode document) {
+    var normalizer = new SpdxJsonNormalizer(
+        document.path(DOCUMENT_NAMESPACE).asText(DEFAULT_DOCUMENT_URI));
+    for (var listName : LICENSE_FIELDS_BY_LIST.keySet()) {
+      for (var element : document.path(listName)) {
+        normalizer.normalizeLicenses(listName, element);
+      }
+    }
+    findMissingDescribedElements(document).forEach(
+        (fieldName, elements) -> withArray(document, fieldName).addAll(elements));
+  }
+
+  /**
+   * Prepares normalizing the document in json format in the provided file while a
+   * {@link org.spdx.testbed.util.json.StreamingJsonComparison} reads it, with the same result as
+   * {@link #normalize(ObjectNode)}. This takes a first pass over the file, which only reads the
+   * fields of the document that determine the described elements, and its DESCRIBES
+   * relationships. The objects and lists in the provided top-level fields are not read, but
+   * replaced by the provided value if they have content, and dropped otherwise.
+   *
+   * @throws IOException In case the file cannot be read or does not contain a json object
+   */
+  static StreamNormalization forStream(Path file, Set<String> skippedFields,
+      JsonNode skippedValue) throws IOException {
+    // Holds the fields that normalize() reads besides the license fields of the lists
+    var summary = MAPPER.createObjectNode();
+    try (var parser = MAPPER.createParser(Files.newInputStream(file))) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new IOException("The input file does not contain a json object: " + file);
+      }
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        var fieldName = parser.getCurrentName();
+        var token = parser.nextToken();
+        if (skippedFields.contains(fieldName) && token.isStructStart()) {
+          if (Comparisons.skipContent(parser)) {
+            summary.set(fieldName, skippedValue);
+          }
+        } else if (fieldName.equals(RELATIONSHIPS) && token == JsonToken.START_ARRAY) {
+          var relationships = summary.putArray(RELATIONSHIPS);
+          while (parser.nextToken() != JsonToken.END_ARRAY) {
+            JsonNode relationship = MAPPER.readTree(parser);
+            if (DESCRIBES.equals(relationship.path(RELATIONSHIP_TYPE).asText())) {
+              relationships.add(relationship);
+            }
+          }
+        } else if (fieldName.equals(RELATIONSHIPS) || fieldName.equals(DOCUMENT_DESCRIBES)
+            || fieldName.equals(SpdxConstants.SPDX_IDENTIFIER)
+            || fieldName.equals(DOCUMENT_NAMESPACE)) {
+          summary.set(fieldName, MAPPER.readTree(parser));
+        } else {
+          parser.skipChildren();
+        }
+      }
+    }
+    return new StreamedDocument(
+        new SpdxJsonNormalizer(summary.path(DOCUMENT_NAMESPACE).asText(DEFAULT_DOCUMENT_URI)),
+        findMissingDescribedElements(summary), skippedFields, skippedValue);
+  }
+
+  // Checks whether normalizing the license fields would change the element
+  private boolean hasUnnormalizedLicenses(String listName, JsonNode element) {
+    for (var fieldName : LICENSE_FIELDS_BY_LIST.getOrDefault(listName, List.of())) {
+      var value = element.path(fieldName);
+      for (var license : value.isArray() ? value : List.of(value)) {
+        if (license.isTextual()
+            && !normalizeLicense(license.textValue()).equals(license.textValue())) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private void normalizeLicenses(String listName, JsonNode element) {
+    var fieldNames = LICENSE_FIELDS_BY_LIST.get(listName);
+    if (fieldNames == null || !element.isObject()) {
+      return;
+    }
+    for (var fieldName : fieldNames) {
+      var value = element.get(fieldName);
+      if (value != null && value.isTextual()) {
+        ((ObjectNode) element).put(fieldName, normalizeLicense(value.textValue()));
+      } else if (value != null && value.isArray()) {
+        var licenses = (ArrayNode) value;
+        for (var i = 0; i < licenses.size(); i++) {
+          if (licenses.get(i).isTextual()) {
+            licenses.set(i, TextNode.valueOf(normalizeLicense(licenses.get(i).textValue())));
+          }
+        }
+      }
+    }
+  }
+
+  // Expressions the library can't parse are left as they are, the comparison reports them anyway
+  private String normalizeLicense(String license) {
+    return normalizedLicenses.computeIfAbsent(license, expression -> {
+      try {
+        return LicenseInfoFactory.parseSPDXLicenseString(expression, licenseStore, documentUri,
+            copyManager).toString();
+      } catch (InvalidSPDXAnalysisException e) {
+        return expression;
+      }
+    });
+  }
+
+  // Returns the elements to append to documentDescribes and relationships, by field name
+  private static Map<String, List<JsonNode>> findMissingDescribedElements(ObjectNode document) {
+    var documentId = document.path(SpdxConstants.SPDX_IDENTIFIER)
+        .asText(SpdxConstants.SPDX_DOCUMENT_ID);
+    Set<String> describedIds = new LinkedHashSet<>();
+    Set<String> describedIdsInRelationships = new LinkedHashSet<>();
+    for (var describedId : document.path(DOCUMENT_DESCRIBES)) {
+      describedIds.add(describedId.asText());
+    }
+    for (var relationship : document.path(RELATIONSHIPS)) {
+      if (isDescribesRelationship(relationship, documentId)) {
+        describedIdsInRelationships.add(relationship.path(RELATED_SPDX_ELEMENT).asText());
+      }
+    }
+    var describedIdsInList = Set.copyOf(describedIds);
+    describedIds.addAll(describedIdsInRelationships);
+
+    var missingElements = new LinkedHashMap<String, List<JsonNode>>();
+    var relationshipsSkipped = !hasListOrNone(document, RELATIONSHIPS);
+    for (var describedId : describedIds) {
+      if (!describedIdsInList.contains(describedId)) {
+        missingElements.computeIfAbsent(DOCUMENT_DESCRIBES, fieldName -> new ArrayList<>())
+            .add(TextNode.valueOf(describedId));
+      }
+      if (!describedIdsInRelationships.contains(describedId) && !relationshipsSkipped) {
+        missingElements.computeIfAbsent(RELATIONSHIPS, fieldName -> new ArrayList<>())
+            .add(MAPPER.createObjectNode()
+                .put(SPDX_ELEMENT_ID, documentId)
+                .put(RELATIONSHIP_TYPE, DESCRIBES)
+                .put(RELATED_SPDX_ELEMENT, describedId));
+      }
+    }
+    return missingElements;
+  }
+
+  private static boolean isDescribesRelationship(JsonNode relationship, String documentId) {
+    return documentId.equals(relationship.path(SPDX_ELEMENT_ID).asText())
+        && DESCRIBES.equals(relationship.path(RELATIONSHIP_TYPE).asText());
+  }
+
+  // Sections that were skipped when the document was read are left as they are
+  private static boolean hasListOrNone(ObjectNode document, String fieldName) {
+    var value = document.get(fieldName);
+    return value == null || value.isArray();
+  }
+
+  private static ArrayNode withArray(ObjectNode document, String fieldName) {
+    var array = document.get(fieldName);
+    return array != null && array.isArray() ? (ArrayNode) array : document.putArray(fieldName);
+  }
+
+  /**
+   * Normalization of a streamed document, for which the missing described elements have been
+   * determined up front.
+   */
+  private static final class StreamedDocument implements StreamNormalization {
+
+    private final SpdxJsonNormalizer normalizer;
+    private final Map<String, List<JsonNode>> additionalElements;
+    private final Set<String> skippedFields;
+    private final JsonNode skippedValue;
+
+    StreamedDocument(SpdxJsonNormalizer normalizer, Map<String, List<JsonNode>> additionalElements,
+        Set<String> skippedFields, JsonNode skippedValue) {
+      this.normalizer = normalizer;
+      this.additionalElements = additionalElements;
+      this.skippedFields = skippedFields;
+      this.skippedValue = skippedValue;
+    }
+
+    @Override
+    public JsonNode normalizeElement(String fieldName, JsonNode element) {
+      if (!normalizer.hasUnnormalizedLicenses(fieldName, element)) {
+        return element;
+      }
+      var normalizedElement = element.deepCopy();
+      normalizer.normalizeLicenses(fieldName, normalizedElement);
+      return normalizedElement;
+    }
+
+    @Override
+    public Map<String, List<JsonNode>> getAdditionalElements() {
+      return additionalElements;
+    }
+
+    @Override
+    @Nullable
+    public JsonNode getSkippedValue(String fieldName) {
+      return skippedFields.contains(fieldName) ? skippedValue : null;
+    }
+  }
+}
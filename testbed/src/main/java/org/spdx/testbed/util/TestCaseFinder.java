@@ -7,6 +7,7 @@ import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import org.spdx.testbed.TestCase;
@@ -23,6 +24,10 @@ import org.springframework.core.type.filter.AnnotationTypeFilter;
  */
 public class TestCaseFinder {
 
+  // Scanning the classpath dominates the cost of finding test cases, so the test cases found for an
+  // annotation and its attributes are kept for further calls, e.g. in the TestDaemon
+  private final Map<List<Object>, List<TestCase>> foundTestCases = new ConcurrentHashMap<>();
+
   /**
    * Find all test cases that match all the provided categories.
    */
@@ -34,16 +39,13 @@ public class TestCaseFinder {
   }
 
   /**
-   * Find all test cases matching any of the provided names.
+   * Find all test cases matching any of the provided names. Names without a matching test case are
+   * skipped.
    */
   public List<TestCase> findTestCasesByNames(List<String> names) {
     var foundTestCases = new ArrayList<TestCase>();
     for (var name : names) {
-      var cases = determineTestCases(TestName.class, Map.of("value", name));
-      if (cases.isEmpty()) {
-        System.out.println("No test case found for name " + name + "!");
-      }
-      foundTestCases.addAll(cases);
+      foundTestCases.addAll(determineTestCases(TestName.class, Map.of("value", name)));
     }
     return foundTestCases;
   }
@@ -70,10 +72,17 @@ public class TestCaseFinder {
    * @param requiredAttributes attributes on the annotation that are required. Can be an empty map
    *                           in case no attributes are required
    * @return one instance of each class satisfying the search criteria, constructed via no-args
-   *     constructor
+   *     constructor once per finder
    */
   private List<TestCase> determineTestCases(Class<? extends Annotation> annotationClass,
       Map<String, Object> requiredAttributes) {
+    return new ArrayList<>(foundTestCases.computeIfAbsent(
+        List.of(annotationClass, requiredAttributes),
+        key -> scanTestCases(annotationClass, requiredAttributes)));
+  }
+
+  private List<TestCase> scanTestCases(Class<? extends Annotation> annotationClass,
+      Map<String, Object> requiredAttributes) {
     var provider = new ClassPathScanningCandidateComponentProvider(false);
     provider.addIncludeFilter(new AnnotationTypeFilter(annotationClass));
 
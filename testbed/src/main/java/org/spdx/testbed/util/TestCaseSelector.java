@@ -22,7 +22,7 @@ public class TestCaseSelector {
     this.testCaseFinder = new TestCaseFinder();
   }
 
-  // Currently used only for testing
+  // Used for testing, and to share the test cases found by a finder across selections
   public TestCaseSelector(TestCaseFinder testCaseFinder) {
     this.testCaseFinder = testCaseFinder;
   }
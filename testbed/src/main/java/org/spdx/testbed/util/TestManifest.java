@@ -0,0 +1,204 @@
+// SPDX-FileCopyrightText: TNG Technology Consulting GmbH
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.spdx.testbed.util;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import javax.annotation.Nullable;
+import org.spdx.testbed.TestCase;
+import org.spdx.testbed.TestPipeline;
+import org.spdx.testbed.TestResult;
+import org.spdx.tools.SpdxToolsHelper;
+
+/**
+ * Manifest of the tests to run in batch mode, which is read line by line while the tests run, so
+ * that it may list any number of tests. Each entry names a test case, the input file, and
+ * optionally the format of the input file, e.g. json or tag. Input files without a format are read
+ * in the format that their extension implies, and relative paths are resolved against the
+ * directory of the manifest.
+ *
+ * <p>Manifests with the extension .csv hold the comma-separated test case, input file and format
+ * of an entry per line, and may start with a header line, e.g. {@code test_case,input_file,format}.
+ * All other manifests hold a json object per line, e.g.
+ * {@code {"testCase": "generationMinimalTest", "inputFile": "minimal.json", "format": "json"}}.
+ * Blank lines are skipped.
+ *
+ * <p>Entries that can't be parsed or that name an unknown test case or format fail when they are
+ * run, so that they are reported like other failing tests and don't stop the remaining entries.
+ */
+public class TestManifest implements TestPipeline.TaskSource, Closeable {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private final BufferedReader reader;
+  private final boolean csv;
+  private final Path baseDirectory;
+  private final Map<String, TestCase> testCases;
+  private int lineNumber;
+
+  TestManifest(BufferedReader reader, boolean csv, Path baseDirectory,
+      Map<String, TestCase> testCases) {
+    this.reader = reader;
+    this.csv = csv;
+    this.baseDirectory = baseDirectory;
+    this.testCases = testCases;
+  }
+
+  /**
+   * Opens the manifest at the provided path, whose entries may name all available test cases.
+   */
+  public static TestManifest open(Path path) throws IOException {
+    return open(path, new TestCaseFinder());
+  }
+
+  /**
+   * Opens the manifest at the provided path, whose entries may name all test cases that the
+   * provided finder finds.
+   */
+  public static TestManifest open(Path path, TestCaseFinder testCaseFinder) throws IOException {
+    var testCases = testCaseFinder.findAllTestCases().stream()
+        .collect(Collectors.toMap(TestCase::getName, Function.identity()));
+    var absolutePath = path.toAbsolutePath();
+    return new TestManifest(Files.newBufferedReader(absolutePath, StandardCharsets.UTF_8),
+        absolutePath.toString().toLowerCase(Locale.ROOT).endsWith(".csv"),
+        absolutePath.getParent(), testCases);
+  }
+
+  @Override
+  @Nullable
+  public TestPipeline.Task next() throws IOException {
+    for (var line = reader.readLine(); line != null; line = reader.readLine()) {
+      lineNumber++;
+      if (line.isBlank()) {
+        continue;
+      }
+      if (csv) {
+        var fields = splitCsv(line);
+        if (lineNumber == 1 && isHeader(fields.get(0))) {
+          continue;
+        }
+        return createTask(fields.get(0), fields.size() > 1 ? fields.get(1) : "",
+            fields.size() > 2 ? fields.get(2) : "");
+      }
+      JsonNode entry;
+      try {
+        entry = MAPPER.readTree(line);
+      } catch (JsonProcessingException e) {
+        return invalidEntry("line " + lineNumber, "",
+            "The manifest entry is not valid json: " + e.getOriginalMessage());
+      }
+      return createTask(entry.path("testCase").asText(), entry.path("inputFile").asText(),
+          entry.path("format").asText());
+    }
+    return null;
+  }
+
+  @Override
+  public void close() throws IOException {
+    reader.close();
+  }
+
+  private TestPipeline.Task createTask(String testCaseName, String inputFile, String format) {
+    if (testCaseName.isEmpty() || inputFile.isEmpty()) {
+      return invalidEntry(testCaseName.isEmpty() ? "line " + lineNumber : testCaseName, inputFile,
+          "The manifest entry in line " + lineNumber + " needs a test case and an input file.");
+    }
+    var inputPath = baseDirectory.resolve(inputFile).toString();
+    var testCase = testCases.get(testCaseName);
+    if (testCase == null) {
+      return invalidEntry(testCaseName, inputPath, "Unknown test case " + testCaseName + ".");
+    }
+    if (format.isEmpty()) {
+      return new TestPipeline.Task(testCase, inputPath, null);
+    }
+    try {
+      return new TestPipeline.Task(testCase, inputPath,
+          SpdxToolsHelper.SerFileType.valueOf(format.toUpperCase(Locale.ROOT)));
+    } catch (IllegalArgumentException e) {
+      return invalidEntry(testCaseName, inputPath, "Unknown format " + format + ".");
+    }
+  }
+
+  private static TestPipeline.Task invalidEntry(String name, String inputFile, String message) {
+    return new TestPipeline.Task(new InvalidEntry(name, message), inputFile, null);
+  }
+
+  private static boolean isHeader(String firstField) {
+    return firstField.equalsIgnoreCase("test_case") || firstField.equalsIgnoreCase("testCase");
+  }
+
+  // Fields may be enclosed in double quotes, which are escaped by doubling them within the field
+  private static List<String> splitCsv(String line) {
+    var fields = new ArrayList<String>();
+    var field = new StringBuilder();
+    var quoted = false;
+    for (var i = 0; i < line.length(); i++) {
+      var c = line.charAt(i);
+      if (quoted) {
+        if (c != '"') {
+          field.append(c);
+        } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+          field.append('"');
+          i++;
+        } else {
+          quoted = false;
+        }
+      } else if (c == '"') {
+        quoted = true;
+      } else if (c == ',') {
+        fields.add(field.toString().trim());
+        field.setLength(0);
+      } else {
+        field.append(c);
+      }
+    }
+    fields.add(field.toString().trim());
+    return fields;
+  }
+
+  /**
+   * Stands in for the test case of an invalid entry, and fails with the reason why the entry is
+   * invalid when run.
+   */
+  private static final class InvalidEntry implements TestCase {
+
+    private final String name;
+    private final String message;
+
+    InvalidEntry(String name, String message) {
+      this.name = name;
+      this.message = message;
+    }
+
+    @Override
+    public TestResult test(String inputFile, PrintStream out) {
+      throw new IllegalArgumentException(message);
+    }
+
+    @Override
+    public PreparedTest prepare(String inputFile) {
+      throw new IllegalArgumentException(message);
+    }
+
+    @Override
+    public String getName() {
+      return name;
+    }
+  }
+}
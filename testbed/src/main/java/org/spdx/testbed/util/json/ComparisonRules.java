@@ -0,0 +1,316 @@
+// SPDX-FileCopyrightText: TNG Technology Consulting GmbH
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.spdx.testbed.util.json;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+import javax.annotation.Nullable;
+
+/**
+ * Declarative rules that adjust the comparison of json documents for the nodes selected by path
+ * patterns. A pattern consists of segments separated by slashes and is matched against the path of
+ * a node relative to the node at which the comparison starts. A segment is either a field name,
+ * {@code *} for any single field or list element, or {@code **} for any number of segments,
+ * including none. For example, {@code **}/checksums selects all lists named checksums, and
+ * {@code packages/*}/checksums only those of the packages.
+ *
+ * <p>The patterns are compiled into a trie of path segments up front, whose wildcards are
+ * resolved into plain transitions. Each node visited by the comparison therefore advances the
+ * state of its parent by a single lookup, no matter how many rules there are, and the rules that
+ * apply to the node are read from the state.
+ */
+public final class ComparisonRules {
+
+  /**
+   * Rules that are used unless others are provided.
+   */
+  public static final ComparisonRules DEFAULT = builder()
+      // Reference type may be local to the document, so we skip it.
+      // Compare https://github.com/spdx/Spdx-Java-Library/blob/06ffee5e3754400a36dbb2f652d814c92e228e87/src/main/java/org/spdx/library/model/ExternalRef.java#L329
+      .skipCommonField("**/referenceType")
+      // TODO: Remove this temporary workaround once hasFiles is fixed. See https://github.com/spdx/spdx-java-jackson-store/issues/42.
+      //  Should be included in the next release after 1.1.1.
+      .skipContent("**/hasFiles")
+      .naturalKey("**/checksums", "algorithm")
+      .naturalKey("**/externalRefs", "referenceCategory", "referenceLocator")
+      .naturalKey("**/relationships", "spdxElementId", "relationshipType", "relatedSpdxElement")
+      .naturalKey("**/annotations", "annotator", "annotationDate")
+      .naturalKey("**/externalDocumentRefs", "externalDocumentId")
+      .naturalKey("**/hasExtractedLicensingInfos", "licenseId")
+      .build();
+
+  private static final String ANY_SEGMENT = "*";
+  private static final String ANY_SEGMENTS = "**";
+
+  private final List<Rule> rules;
+  private final State root;
+
+  private ComparisonRules(List<Rule> rules) {
+    this.rules = List.copyOf(rules);
+    this.root = compile(this.rules);
+  }
+
+  public static Builder builder() {
+    return new Builder(List.of());
+  }
+
+  /**
+   * Returns a builder that starts with these rules, e.g. for extending the {@link #DEFAULT} rules.
+   */
+  public Builder toBuilder() {
+    return new Builder(rules);
+  }
+
+  /**
+   * Returns the state of the node at which the comparison starts.
+   */
+  State root() {
+    return root;
+  }
+
+  // The positions of all rules in their patterns are tracked at once, and each distinct set of
+  // positions becomes one state. The field names used in the patterns are the only ones that need
+  // their own transition, all others behave the same.
+  private static State compile(List<Rule> rules) {
+    var symbols = new HashMap<String, Integer>();
+    for (var rule : rules) {
+      for (var segment : rule.segments) {
+        if (!segment.equals(ANY_SEGMENT) && !segment.equals(ANY_SEGMENTS)) {
+          symbols.putIfAbsent(segment, symbols.size());
+        }
+      }
+    }
+    var symbolCount = symbols.size() + 2;
+
+    var initialPositions = new TreeSet<Long>();
+    for (var ruleIndex = 0; ruleIndex < rules.size(); ruleIndex++) {
+      addPosition(initialPositions, rules, ruleIndex, 0);
+    }
+    var states = new HashMap<TreeSet<Long>, State>();
+    var pending = new ArrayDeque<TreeSet<Long>>();
+    var root = createState(initialPositions, rules, symbols, symbolCount);
+    states.put(initialPositions, root);
+    pending.add(initialPositions);
+
+    while (!pending.isEmpty()) {
+      var positions = pending.poll();
+      var state = states.get(positions);
+      for (var symbol = 0; symbol < symbolCount; symbol++) {
+        var nextPositions = advance(positions, rules, symbols, symbol);
+        var nextState = states.get(nextPositions);
+        if (nextState == null) {
+          nextState = createState(nextPositions, rules, symbols, symbolCount);
+          states.put(nextPositions, nextState);
+          pending.add(nextPositions);
+        }
+        state.transitions[symbol] = nextState;
+      }
+    }
+    return root;
+  }
+
+  private static TreeSet<Long> advance(TreeSet<Long> positions, List<Rule> rules,
+      Map<String, Integer> symbols, int symbol) {
+    var nextPositions = new TreeSet<Long>();
+    for (var position : positions) {
+      var ruleIndex = (int) (position >>> Integer.SIZE);
+      var segmentIndex = (int) (long) position;
+      var segments = rules.get(ruleIndex).segments;
+      if (segmentIndex == segments.size()) {
+        continue;
+      }
+      var segment = segments.get(segmentIndex);
+      if (segment.equals(ANY_SEGMENTS)) {
+        addPosition(nextPositions, rules, ruleIndex, segmentIndex);
+      } else if (segment.equals(ANY_SEGMENT) || symbols.get(segment) == symbol) {
+        addPosition(nextPositions, rules, ruleIndex, segmentIndex + 1);
+      }
+    }
+    return nextPositions;
+  }
+
+  // A position in front of any segments also stands for the position after them
+  private static void addPosition(TreeSet<Long> positions, List<Rule> rules, int ruleIndex,
+      int segmentIndex) {
+    positions.add(((long) ruleIndex << Integer.SIZE) | segmentIndex);
+    var segments = rules.get(ruleIndex).segments;
+    if (segmentIndex < segments.size() && segments.get(segmentIndex).equals(ANY_SEGMENTS)) {
+      addPosition(positions, rules, ruleIndex, segmentIndex + 1);
+    }
+  }
+
+  // Rules whose pattern is complete apply to the state, later ones take precedence
+  private static State createState(TreeSet<Long> positions, List<Rule> rules,
+      Map<String, Integer> symbols, int symbolCount) {
+    var state = new State(symbols, symbolCount);
+    for (var position : positions) {
+      var rule = rules.get((int) (position >>> Integer.SIZE));
+      if ((int) (long) position == rule.segments.size()) {
+        rule.action.accept(state);
+      }
+    }
+    return state;
+  }
+
+  /**
+   * Collects rules in the order they are added. If several rules of the same kind select a node,
+   * the one added last applies.
+   */
+  public static final class Builder {
+
+    private final List<Rule> rules;
+
+    private Builder(List<Rule> rules) {
+      this.rules = new ArrayList<>(rules);
+    }
+
+    /**
+     * Skips the selected fields if they are present in both nodes. Fields that are only present
+     * in one of the nodes are still reported.
+     */
+    public Builder skipCommonField(String pattern) {
+      return add(pattern, state -> state.commonFieldSkipped = true);
+    }
+
+    /**
+     * Skips the content of the selected nodes. Only whether they are equivalent to null is
+     * compared.
+     */
+    public Builder skipContent(String pattern) {
+      return add(pattern, state -> state.contentSkipped = true);
+    }
+
+    /**
+     * Compares the elements of the selected lists by their position instead of ignoring the
+     * ordering.
+     */
+    public Builder compareInOrder(String pattern) {
+      return add(pattern, state -> state.ordered = true);
+    }
+
+    /**
+     * Matches the elements of the selected lists that don't have an Spdx id by the values of the
+     * provided fields, see {@link NaturalKey}.
+     */
+    public Builder naturalKey(String pattern, String... fieldNames) {
+      var naturalKey = new NaturalKey(List.of(fieldNames));
+      return add(pattern, state -> state.naturalKey = naturalKey);
+    }
+
+    /**
+     * Applies the provided normalization to the values of the selected leaves before they are
+     * compared. It is applied on top of the normalization that applies to all values, see
+     * {@link NormalizedValues}.
+     */
+    public Builder normalize(String pattern, UnaryOperator<String> normalization) {
+      return add(pattern, state -> state.normalization = normalization);
+    }
+
+    public ComparisonRules build() {
+      return new ComparisonRules(rules);
+    }
+
+    private Builder add(String pattern, Consumer<State> action) {
+      var segments = Arrays.asList(pattern.split("/", -1));
+      if (pattern.isEmpty() || segments.contains("")) {
+        throw new IllegalArgumentException("Invalid path pattern: " + pattern);
+      }
+      rules.add(new Rule(List.copyOf(segments), action));
+      return this;
+    }
+  }
+
+  /**
+   * State of the comparison at a node, holding the rules that apply to the node. The states of
+   * the children are derived via {@link #field} and {@link #element}.
+   */
+  static final class State {
+
+    /**
+     * State without any rules, also for all descendants.
+     */
+    static final State NONE = new ComparisonRules(List.of()).root;
+
+    // The transitions for other field names and list elements follow those for the known names
+    private final Map<String, Integer> symbols;
+    private final State[] transitions;
+
+    private boolean commonFieldSkipped;
+    private boolean contentSkipped;
+    private boolean ordered;
+    @Nullable
+    private NaturalKey naturalKey;
+    @Nullable
+    private UnaryOperator<String> normalization;
+
+    private State(Map<String, Integer> symbols, int symbolCount) {
+      this.symbols = symbols;
+      this.transitions = new State[symbolCount];
+    }
+
+    State field(String fieldName) {
+      var symbol = symbols.get(fieldName);
+      return transitions[symbol == null ? transitions.length - 2 : symbol];
+    }
+
+    State element() {
+      return transitions[transitions.length - 1];
+    }
+
+    /**
+     * Checks whether the field is skipped if it is present in both nodes.
+     */
+    boolean isCommonFieldSkipped() {
+      return commonFieldSkipped;
+    }
+
+    /**
+     * Checks whether only the null equivalence of the node is compared.
+     */
+    boolean isContentSkipped() {
+      return contentSkipped;
+    }
+
+    /**
+     * Checks whether the elements of the list are compared by their position.
+     */
+    boolean isOrdered() {
+      return ordered;
+    }
+
+    /**
+     * Returns the natural key of the elements of the list, if one is configured.
+     */
+    @Nullable
+    NaturalKey naturalKey() {
+      return naturalKey;
+    }
+
+    /**
+     * Applies the normalization configured for the leaf to its generally normalized value.
+     */
+    String normalize(String normalizedValue) {
+      return normalization == null ? normalizedValue : normalization.apply(normalizedValue);
+    }
+  }
+
+  private static final class Rule {
+
+    private final List<String> segments;
+    private final Consumer<State> action;
+
+    Rule(List<String> segments, Consumer<State> action) {
+      this.segments = segments;
+      this.action = action;
+    }
+  }
+}
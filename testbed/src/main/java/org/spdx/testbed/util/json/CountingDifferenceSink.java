@@ -0,0 +1,22 @@
+// SPDX-FileCopyrightText: TNG Technology Consulting GmbH
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.spdx.testbed.util.json;
+
+import lombok.Getter;
+
+/**
+ * Only counts the differences it receives, e.g. for checks that don't need the differences
+ * themselves.
+ */
+public class CountingDifferenceSink implements DifferenceSink {
+
+  @Getter
+  private long count;
+
+  @Override
+  public void add(Difference difference) {
+    count++;
+  }
+}
@@ -4,9 +4,11 @@
 
 package org.spdx.testbed.util.json;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.JsonNode;
-import lombok.AllArgsConstructor;
+import javax.annotation.Nullable;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.ToString;
@@ -14,33 +16,80 @@ import lombok.ToString;
 /**
  * Holds information about a difference detected during the comparison of two json documents,
  * including the two values and the path of those values in the documents.
+ *
+ * <p>The values are held as {@link DifferenceValue}s, which reference the compared documents
+ * instead of copying subtrees. They are only turned into json nodes when they are read, and they
+ * are written directly from their source when the difference is serialized. Differences compare
+ * their values by content, no matter where the values are held.
  */
 @Getter
-@AllArgsConstructor
 @ToString
-@EqualsAndHashCode
+@EqualsAndHashCode(doNotUseGetters = true)
 public class Difference {
 
-  private final JsonNode actualValue;
-  private final JsonNode expectedValue;
+  @JsonProperty
+  private final DifferenceValue actualValue;
+  @JsonProperty
+  private final DifferenceValue expectedValue;
   private final String path;
   @JsonInclude(JsonInclude.Include.NON_NULL)
   private final String comment;
 
+  public Difference(JsonNode actualValue, JsonNode expectedValue, String path, String comment) {
+    this(DifferenceValue.of(actualValue), DifferenceValue.of(expectedValue), path, comment);
+  }
+
+  Difference(DifferenceValue actualValue, DifferenceValue expectedValue, String path,
+      String comment) {
+    this.actualValue = actualValue;
+    this.expectedValue = expectedValue;
+    this.path = path;
+    this.comment = comment;
+  }
+
   public static DifferenceBuilder builder() {
     return new DifferenceBuilder();
   }
 
+  @JsonIgnore
+  @Nullable
+  public JsonNode getActualValue() {
+    return actualValue == null ? null : actualValue.toJsonNode();
+  }
+
+  @JsonIgnore
+  @Nullable
+  public JsonNode getExpectedValue() {
+    return expectedValue == null ? null : expectedValue.toJsonNode();
+  }
+
+  /**
+   * Returns the actual value without turning it into a json node.
+   */
+  @Nullable
+  DifferenceValue actualValue() {
+    return actualValue;
+  }
+
+  /**
+   * Returns the expected value without turning it into a json node.
+   */
+  @Nullable
+  DifferenceValue expectedValue() {
+    return expectedValue;
+  }
+
   /**
    * This is a customized builder that will produce either {@link Difference} or
-   * {@link ListDifference}, depending on whether pathInReferenceDoc is set.
+   * {@link ListDifference}, depending on whether pathInReferenceDoc is set. The paths are only
+   * rendered to strings when the difference is built.
    */
   public static class DifferenceBuilder {
 
-    private JsonNode actualValue;
-    private JsonNode expectedValue;
-    private String path;
-    private String pathInReferenceDoc;
+    private DifferenceValue actualValue;
+    private DifferenceValue expectedValue;
+    private JsonPath path;
+    private JsonPath pathInReferenceDoc;
     private String comment;
 
 
@@ -48,21 +97,41 @@ public class Difference {
     }
 
     public DifferenceBuilder actualValue(JsonNode actualValue) {
+      this.actualValue = DifferenceValue.of(actualValue);
+      return this;
+    }
+
+    DifferenceBuilder actualValue(DifferenceValue actualValue) {
       this.actualValue = actualValue;
       return this;
     }
 
     public DifferenceBuilder expectedValue(JsonNode expectedValue) {
+      this.expectedValue = DifferenceValue.of(expectedValue);
+      return this;
+    }
+
+    DifferenceBuilder expectedValue(DifferenceValue expectedValue) {
       this.expectedValue = expectedValue;
       return this;
     }
 
     public DifferenceBuilder path(String path) {
+      this.path = JsonPath.ofNullable(path);
+      return this;
+    }
+
+    DifferenceBuilder path(JsonPath path) {
       this.path = path;
       return this;
     }
 
     public DifferenceBuilder pathInReferenceDoc(String pathInReferenceDoc) {
+      this.pathInReferenceDoc = JsonPath.ofNullable(pathInReferenceDoc);
+      return this;
+    }
+
+    DifferenceBuilder pathInReferenceDoc(JsonPath pathInReferenceDoc) {
       this.pathInReferenceDoc = pathInReferenceDoc;
       return this;
     }
@@ -76,11 +145,12 @@ public class Difference {
      * Build a {@link Difference} or {@link ListDifference} instance, based on the property values.
      */
     public Difference build() {
+      var renderedPath = path == null ? null : path.toString();
       if (pathInReferenceDoc == null) {
-        return new Difference(actualValue, expectedValue, path, comment);
+        return new Difference(actualValue, expectedValue, renderedPath, comment);
       } else {
-        return new ListDifference(actualValue, expectedValue, path, comment,
-            pathInReferenceDoc);
+        return new ListDifference(actualValue, expectedValue, renderedPath, comment,
+            pathInReferenceDoc.toString());
       }
     }
 
@@ -0,0 +1,283 @@
+// SPDX-FileCopyrightText: TNG Technology Consulting GmbH
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.spdx.testbed.util.json;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.TextNode;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+import lombok.Getter;
+
+/**
+ * Collects the differences detected during a comparison, within a budget. Once the maximum number
+ * of differences is reached, further differences are only counted. Values that exceed the maximum
+ * size when serialized are replaced by a truncated preview. This keeps the memory footprint and the
+ * size of the report bounded for documents that differ substantially from the expectations.
+ *
+ * <p>If a {@link DifferenceSink} is provided, the differences within the budget are passed on to it
+ * instead of being retained, so the collector only acts as the budget in front of the sink.
+ */
+public class DifferenceCollector implements DifferenceSink {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private static final String TRUNCATION_MARKER = "... (truncated)";
+
+  @Getter
+  private final int maxDifferences;
+  @Getter
+  private final int maxValueSize;
+  @Getter
+  private final List<Difference> differences = new ArrayList<>();
+  @Nullable
+  private final DifferenceSink sink;
+  // Budget shared with other buffers that are filled concurrently, if any
+  @Nullable
+  private final AtomicInteger sharedBudget;
+  private long passedOnDifferenceCount;
+  @Getter
+  private long elidedDifferenceCount;
+
+  /**
+   * Creates a collector with the provided budget.
+   *
+   * @param maxDifferences maximum number of differences that are retained
+   * @param maxValueSize   maximum number of characters of a serialized value in a difference
+   */
+  public DifferenceCollector(int maxDifferences, int maxValueSize) {
+    this(maxDifferences, maxValueSize, null);
+  }
+
+  /**
+   * Creates a collector with the provided budget that passes the differences within the budget on
+   * to the provided sink.
+   *
+   * @param maxDifferences maximum number of differences that are passed on
+   * @param maxValueSize   maximum number of characters of a serialized value in a difference
+   * @param sink           receives the differences instead of the collector, if present
+   */
+  public DifferenceCollector(int maxDifferences, int maxValueSize, @Nullable DifferenceSink sink) {
+    if (maxDifferences < 0 || maxValueSize < 1) {
+      throw new IllegalArgumentException("The maximum number of differences must not be negative"
+          + " and the maximum value size must be positive.");
+    }
+    this.maxDifferences = maxDifferences;
+    this.maxValueSize = maxValueSize;
+    this.sink = sink;
+    this.sharedBudget = null;
+  }
+
+  private DifferenceCollector(int maxDifferences, int maxValueSize,
+      AtomicInteger sharedBudget) {
+    this.maxDifferences = maxDifferences;
+    this.maxValueSize = maxValueSize;
+    this.sink = null;
+    this.sharedBudget = sharedBudget;
+  }
+
+  /**
+   * Creates a collector that retains all differences with their complete values.
+   */
+  public static DifferenceCollector unlimited() {
+    return new DifferenceCollector(Integer.MAX_VALUE, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Retains the provided difference if the budget allows it, and counts it otherwise.
+   */
+  @Override
+  public void add(Difference difference) {
+    if (isLimitReached() || !acquireSharedBudget()) {
+      elidedDifferenceCount++;
+      return;
+    }
+    retain(truncateValues(difference));
+  }
+
+  /**
+   * Same as {@link #add(Difference)}, but only builds the difference if it is retained. This way,
+   * no paths are rendered for differences that are only counted.
+   */
+  void add(Difference.DifferenceBuilder difference) {
+    if (isLimitReached() || !acquireSharedBudget()) {
+      elidedDifferenceCount++;
+      return;
+    }
+    retain(truncateValues(difference.build()));
+  }
+
+  /**
+   * Adds all differences of the other collector as if they were added one by one, including those
+   * the other collector has only counted. Both collectors are expected to have the same budget.
+   * The differences have already taken their share of a shared budget in the other collector.
+   */
+  void addAll(DifferenceCollector other) {
+    for (var difference : other.differences) {
+      if (isLimitReached()) {
+        elidedDifferenceCount++;
+      } else {
+        retain(difference);
+      }
+    }
+    elidedDifferenceCount += other.elidedDifferenceCount;
+  }
+
+  /**
+   * Creates an empty collector with the same budget, e.g. to buffer differences that have to be
+   * reported later. The copy retains its differences, even if this collector passes them on.
+   */
+  DifferenceCollector createEmptyCopy() {
+    return new DifferenceCollector(maxDifferences, maxValueSize);
+  }
+
+  /**
+   * Creates a budget for buffers that are filled concurrently, holding the number of differences
+   * this collector may still retain.
+   */
+  AtomicInteger createSharedBudget() {
+    return new AtomicInteger(
+        (int) Math.max(0, maxDifferences - differences.size() - passedOnDifferenceCount));
+  }
+
+  /**
+   * Same as {@link #createEmptyCopy()}, but the copy only retains differences as long as the
+   * provided shared budget lasts, and counts them afterwards. This way, all buffers of a
+   * concurrent comparison together retain at most the shared budget.
+   */
+  DifferenceCollector createBuffer(AtomicInteger sharedBudget) {
+    return new DifferenceCollector(maxDifferences, maxValueSize, sharedBudget);
+  }
+
+  /**
+   * Checks whether the differences are passed on to a sink instead of being retained.
+   */
+  boolean hasSink() {
+    return sink != null;
+  }
+
+  public boolean isLimitReached() {
+    return differences.size() + passedOnDifferenceCount >= maxDifferences;
+  }
+
+  /**
+   * Returns the number of all detected differences, including the elided ones and those passed on
+   * to the sink.
+   */
+  public long getDifferenceCount() {
+    return differences.size() + passedOnDifferenceCount + elidedDifferenceCount;
+  }
+
+  private boolean acquireSharedBudget() {
+    if (sharedBudget == null) {
+      return true;
+    }
+    var remaining = sharedBudget.get();
+    while (remaining > 0) {
+      if (sharedBudget.compareAndSet(remaining, remaining - 1)) {
+        return true;
+      }
+      remaining = sharedBudget.get();
+    }
+    return false;
+  }
+
+  private void retain(Difference difference) {
+    if (sink == null) {
+      differences.add(difference);
+    } else {
+      sink.add(difference);
+      passedOnDifferenceCount++;
+    }
+  }
+
+  private Difference truncateValues(Difference difference) {
+    var actualValue = truncate(difference.actualValue());
+    var expectedValue = truncate(difference.expectedValue());
+    if (actualValue == difference.actualValue() && expectedValue == difference.expectedValue()) {
+      return difference;
+    }
+    return Difference.builder()
+        .actualValue(actualValue)
+        .expectedValue(expectedValue)
+        .path(difference.getPath())
+        .pathInReferenceDoc(difference instanceof ListDifference
+            ? ((ListDifference) difference).getPathInReferenceDoc() : null)
+        .comment(difference.getComment())
+        .build();
+  }
+
+  // Values held in a source are kept as references unless they exceed the maximum size
+  @Nullable
+  private DifferenceValue truncate(@Nullable DifferenceValue value) {
+    if (value == null || maxValueSize == Integer.MAX_VALUE) {
+      return value;
+    }
+    var node = value.node();
+    if (node != null && node.isTextual()) {
+      var text = node.asText();
+      return text.length() <= maxValueSize ? value
+          : DifferenceValue.of(
+              TextNode.valueOf(text.substring(0, maxValueSize) + TRUNCATION_MARKER));
+    }
+    if (node != null && !node.isContainerNode()) {
+      return value;
+    }
+
+    // Serialization stops as soon as the preview is full, so large subtrees are not written out
+    var preview = new PreviewWriter(maxValueSize);
+    try (var generator = MAPPER.getFactory().createGenerator(preview)) {
+      value.writeTo(generator);
+    } catch (IOException e) {
+      if (!preview.isFull()) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    return preview.isFull()
+        ? DifferenceValue.of(TextNode.valueOf(preview + TRUNCATION_MARKER)) : value;
+  }
+
+  private static class PreviewWriter extends Writer {
+
+    private final StringBuilder preview = new StringBuilder();
+    private final int capacity;
+    private boolean full;
+
+    PreviewWriter(int capacity) {
+      this.capacity = capacity;
+    }
+
+    @Override
+    public void write(char[] buffer, int offset, int length) throws IOException {
+      var remaining = capacity - preview.length();
+      if (length > remaining) {
+        preview.append(buffer, offset, remaining);
+        full = true;
+        throw new IOException("The preview is full.");
+      }
+      preview.append(buffer, offset, length);
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    boolean isFull() {
+      return full;
+    }
+
+    @Override
+    public String toString() {
+      return preview.toString();
+    }
+  }
+}
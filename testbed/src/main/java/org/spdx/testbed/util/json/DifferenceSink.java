@@ -0,0 +1,17 @@
+// SPDX-FileCopyrightText: TNG Technology Consulting GmbH
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.spdx.testbed.util.json;
+
+/**
+ * Receives the differences detected during a comparison, one at a time and in the order of the
+ * comparison. A {@link DifferenceCollector} passes the differences within its budget on to a sink
+ * as soon as their position in that order is settled, so reports can be written while the
+ * comparison is still running.
+ */
+@FunctionalInterface
+public interface DifferenceSink {
+
+  void add(Difference difference);
+}
@@ -0,0 +1,165 @@
+// SPDX-FileCopyrightText: TNG Technology Consulting GmbH
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.spdx.testbed.util.json;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import javax.annotation.Nullable;
+
+/**
+ * Value held by a {@link Difference}. Either references a node of a compared document, which is
+ * retained anyway, or the range of a value in the retained source buffer of a document that was
+ * compared as a token stream. The latter is only parsed into a {@link JsonNode} when the value is
+ * read, e.g. by a report writer, so large subtrees that only exist in such a document don't have
+ * to be held in memory as trees.
+ *
+ * <p>Values are equal if they hold equal json, no matter whether they reference a node or a range
+ * of a source.
+ */
+@JsonSerialize(using = DifferenceValue.Serializer.class)
+abstract class DifferenceValue {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  @Nullable
+  static DifferenceValue of(@Nullable JsonNode node) {
+    return node == null ? null : new NodeValue(node);
+  }
+
+  /**
+   * References the value in the provided range of the source.
+   *
+   * @param source buffer holding the document, starting at position zero
+   * @param start  offset of the first byte of the value
+   * @param end    offset after the last byte of the value
+   */
+  static DifferenceValue ofSource(ByteBuffer source, int start, int end) {
+    return new SourceValue(source, start, end);
+  }
+
+  /**
+   * Returns the value as json node, parsing it if necessary.
+   *
+   * @throws UncheckedIOException In case the value cannot be read from its source
+   */
+  abstract JsonNode toJsonNode();
+
+  /**
+   * Returns the referenced node, or null if the value is held in a source.
+   */
+  @Nullable
+  abstract JsonNode node();
+
+  /**
+   * Writes the value to the provided generator without building a json node.
+   */
+  abstract void writeTo(JsonGenerator generator) throws IOException;
+
+  @Override
+  public boolean equals(Object other) {
+    return other instanceof DifferenceValue
+        && toJsonNode().equals(((DifferenceValue) other).toJsonNode());
+  }
+
+  @Override
+  public int hashCode() {
+    return toJsonNode().hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return toJsonNode().toString();
+  }
+
+  private static final class NodeValue extends DifferenceValue {
+
+    private final JsonNode node;
+
+    NodeValue(JsonNode node) {
+      this.node = node;
+    }
+
+    @Override
+    JsonNode toJsonNode() {
+      return node;
+    }
+
+    @Override
+    JsonNode node() {
+      return node;
+    }
+
+    @Override
+    void writeTo(JsonGenerator generator) throws IOException {
+      MAPPER.writeTree(generator, node);
+    }
+  }
+
+  private static final class SourceValue extends DifferenceValue {
+
+    private final ByteBuffer source;
+    private final int start;
+    private final int end;
+
+    SourceValue(ByteBuffer source, int start, int end) {
+      this.source = source;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    JsonNode toJsonNode() {
+      try (var input = open()) {
+        return MAPPER.readTree(input);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    @Override
+    @Nullable
+    JsonNode node() {
+      return null;
+    }
+
+    @Override
+    void writeTo(JsonGenerator generator) throws IOException {
+      try (var parser = MAPPER.createParser(open())) {
+        parser.nextToken();
+        generator.copyCurrentStructure(parser);
+      }
+    }
+
+    // The buffer is duplicated, so concurrent reads don't share a position
+    private InputStream open() {
+      var range = source.duplicate();
+      range.position(start);
+      range.limit(end);
+      return new ByteBufferBackedInputStream(range);
+    }
+  }
+
+  static final class Serializer extends StdSerializer<DifferenceValue> {
+
+    Serializer() {
+      super(DifferenceValue.class);
+    }
+
+    @Override
+    public void serialize(DifferenceValue value, JsonGenerator generator,
+        SerializerProvider provider) throws IOException {
+      value.writeTo(generator);
+    }
+  }
+}
@@ -8,20 +8,17 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.databind.node.ValueNode;
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
 import java.util.Optional;
-import java.util.stream.Collectors;
 import javax.annotation.Nullable;
-import org.apache.commons.collections4.IteratorUtils;
 import org.spdx.library.SpdxConstants;
 
 /**
  * Utility methods for comparing two Spdx documents serialized as json. At the moment, most methods
  * accept an optional second path. This is used when lists are in play: Since the ordering is not
  * relevant, the index of elements to compare (and therefore the path) may differ. The null-handling
- * is certainly not ideal and may be refactored in the future.
+ * is certainly not ideal and may be refactored in the future. Parts of the documents that are
+ * compared differently, like fields that are skipped, are configured via {@link ComparisonRules}.
  */
 public class JsonComparison {
 
@@ -35,13 +32,8 @@ public class JsonComparison {
       ValueNode expectedNode,
       String path,
       @Nullable String referencePath) {
-    var actualValueAsString = normalizeString(actualNode.asText());
-    var expectedValueAsString = normalizeString(expectedNode.asText());
-
-    actualValueAsString = convertNoneUriValueToPlainString(actualValueAsString);
-    expectedValueAsString = convertNoneUriValueToPlainString(expectedValueAsString);
-
-    if (!Objects.equals(actualValueAsString, expectedValueAsString)) {
+    if (!NormalizedValues.normalize(actualNode.asText())
+        .equals(NormalizedValues.normalize(expectedNode.asText()))) {
       return Optional.of(Difference.builder()
           .actualValue(actualNode)
           .expectedValue(expectedNode)
@@ -62,38 +54,68 @@ public class JsonComparison {
       JsonNode expectedNode,
       String pathPrefix,
       @Nullable String referencePathPrefix) {
-    var differences = new ArrayList<Difference>();
+    var collector = DifferenceCollector.unlimited();
+    findDifferences(actualNode, expectedNode, pathPrefix, referencePathPrefix, collector);
+    return collector.getDifferences();
+  }
 
+  /**
+   * Same as {@link #findDifferences(JsonNode, JsonNode, String, String)}, but passes the detected
+   * differences to the provided collector.
+   */
+  public static void findDifferences(JsonNode actualNode,
+      JsonNode expectedNode,
+      String pathPrefix,
+      @Nullable String referencePathPrefix,
+      DifferenceCollector collector) {
+    var rules = ComparisonRules.DEFAULT.root();
+    collectDifferences(actualNode, expectedNode, JsonPath.of(pathPrefix, rules),
+        JsonPath.ofNullable(referencePathPrefix), canonicalize(actualNode, expectedNode, rules),
+        collector);
+  }
+
+  static void collectDifferences(JsonNode actualNode,
+      JsonNode expectedNode,
+      JsonPath path,
+      @Nullable JsonPath referencePath,
+      NormalizedValues values,
+      DifferenceCollector collector) {
+    if (values.haveSameContent(actualNode, expectedNode)) {
+      return;
+    }
     if (isEquivalentToNull(actualNode) && isEquivalentToNull(expectedNode)) {
-      return differences;
+      return;
     } else if (isEquivalentToNull(actualNode) || isEquivalentToNull(expectedNode)) {
-      differences.add(Difference.builder()
+      collector.add(Difference.builder()
           .actualValue(actualNode)
           .expectedValue(expectedNode)
-          .path(pathPrefix)
-          .pathInReferenceDoc(referencePathPrefix)
-          .build());
+          .path(path)
+          .pathInReferenceDoc(referencePath));
+    } else if (path.rules().isContentSkipped()) {
+      return;
     } else if (actualNode.isValueNode() && expectedNode.isValueNode()) {
-      findDifference((ValueNode) actualNode, (ValueNode) expectedNode, pathPrefix,
-          referencePathPrefix).ifPresent(differences::add);
+      if (!values.areEquivalent(actualNode, expectedNode, path.rules())) {
+        collector.add(Difference.builder()
+            .actualValue(actualNode)
+            .expectedValue(expectedNode)
+            .path(path)
+            .pathInReferenceDoc(referencePath));
+      }
     } else if (actualNode instanceof ObjectNode && expectedNode instanceof ObjectNode) {
-      differences.addAll(findDifferences((ObjectNode) actualNode, (ObjectNode) expectedNode,
-          pathPrefix, referencePathPrefix));
+      collectObjectDifferences((ObjectNode) actualNode, (ObjectNode) expectedNode, path,
+          referencePath, values, collector);
     } else if (actualNode instanceof ArrayNode && expectedNode instanceof ArrayNode) {
-      differences.addAll(findDifferences((ArrayNode) actualNode, (ArrayNode) expectedNode,
-          pathPrefix, referencePathPrefix));
+      collectListDifferences((ArrayNode) actualNode, (ArrayNode) expectedNode, path,
+          referencePath, values, collector);
     } else {
       // The node types don't match and none of the nodes is equivalent to null
       // Anything smarter to do here?
-      differences.add(Difference.builder()
+      collector.add(Difference.builder()
           .actualValue(actualNode)
           .expectedValue(expectedNode)
-          .path(pathPrefix)
-          .pathInReferenceDoc(referencePathPrefix)
-          .build());
+          .path(path)
+          .pathInReferenceDoc(referencePath));
     }
-
-    return differences;
   }
 
   public static List<Difference> findDifferences(ObjectNode actualNode,
@@ -101,6 +123,163 @@ public class JsonComparison {
     return findDifferences(actualNode, expectedNode, "", null);
   }
 
+  /**
+   * Compares the two provided ObjectNodes and passes the detected differences to the provided
+   * collector. Once the budget of the collector is exhausted, the remaining differences are only
+   * counted.
+   */
+  public static void findDifferences(ObjectNode actualNode,
+      ObjectNode expectedNode,
+      DifferenceCollector collector) {
+    findDifferences(actualNode, expectedNode, ComparisonRules.DEFAULT, collector);
+  }
+
+  /**
+   * Same as {@link #findDifferences(ObjectNode, ObjectNode, DifferenceCollector)}, but applies the
+   * provided rules instead of the default ones.
+   */
+  public static void findDifferences(ObjectNode actualNode,
+      ObjectNode expectedNode,
+      ComparisonRules rules,
+      DifferenceCollector collector) {
+    var values = canonicalize(actualNode, expectedNode, rules.root());
+    if (!values.haveSameContent(actualNode, expectedNode)) {
+      collectObjectDifferences(actualNode, expectedNode, JsonPath.of("", rules.root()), null,
+          values, collector);
+    }
+  }
+
+  // Hashing both documents up front lets the comparison skip all subtrees without changes
+  private static NormalizedValues canonicalize(JsonNode actualNode, JsonNode expectedNode,
+      ComparisonRules.State rules) {
+    var values = new NormalizedValues();
+    values.canonicalize(actualNode, rules);
+    values.canonicalize(expectedNode, rules);
+    return values;
+  }
+
+  /**
+   * Checks whether the comparison of the two provided JsonNodes would detect any differences. The
+   * semantics are the same as in {@link #findDifferences(JsonNode, JsonNode, String, String)}, but
+   * the check stops at the first divergence and does not create any {@link Difference}s or paths.
+   */
+  public static boolean isEquivalent(JsonNode actualNode, JsonNode expectedNode) {
+    return isEquivalent(actualNode, expectedNode, ComparisonRules.DEFAULT.root(),
+        new NormalizedValues());
+  }
+
+  // The state of the rules replaces the path, which is not needed without differences
+  static boolean isEquivalent(JsonNode actualNode, JsonNode expectedNode,
+      ComparisonRules.State rules, NormalizedValues values) {
+    if (values.haveSameContent(actualNode, expectedNode)) {
+      return true;
+    }
+    var actualIsNull = isEquivalentToNull(actualNode);
+    var expectedIsNull = isEquivalentToNull(expectedNode);
+    if (actualIsNull || expectedIsNull) {
+      return actualIsNull && expectedIsNull;
+    } else if (rules.isContentSkipped()) {
+      return true;
+    } else if (actualNode.isValueNode() && expectedNode.isValueNode()) {
+      return values.areEquivalent(actualNode, expectedNode, rules);
+    } else if (actualNode.isObject() && expectedNode.isObject()) {
+      return areObjectsEquivalent(actualNode, expectedNode, rules, values);
+    } else if (actualNode.isArray() && expectedNode.isArray()) {
+      return rules.isOrdered()
+          ? areListsEquivalentInOrder((ArrayNode) actualNode, (ArrayNode) expectedNode, rules,
+              values)
+          : areListsEquivalent((ArrayNode) actualNode, (ArrayNode) expectedNode, rules, values);
+    }
+    return false;
+  }
+
+  private static boolean areObjectsEquivalent(JsonNode actualNode, JsonNode expectedNode,
+      ComparisonRules.State rules, NormalizedValues values) {
+    var actualFields = actualNode.fields();
+    while (actualFields.hasNext()) {
+      var actualField = actualFields.next();
+      var fieldName = actualField.getKey();
+      var expectedValue = expectedNode.get(fieldName);
+      if (expectedValue == null) {
+        if (!isEquivalentToNull(actualField.getValue())) {
+          return false;
+        }
+      } else {
+        var fieldRules = rules.field(fieldName);
+        if (!fieldRules.isCommonFieldSkipped()
+            && !isEquivalent(actualField.getValue(), expectedValue, fieldRules, values)) {
+          return false;
+        }
+      }
+    }
+    var expectedFields = expectedNode.fields();
+    while (expectedFields.hasNext()) {
+      var expectedField = expectedFields.next();
+      if (!actualNode.has(expectedField.getKey())
+          && !isEquivalentToNull(expectedField.getValue())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // All actual elements need an exact match, and all expected elements need to be consumed by
+  // those matches. Matches are consumed like in the ListMatcher, but for short lists the
+  // consumed elements are tracked in a bit mask instead of building an index.
+  private static boolean areListsEquivalent(ArrayNode actualNode, ArrayNode expectedNode,
+      ComparisonRules.State rules, NormalizedValues values) {
+    if (expectedNode.size() > Long.SIZE) {
+      var listPath = JsonPath.of("", rules);
+      return new ListMatcher(expectedNode, listPath, listPath, values).matchesExactly(actualNode);
+    }
+    var elementRules = rules.element();
+    var consumed = 0L;
+    for (var actualElement : actualNode) {
+      if (isEquivalentToNull(actualElement)) {
+        continue;
+      }
+      var matchFound = false;
+      for (var position = 0; position < expectedNode.size(); position++) {
+        var isConsumed = (consumed & (1L << position)) != 0;
+        if (matchFound && isConsumed) {
+          continue;
+        }
+        var expectedElement = expectedNode.get(position);
+        if (!isEquivalentToNull(expectedElement)
+            && isEquivalent(expectedElement, actualElement, elementRules, values)) {
+          matchFound = true;
+          if (!isConsumed) {
+            consumed |= 1L << position;
+            break;
+          }
+        }
+      }
+      if (!matchFound) {
+        return false;
+      }
+    }
+    for (var position = 0; position < expectedNode.size(); position++) {
+      if ((consumed & (1L << position)) == 0 && !isEquivalentToNull(expectedNode.get(position))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // Elements beyond the end of the shorter list are compared to a missing element
+  private static boolean areListsEquivalentInOrder(ArrayNode actualNode, ArrayNode expectedNode,
+      ComparisonRules.State rules, NormalizedValues values) {
+    var elementRules = rules.element();
+    for (var position = 0; position < Math.max(actualNode.size(), expectedNode.size());
+        position++) {
+      if (!isEquivalent(actualNode.path(position), expectedNode.path(position), elementRules,
+          values)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   /**
    * Compares the two provided ObjectNodes and returns a list of detected differences.
    *
@@ -110,65 +289,79 @@ public class JsonComparison {
       ObjectNode expectedNode,
       String pathPrefix,
       @Nullable String referencePathPrefix) {
-    var differences = new ArrayList<Difference>();
-
-    var actualNodeFieldNames = IteratorUtils.toList(actualNode.fieldNames());
-    var expectedNodeFieldNames = IteratorUtils.toList(expectedNode.fieldNames());
-    var commonFields = actualNodeFieldNames.stream().filter(expectedNodeFieldNames::contains)
-        .collect(Collectors.toList());
-    var actualNodeExclusiveFields = actualNodeFieldNames.stream()
-        .filter(name -> !expectedNodeFieldNames.contains(name))
-        .collect(Collectors.toList());
-    var expectedNodeExclusiveFields = expectedNodeFieldNames.stream()
-        .filter(name -> !actualNodeFieldNames.contains(name)).collect(Collectors.toList());
+    var collector = DifferenceCollector.unlimited();
+    var rules = ComparisonRules.DEFAULT.root();
+    collectObjectDifferences(actualNode, expectedNode, JsonPath.of(pathPrefix, rules),
+        JsonPath.ofNullable(referencePathPrefix), canonicalize(actualNode, expectedNode, rules),
+        collector);
+    return collector.getDifferences();
+  }
 
-    for (var fieldName : commonFields) {
-      // Reference type may be local to the document, so we skip it.
-      // Compare https://github.com/spdx/Spdx-Java-Library/blob/06ffee5e3754400a36dbb2f652d814c92e228e87/src/main/java/org/spdx/library/model/ExternalRef.java#L329
-      if (fieldName.equals("referenceType")) {
+  private static void collectObjectDifferences(ObjectNode actualNode,
+      ObjectNode expectedNode,
+      JsonPath path,
+      @Nullable JsonPath referencePath,
+      NormalizedValues values,
+      DifferenceCollector collector) {
+    // Fields are aligned by lookups in the expected node, which is backed by a hash map
+    var actualFields = actualNode.fields();
+    while (actualFields.hasNext()) {
+      var actualField = actualFields.next();
+      var fieldName = actualField.getKey();
+      var expectedValue = expectedNode.get(fieldName);
+      if (expectedValue == null) {
         continue;
       }
 
-      var actualValue = actualNode.get(fieldName);
-      var expectedValue = expectedNode.get(fieldName);
-
-      var newPathPrefix = addPathComponent(pathPrefix, fieldName);
-      var newReferencePathPrefix = referencePathPrefix == null ? null :
-          addPathComponent(referencePathPrefix, fieldName);
+      var newPath = path.field(fieldName);
+      if (newPath.rules().isCommonFieldSkipped()) {
+        continue;
+      }
+      var newReferencePath = referencePath == null ? null : referencePath.field(fieldName);
 
-      differences.addAll(findDifferences(actualValue, expectedValue, newPathPrefix,
-          newReferencePathPrefix));
+      collectDifferences(actualField.getValue(), expectedValue, newPath, newReferencePath, values,
+          collector);
     }
 
-    for (var fieldName : actualNodeExclusiveFields) {
-      var value = actualNode.get(fieldName);
-      var newPathPrefix = addPathComponent(pathPrefix, fieldName);
-      var newReferencePathPrefix = referencePathPrefix == null ? null :
-          addPathComponent(referencePathPrefix, fieldName);
-      if (!isEquivalentToNull(value)) {
-        differences.add(Difference.builder()
+    addExclusiveFieldDifferences(actualNode, expectedNode, path, referencePath, collector);
+  }
+
+  /**
+   * Adds differences for all fields that are only present in one of the two nodes, first those of
+   * the actual node, then those of the expected node.
+   *
+   * @param referencePath optional path of the reference node in the document
+   */
+  static void addExclusiveFieldDifferences(ObjectNode actualNode,
+      ObjectNode expectedNode,
+      JsonPath path,
+      @Nullable JsonPath referencePath,
+      DifferenceCollector collector) {
+    var actualFields = actualNode.fields();
+    while (actualFields.hasNext()) {
+      var actualField = actualFields.next();
+      var fieldName = actualField.getKey();
+      var value = actualField.getValue();
+      if (!expectedNode.has(fieldName) && !isEquivalentToNull(value)) {
+        collector.add(Difference.builder()
             .actualValue(value)
-            .path(newPathPrefix)
-            .pathInReferenceDoc(newReferencePathPrefix)
-            .build());
+            .path(path.field(fieldName))
+            .pathInReferenceDoc(referencePath == null ? null : referencePath.field(fieldName)));
       }
     }
 
-    for (var fieldName : expectedNodeExclusiveFields) {
-      var value = expectedNode.get(fieldName);
-      var newPathPrefix = addPathComponent(pathPrefix, fieldName);
-      var newReferencePathPrefix = referencePathPrefix == null ? null :
-          addPathComponent(referencePathPrefix, fieldName);
-      if (!isEquivalentToNull(value)) {
-        differences.add(Difference.builder()
+    var expectedFields = expectedNode.fields();
+    while (expectedFields.hasNext()) {
+      var expectedField = expectedFields.next();
+      var fieldName = expectedField.getKey();
+      var value = expectedField.getValue();
+      if (!actualNode.has(fieldName) && !isEquivalentToNull(value)) {
+        collector.add(Difference.builder()
             .expectedValue(value)
-            .path(newPathPrefix)
-            .pathInReferenceDoc(newReferencePathPrefix)
-            .build());
+            .path(path.field(fieldName))
+            .pathInReferenceDoc(referencePath == null ? null : referencePath.field(fieldName)));
       }
     }
-
-    return differences;
   }
 
   /**
@@ -180,110 +373,76 @@ public class JsonComparison {
       ArrayNode expectedNode,
       String pathPrefix,
       @Nullable String referencePathPrefix) {
-    var differences = new ArrayList<Difference>();
+    var collector = DifferenceCollector.unlimited();
+    var rules = ComparisonRules.DEFAULT.root();
+    collectListDifferences(actualNode, expectedNode, JsonPath.of(pathPrefix, rules),
+        JsonPath.ofNullable(referencePathPrefix), canonicalize(actualNode, expectedNode, rules),
+        collector);
+    return collector.getDifferences();
+  }
 
-    // TODO: Remove this temporary workaround once hasFiles is fixed. See https://github.com/spdx/spdx-java-jackson-store/issues/42.
-    //  Should be included in the next release after 1.1.1.
-    if (pathPrefix.endsWith("hasFiles")) {
-      return differences;
+  private static void collectListDifferences(ArrayNode actualNode,
+      ArrayNode expectedNode,
+      JsonPath path,
+      @Nullable JsonPath referencePath,
+      NormalizedValues values,
+      DifferenceCollector collector) {
+    var output = ListMatcher.collectingInto(values, collector);
+    if (path.rules().isOrdered()) {
+      compareInOrder(actualNode, expectedNode, path, referencePath, output);
+      return;
     }
 
-    var actualNodeElements =
-        removeIrrelevantElements(IteratorUtils.toList(actualNode.elements()));
-    var expectedNodeElements =
-        removeIrrelevantElements(IteratorUtils.toList(expectedNode.elements()));
-
-    // These will be modified while iterating
-    var remainingActualNodeElements = new ArrayList<>(actualNodeElements);
-    var remainingExpectedNodeElements = new ArrayList<>(expectedNodeElements);
-
-    for (var currentActualNodeElement : actualNodeElements) {
-      var exactMatchOptional = findExactMatch(expectedNodeElements, currentActualNodeElement);
-
-      if (exactMatchOptional.isPresent()) {
-        remainingActualNodeElements.remove(currentActualNodeElement);
-        remainingExpectedNodeElements.remove(exactMatchOptional.get());
-        continue;
-      }
-
-      var actualElementPath = addPathComponent(pathPrefix,
-          Integer.toString(actualNodeElements.indexOf(currentActualNodeElement)));
-
-      // Backup plan: If no exact match was found, try to find a unique match by id and 
-      // compare
-
-      var idMatches = findIdMatches(remainingExpectedNodeElements,
-          currentActualNodeElement);
-      var expectedListPath = referencePathPrefix == null ? pathPrefix : referencePathPrefix;
-
-      if (idMatches.size() != 1) {
-        var comment = idMatches.isEmpty()
-            ? "No element in expected list with a matching Spdx id or no Spdx id present."
-            : "Multiple items in expected list with the same Spdx id.";
-        differences.add(Difference.builder()
-            .actualValue(currentActualNodeElement)
-            .path(actualElementPath)
-            .pathInReferenceDoc(expectedListPath)
-            .comment(comment)
-            .build());
-        continue;
-      }
-
-      var uniqueIdMatch = idMatches.get(0);
-      var expectedElementIndexAsString =
-          String.valueOf(expectedNodeElements.indexOf(uniqueIdMatch));
-      var expectedElementPath = addPathComponent(expectedListPath,
-          expectedElementIndexAsString);
-      remainingActualNodeElements.remove(currentActualNodeElement);
-      remainingExpectedNodeElements.remove(uniqueIdMatch);
-      differences.addAll(findDifferences(currentActualNodeElement, uniqueIdMatch,
-          actualElementPath, expectedElementPath));
+    var expectedListPath = referencePath == null ? path : referencePath;
+    var listMatcher = new ListMatcher(expectedNode, path, expectedListPath, values);
+    for (var position = 0; position < actualNode.size(); position++) {
+      listMatcher.matchActualElement(actualNode.get(position), position, output);
     }
+    listMatcher.matchRemainingExpectedElements(output);
+  }
 
-    for (var currentExpectedNodeElement : remainingExpectedNodeElements) {
-      // There cannot be an exact match in the first list since it would have been found in
-      // the previous loop
-
-      var expectedElementIndexAsString =
-          String.valueOf(expectedNodeElements.indexOf(currentExpectedNodeElement));
-      var expectedListPath = referencePathPrefix == null ? pathPrefix : referencePathPrefix;
-      var expectedElementPath = addPathComponent(expectedListPath,
-          expectedElementIndexAsString);
-
-      var idMatches = findIdMatches(remainingActualNodeElements,
-          currentExpectedNodeElement);
-
-      if (idMatches.size() != 1) {
-        var comment = idMatches.isEmpty()
-            ? "No element in actual list with a matching Spdx id or no Spdx id present."
-            : "Multiple items in actual list with the same Spdx id.";
-        differences.add(Difference.builder()
-            .expectedValue(currentExpectedNodeElement)
-            .pathInReferenceDoc(expectedElementPath)
-            .path(pathPrefix)
-            .comment(comment)
-            .build());
-        continue;
+  /**
+   * Compares the elements of two lists that the rules compare in order by their position. Elements
+   * beyond the end of the shorter list are reported, unless they are equivalent to null.
+   */
+  static void compareInOrder(ArrayNode actualNode,
+      ArrayNode expectedNode,
+      JsonPath path,
+      @Nullable JsonPath referencePath,
+      ListMatcher.Output output) {
+    var expectedListPath = referencePath == null ? path : referencePath;
+    for (var position = 0; position < Math.max(actualNode.size(), expectedNode.size());
+        position++) {
+      var actualElement = actualNode.get(position);
+      var expectedElement = expectedNode.get(position);
+      if (actualElement == null) {
+        if (!isEquivalentToNull(expectedElement)) {
+          output.addDifference(Difference.builder()
+              .expectedValue(expectedElement)
+              .pathInReferenceDoc(expectedListPath.element(position))
+              .path(path)
+              .comment(describeMissingPosition("actual")));
+        }
+      } else if (expectedElement == null) {
+        if (!isEquivalentToNull(actualElement)) {
+          output.addDifference(Difference.builder()
+              .actualValue(actualElement)
+              .path(path.element(position))
+              .pathInReferenceDoc(expectedListPath)
+              .comment(describeMissingPosition("expected")));
+        }
+      } else {
+        output.compareMatchedElements(actualElement, expectedElement, path.element(position),
+            expectedListPath.element(position));
       }
-
-      var uniqueIdMatch = idMatches.get(0);
-      var actualElementIndexAsString =
-          String.valueOf(actualNodeElements.indexOf(uniqueIdMatch));
-      var actualElementPath = addPathComponent(pathPrefix, actualElementIndexAsString);
-      remainingActualNodeElements.remove(uniqueIdMatch);
-      remainingExpectedNodeElements.remove(currentExpectedNodeElement);
-      differences.addAll(findDifferences(uniqueIdMatch, currentExpectedNodeElement,
-          actualElementPath, expectedElementPath));
     }
-
-    return differences;
   }
 
-  private static String addPathComponent(@Nullable String currentPath, String newComponent) {
-    return currentPath + "/" + newComponent;
+  static String describeMissingPosition(String listName) {
+    return "No element at this position in " + listName + " list.";
   }
 
-  private static boolean isEquivalentToNull(JsonNode node) {
+  static boolean isEquivalentToNull(JsonNode node) {
     // TODO: there may be edge cases here, like an array or object that only contains 
     //  NOASSERTIONS. Not sure whether such cases would be relevant
     if (node.isArray() || node.isObject()) {
@@ -298,41 +457,4 @@ public class JsonComparison {
     }
     return node.isNull();
   }
-
-  private static Optional<JsonNode> findExactMatch(List<JsonNode> elementsToCheck,
-      JsonNode elementToFind) {
-    return elementsToCheck.stream()
-        .filter(loopElement -> findDifferences(loopElement, elementToFind, "", null).isEmpty())
-        .findFirst();
-  }
-
-  private static List<JsonNode> findIdMatches(ArrayList<JsonNode> elementsToCheck,
-      JsonNode elementToMatch) {
-    return elementsToCheck.stream()
-        .filter(jsonNode -> jsonNode.has(SpdxConstants.SPDX_IDENTIFIER))
-        .filter(jsonNode -> jsonNode.get(SpdxConstants.SPDX_IDENTIFIER)
-            .equals(elementToMatch.get(SpdxConstants.SPDX_IDENTIFIER)))
-        .collect(Collectors.toList());
-  }
-
-  private static List<JsonNode> removeIrrelevantElements(List<JsonNode> list) {
-    return list.stream()
-        .filter(difference -> !isEquivalentToNull(difference))
-        .collect(Collectors.toList());
-  }
-
-  private static String normalizeString(String s) {
-    return s.replaceAll("\r\n", "\n").trim();
-  }
-
-  // None values are treated the same, regardless of whether it's the uri form or the simple 
-  // form. We convert all to the simple form to make comparison easier.
-  // Note that noassertion values (of both uri and plain string type) are treated like null 
-  // anyway, so they don't require conversion.
-  private static String convertNoneUriValueToPlainString(String input) {
-    if (SpdxConstants.URI_VALUE_NONE.equals(input)) {
-      return SpdxConstants.NONE_VALUE;
-    }
-    return input;
-  }
 }
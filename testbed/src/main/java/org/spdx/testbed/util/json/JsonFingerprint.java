@@ -0,0 +1,171 @@
+// SPDX-FileCopyrightText: TNG Technology Consulting GmbH
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.spdx.testbed.util.json;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.util.Arrays;
+
+/**
+ * Computes structural fingerprints of json nodes that are compatible with the semantics of
+ * {@link JsonComparison}: Two nodes without differences always have the same fingerprint. The
+ * reverse does not hold, so a matching fingerprint only identifies candidates that still have to be
+ * compared. In order to guarantee this, the fingerprint applies the same normalizations as the
+ * comparison (null equivalence, none uri values, line endings and those configured by the
+ * {@link ComparisonRules}) and ignores anything that the rules skip during the comparison, like the
+ * referenceType field and hasFiles lists. Field order and list order are irrelevant, as is the
+ * number of duplicates in a list.
+ */
+final class JsonFingerprint {
+
+  private static final long NULL_SEED = 0x5bd1e9955bd1e995L;
+  private static final long VALUE_SEED = 0x9e3779b97f4a7c15L;
+  private static final long OBJECT_SEED = 0xc2b2ae3d27d4eb4fL;
+  private static final long ARRAY_SEED = 0x165667b19e3779f9L;
+  private static final long OTHER_SEED = 0x27d4eb2f165667c5L;
+
+  private JsonFingerprint() {
+  }
+
+  /**
+   * Computes the fingerprint of the provided node and all of its children.
+   *
+   * @param rules state of the rules at the node
+   */
+  static long of(JsonNode node, ComparisonRules.State rules, NormalizedValues values) {
+    if (JsonComparison.isEquivalentToNull(node)) {
+      return NULL_SEED;
+    }
+    if (node.isValueNode()) {
+      return mix(VALUE_SEED ^ hash(values.of(node, rules)));
+    }
+    if (node.isObject()) {
+      return ofObject(node, rules, values);
+    }
+    if (node.isArray()) {
+      return ofArray(node, rules, values);
+    }
+    return mix(OTHER_SEED ^ hash(node.toString()));
+  }
+
+  private static long ofObject(JsonNode node, ComparisonRules.State rules,
+      NormalizedValues values) {
+    // Fields are combined by addition, so their order does not matter
+    long fingerprint = OBJECT_SEED;
+    var fields = node.fields();
+    while (fields.hasNext()) {
+      var field = fields.next();
+      var fieldName = field.getKey();
+      var fieldRules = rules.field(fieldName);
+      // Absent and null-equivalent fields are treated the same by the comparison
+      if (isSkippedByComparison(fieldRules)
+          || JsonComparison.isEquivalentToNull(field.getValue())) {
+        continue;
+      }
+      fingerprint += mix(hash(fieldName) * 31 + of(field.getValue(), fieldRules, values));
+    }
+    return mix(fingerprint);
+  }
+
+  private static long ofArray(JsonNode node, ComparisonRules.State rules,
+      NormalizedValues values) {
+    var elementRules = rules.element();
+    var elementFingerprints = new long[node.size()];
+    var count = 0;
+    for (var element : node) {
+      if (!JsonComparison.isEquivalentToNull(element)) {
+        elementFingerprints[count++] = of(element, elementRules, values);
+      }
+    }
+    Arrays.sort(elementFingerprints, 0, count);
+
+    // Duplicates are skipped, as they are also matched multiple times by the comparison
+    long fingerprint = ARRAY_SEED;
+    for (var i = 0; i < count; i++) {
+      if (i == 0 || elementFingerprints[i] != elementFingerprints[i - 1]) {
+        fingerprint = mix(fingerprint * 31 + elementFingerprints[i]);
+      }
+    }
+    return fingerprint;
+  }
+
+  /**
+   * Computes the sorted fingerprints of all leaves of the provided node. A leaf fingerprint covers
+   * the normalized value and the names of the fields on the way to the leaf, but not the positions
+   * in lists, so reordered lists have the same leaves. Leaves that are equivalent to null or
+   * skipped by the comparison are left out, duplicates are retained.
+   *
+   * @param rules state of the rules at the node
+   */
+  static long[] ofLeaves(JsonNode node, ComparisonRules.State rules, NormalizedValues values) {
+    var leaves = new Leaves();
+    addLeaves(node, OBJECT_SEED, rules, values, leaves);
+    var fingerprints = Arrays.copyOf(leaves.fingerprints, leaves.count);
+    Arrays.sort(fingerprints);
+    return fingerprints;
+  }
+
+  private static void addLeaves(JsonNode node, long pathHash, ComparisonRules.State rules,
+      NormalizedValues values, Leaves leaves) {
+    if (JsonComparison.isEquivalentToNull(node)) {
+      return;
+    }
+    if (node.isObject()) {
+      var fields = node.fields();
+      while (fields.hasNext()) {
+        var field = fields.next();
+        var fieldRules = rules.field(field.getKey());
+        if (!isSkippedByComparison(fieldRules)) {
+          addLeaves(field.getValue(), mix(pathHash * 31 + hash(field.getKey())), fieldRules,
+              values, leaves);
+        }
+      }
+    } else if (node.isArray()) {
+      var elementPathHash = mix(pathHash ^ ARRAY_SEED);
+      var elementRules = rules.element();
+      for (var element : node) {
+        addLeaves(element, elementPathHash, elementRules, values, leaves);
+      }
+    } else {
+      leaves.add(mix(pathHash * 31 + (VALUE_SEED ^ hash(values.of(node, rules)))));
+    }
+  }
+
+  // The comparison ignores skipped fields if present on both sides, and the content of skipped
+  // nodes entirely. Leaving both out of the fingerprint is coarser than necessary, but never
+  // separates two nodes without differences.
+  private static boolean isSkippedByComparison(ComparisonRules.State fieldRules) {
+    return fieldRules.isCommonFieldSkipped() || fieldRules.isContentSkipped();
+  }
+
+  // FNV-1a over the utf-16 chars of the string
+  static long hash(String s) {
+    long hash = 0xcbf29ce484222325L;
+    for (var i = 0; i < s.length(); i++) {
+      hash ^= s.charAt(i);
+      hash *= 0x100000001b3L;
+    }
+    return hash;
+  }
+
+  // Finalizer of SplitMix64, spreads the bits of the input over the whole value
+  static long mix(long z) {
+    z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+    z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+    return z ^ (z >>> 31);
+  }
+
+  private static class Leaves {
+
+    private long[] fingerprints = new long[16];
+    private int count;
+
+    void add(long fingerprint) {
+      if (count == fingerprints.length) {
+        fingerprints = Arrays.copyOf(fingerprints, count * 2);
+      }
+      fingerprints[count++] = fingerprint;
+    }
+  }
+}
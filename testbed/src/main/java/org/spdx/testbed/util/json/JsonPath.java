@@ -0,0 +1,116 @@
+// SPDX-FileCopyrightText: TNG Technology Consulting GmbH
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.spdx.testbed.util.json;
+
+import javax.annotation.Nullable;
+
+/**
+ * Path of a node in a json document, represented as a chain of segments that link to their parent.
+ * Descending into a field or list element only creates a new segment and shares all others, so the
+ * comparison does not build a string for every visited node. The path is rendered only when a
+ * {@link Difference} is built, in the same format as before: all segments separated by slashes.
+ * Each segment also holds the state of the {@link ComparisonRules}, which is advanced along with
+ * the path.
+ */
+final class JsonPath {
+
+  private static final int NO_INDEX = -1;
+
+  @Nullable
+  private final JsonPath parent;
+  // Either the field name, the path prefix of the root, or null for list elements
+  @Nullable
+  private final String name;
+  private final int index;
+  private final int length;
+  private final ComparisonRules.State rules;
+
+  private JsonPath(@Nullable JsonPath parent, @Nullable String name, int index, int length,
+      ComparisonRules.State rules) {
+    this.parent = parent;
+    this.name = name;
+    this.index = index;
+    this.length = length;
+    this.rules = rules;
+  }
+
+  /**
+   * Creates the root of a path that is only rendered, without any rules. The prefix is rendered as
+   * is, e.g. the empty string for the root of a document, or the path of the node at which a
+   * comparison starts.
+   */
+  static JsonPath of(String prefix) {
+    return new JsonPath(null, prefix, NO_INDEX, prefix.length(), ComparisonRules.State.NONE);
+  }
+
+  /**
+   * Creates the root of the path of a comparison, starting in the provided state of the rules.
+   */
+  static JsonPath of(String prefix, ComparisonRules.State rules) {
+    return new JsonPath(null, prefix, NO_INDEX, prefix.length(), rules);
+  }
+
+  /**
+   * Same as {@link #of(String)}, but keeps a missing path missing.
+   */
+  @Nullable
+  static JsonPath ofNullable(@Nullable String prefix) {
+    return prefix == null ? null : of(prefix);
+  }
+
+  JsonPath field(String fieldName) {
+    return new JsonPath(this, fieldName, NO_INDEX, length + 1 + fieldName.length(),
+        rules.field(fieldName));
+  }
+
+  /**
+   * Same as {@link #field(String)}, but advances the rules by another name than the rendered one,
+   * e.g. by the name of a json field for a property of a model store.
+   */
+  JsonPath field(String fieldName, String ruleName) {
+    return new JsonPath(this, fieldName, NO_INDEX, length + 1 + fieldName.length(),
+        rules.field(ruleName));
+  }
+
+  JsonPath element(int position) {
+    return new JsonPath(this, null, position, length + 1 + stringSize(position),
+        rules.element());
+  }
+
+  /**
+   * Returns the state of the rules at the node the path leads to.
+   */
+  ComparisonRules.State rules() {
+    return rules;
+  }
+
+  @Override
+  public String toString() {
+    if (parent == null) {
+      return name;
+    }
+    // The segments are visited from the end, so the characters are filled in backwards
+    var characters = new char[length];
+    var end = length;
+    var segment = this;
+    while (segment.parent != null) {
+      var text = segment.name != null ? segment.name : Integer.toString(segment.index);
+      end -= text.length();
+      text.getChars(0, text.length(), characters, end);
+      characters[--end] = '/';
+      segment = segment.parent;
+    }
+    segment.name.getChars(0, end, characters, 0);
+    return new String(characters);
+  }
+
+  private static int stringSize(int position) {
+    var size = 1;
+    for (var remainder = position; remainder >= 10; remainder /= 10) {
+      size++;
+    }
+    return size;
+  }
+}
@@ -26,6 +26,12 @@ public class ListDifference extends Difference {
     this.pathInReferenceDoc = pathInReferenceDoc;
   }
 
+  ListDifference(DifferenceValue actualValue, DifferenceValue expectedValue, String path,
+      String comment, String pathInReferenceDoc) {
+    super(actualValue, expectedValue, path, comment);
+    this.pathInReferenceDoc = pathInReferenceDoc;
+  }
+
   @Override
   public String toString() {
     return "ListDifference(actualValue=" + this.getActualValue() + ", expectedValue="
@@ -0,0 +1,411 @@
+// SPDX-FileCopyrightText: TNG Technology Consulting GmbH
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.spdx.testbed.util.json;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+import org.spdx.library.SpdxConstants;
+
+/**
+ * Matches the elements of an actual list against the elements of an expected list, ignoring the
+ * ordering. Elements are first matched exactly. If that fails, a unique match by Spdx id is
+ * compared instead. Elements without Spdx id are matched by their {@link NaturalKey} instead, if
+ * the {@link ComparisonRules} configure one for the list. Objects without any key are finally
+ * paired by the similarity of their contents via a {@link SimilarityAssignment}. Elements are
+ * tracked by their index, so consumed elements are marked in bitsets and the paths are derived
+ * from the original positions in the lists.
+ *
+ * <p>Actual elements are passed in one at a time via {@link #matchActualElement}, and only those
+ * without an exact, id or natural key match are retained until
+ * {@link #matchRemainingExpectedElements} is called. Results are passed to an {@link Output}, which
+ * decides how matched elements are compared.
+ */
+final class ListMatcher {
+
+  /**
+   * Receives the results of the matching in the order of the actual list, followed by the
+   * remaining elements of the expected list. Actual objects without any key can only be paired
+   * once all expected elements are known, so their results follow the other actual elements.
+   */
+  interface Output {
+
+    void addDifference(Difference.DifferenceBuilder difference);
+
+    /**
+     * Receives the difference for an actual element without match, which allows to replace the
+     * element by a reference into its source.
+     */
+    default void addActualElementDifference(Difference.DifferenceBuilder difference,
+        int position) {
+      addDifference(difference);
+    }
+
+    void compareMatchedElements(JsonNode actualElement, JsonNode expectedElement,
+        JsonPath actualElementPath, JsonPath expectedElementPath);
+  }
+
+  private static final int NO_MATCH = -1;
+  private static final int MULTIPLE_MATCHES = -2;
+
+  private final JsonPath actualListPath;
+  private final JsonPath expectedListPath;
+  private final NormalizedValues values;
+  private final ComparisonRules.State elementRules;
+  @Nullable
+  private final NaturalKey naturalKey;
+
+  private final List<JsonNode> expectedElements;
+  private final int[] expectedPositions;
+  private final BitSet consumedExpectedElements;
+  private final Map<Long, List<Integer>> expectedElementsByFingerprint;
+  private final Map<String, List<Integer>> expectedElementsById;
+  private final Map<String, List<Integer>> expectedElementsByNaturalKey;
+
+  private final List<JsonNode> unmatchedActualElements = new ArrayList<>();
+  private final List<Integer> unmatchedActualPositions = new ArrayList<>();
+  private final BitSet consumedUnmatchedActualElements = new BitSet();
+  private final Map<String, List<Integer>> unmatchedActualElementsById = new HashMap<>();
+  private final Map<String, List<Integer>> unmatchedActualElementsByNaturalKey = new HashMap<>();
+  private final List<JsonNode> keylessActualElements = new ArrayList<>();
+  private final List<Integer> keylessActualPositions = new ArrayList<>();
+
+  /**
+   * Creates a matcher for the elements of the provided expected list. Elements that are equivalent
+   * to null are not relevant for the comparison and therefore left out.
+   *
+   * @param actualListPath   path of the actual list, which also determines the rules
+   * @param expectedListPath path of the expected list
+   * @param values           normalized values of the leaves, shared with the comparison
+   */
+  ListMatcher(ArrayNode expectedList, JsonPath actualListPath, JsonPath expectedListPath,
+      NormalizedValues values) {
+    this.actualListPath = actualListPath;
+    this.expectedListPath = expectedListPath;
+    this.values = values;
+    this.elementRules = actualListPath.rules().element();
+    this.naturalKey = actualListPath.rules().naturalKey();
+    this.expectedElements = new ArrayList<>(expectedList.size());
+    var positions = new int[expectedList.size()];
+    this.expectedElementsByFingerprint = new HashMap<>();
+    this.expectedElementsById = new HashMap<>();
+    this.expectedElementsByNaturalKey = new HashMap<>();
+    for (var position = 0; position < expectedList.size(); position++) {
+      var element = expectedList.get(position);
+      if (JsonComparison.isEquivalentToNull(element)) {
+        continue;
+      }
+      var index = expectedElements.size();
+      expectedElements.add(element);
+      positions[index] = position;
+      expectedElementsByFingerprint.computeIfAbsent(fingerprintOf(element),
+          key -> new ArrayList<>()).add(index);
+      addToIndex(expectedElementsById, idOf(element), index);
+      addToIndex(expectedElementsByNaturalKey, naturalKeyOf(element), index);
+    }
+    this.expectedPositions = Arrays.copyOf(positions, expectedElements.size());
+    this.consumedExpectedElements = new BitSet(expectedElements.size());
+  }
+
+  /**
+   * Creates an output that compares elements matched by id right away and adds all differences to
+   * the provided collector.
+   */
+  static Output collectingInto(NormalizedValues values, DifferenceCollector collector) {
+    return new Output() {
+      @Override
+      public void addDifference(Difference.DifferenceBuilder difference) {
+        collector.add(difference);
+      }
+
+      @Override
+      public void compareMatchedElements(JsonNode actualElement, JsonNode expectedElement,
+          JsonPath actualElementPath, JsonPath expectedElementPath) {
+        JsonComparison.collectDifferences(actualElement, expectedElement, actualElementPath,
+            expectedElementPath, values, collector);
+      }
+    };
+  }
+
+  /**
+   * Tries to match the next actual element. Elements without exact, id or natural key match are
+   * retained, elements that are equivalent to null are ignored.
+   *
+   * @param position position of the element in the actual list
+   */
+  void matchActualElement(JsonNode element, int position, Output output) {
+    if (JsonComparison.isEquivalentToNull(element)) {
+      return;
+    }
+    matchActualElement(element, position, consumeExactMatch(element), output);
+  }
+
+  /**
+   * Same as {@link #matchActualElement(JsonNode, int, Output)}, but with exact matches that have
+   * been determined beforehand via {@link #findExactMatches}.
+   */
+  void matchActualElement(JsonNode element, int position, List<Integer> exactMatches,
+      Output output) {
+    if (JsonComparison.isEquivalentToNull(element)) {
+      return;
+    }
+    matchActualElement(element, position, consumeExactMatch(exactMatches), output);
+  }
+
+  private void matchActualElement(JsonNode element, int position, boolean exactMatchFound,
+      Output output) {
+    if (exactMatchFound) {
+      return;
+    }
+
+    // Backup plan: If no exact match was found, try to find a unique match by id or natural key
+    // and compare. Objects without either are paired by similarity later on.
+    var naturalKeyValue = naturalKeyOf(element);
+    if (naturalKeyValue == null && isKeylessObject(element)) {
+      keylessActualElements.add(element);
+      keylessActualPositions.add(position);
+      return;
+    }
+
+    var actualElementPath = actualListPath.element(position);
+    var keyMatch = naturalKeyValue == null
+        ? findUniqueMatch(expectedElementsById, consumedExpectedElements, idOf(element))
+        : findUniqueMatch(expectedElementsByNaturalKey, consumedExpectedElements,
+            naturalKeyValue);
+
+    if (keyMatch < 0) {
+      output.addActualElementDifference(Difference.builder()
+          .actualValue(element)
+          .path(actualElementPath)
+          .pathInReferenceDoc(expectedListPath)
+          .comment(describeMissingMatch(keyMatch, naturalKeyValue, "expected")), position);
+      var index = unmatchedActualElements.size();
+      unmatchedActualElements.add(element);
+      unmatchedActualPositions.add(position);
+      addToIndex(unmatchedActualElementsById, idOf(element), index);
+      addToIndex(unmatchedActualElementsByNaturalKey, naturalKeyValue, index);
+      return;
+    }
+
+    consumedExpectedElements.set(keyMatch);
+    var expectedElementPath = expectedListPath.element(expectedPositions[keyMatch]);
+    output.compareMatchedElements(element, expectedElements.get(keyMatch), actualElementPath,
+        expectedElementPath);
+  }
+
+  /**
+   * Pairs the retained actual objects without key by similarity, and tries to match all expected
+   * elements that have not been matched yet against the retained actual elements.
+   */
+  void matchRemainingExpectedElements(Output output) {
+    matchKeylessActualElements(output);
+
+    for (var i = consumedExpectedElements.nextClearBit(0); i < expectedElements.size();
+        i = consumedExpectedElements.nextClearBit(i + 1)) {
+      // There cannot be an exact match in the actual list since it would have been found
+      // already
+      var element = expectedElements.get(i);
+      var expectedElementPath = expectedListPath.element(expectedPositions[i]);
+
+      var naturalKeyValue = naturalKeyOf(element);
+      var keyMatch = naturalKeyValue == null
+          ? findUniqueMatch(unmatchedActualElementsById, consumedUnmatchedActualElements,
+              idOf(element))
+          : findUniqueMatch(unmatchedActualElementsByNaturalKey, consumedUnmatchedActualElements,
+              naturalKeyValue);
+
+      if (keyMatch < 0) {
+        output.addDifference(Difference.builder()
+            .expectedValue(element)
+            .pathInReferenceDoc(expectedElementPath)
+            .path(actualListPath)
+            .comment(describeMissingMatch(keyMatch, naturalKeyValue, "actual")));
+        continue;
+      }
+
+      consumedUnmatchedActualElements.set(keyMatch);
+      consumedExpectedElements.set(i);
+      var actualElementPath = actualListPath.element(unmatchedActualPositions.get(keyMatch));
+      output.compareMatchedElements(unmatchedActualElements.get(keyMatch), element,
+          actualElementPath, expectedElementPath);
+    }
+  }
+
+  private void matchKeylessActualElements(Output output) {
+    if (keylessActualElements.isEmpty()) {
+      return;
+    }
+    var keylessExpectedElements = new ArrayList<JsonNode>();
+    var keylessExpectedIndices = new ArrayList<Integer>();
+    for (var i = consumedExpectedElements.nextClearBit(0); i < expectedElements.size();
+        i = consumedExpectedElements.nextClearBit(i + 1)) {
+      var element = expectedElements.get(i);
+      if (naturalKeyOf(element) == null && isKeylessObject(element)) {
+        keylessExpectedElements.add(element);
+        keylessExpectedIndices.add(i);
+      }
+    }
+    var pairs = keylessExpectedElements.isEmpty() ? null
+        : SimilarityAssignment.assign(keylessActualElements, keylessExpectedElements,
+            elementRules, values);
+
+    for (var i = 0; i < keylessActualElements.size(); i++) {
+      var element = keylessActualElements.get(i);
+      var position = keylessActualPositions.get(i);
+      var actualElementPath = actualListPath.element(position);
+      if (pairs == null || pairs[i] == SimilarityAssignment.NO_MATCH) {
+        output.addActualElementDifference(Difference.builder()
+            .actualValue(element)
+            .path(actualElementPath)
+            .pathInReferenceDoc(expectedListPath)
+            .comment(describeMissingMatch(NO_MATCH, null, "expected")), position);
+        continue;
+      }
+      var match = keylessExpectedIndices.get(pairs[i]);
+      consumedExpectedElements.set(match);
+      var expectedElementPath = expectedListPath.element(expectedPositions[match]);
+      output.compareMatchedElements(element, expectedElements.get(match), actualElementPath,
+          expectedElementPath);
+    }
+  }
+
+  /**
+   * Returns the indices of all expected elements without differences to the provided element. This
+   * does not modify the state of the matcher and may be called concurrently.
+   */
+  List<Integer> findExactMatches(JsonNode element) {
+    var candidates = expectedElementsByFingerprint.get(fingerprintOf(element));
+    if (candidates == null) {
+      return List.of();
+    }
+    var exactMatches = new ArrayList<Integer>(1);
+    for (var candidate : candidates) {
+      if (JsonComparison.isEquivalent(expectedElements.get(candidate), element, elementRules,
+          values)) {
+        exactMatches.add(candidate);
+      }
+    }
+    return exactMatches;
+  }
+
+  /**
+   * Checks whether all elements of the actual list have an exact match, and whether those matches
+   * consume all expected elements. This is the case if and only if a comparison of the two lists
+   * does not detect any differences.
+   */
+  boolean matchesExactly(ArrayNode actualList) {
+    for (var element : actualList) {
+      if (!JsonComparison.isEquivalentToNull(element) && !consumeExactMatch(element)) {
+        return false;
+      }
+    }
+    return consumedExpectedElements.cardinality() == expectedElements.size();
+  }
+
+  // Elements without differences always share a fingerprint, so only the elements in the
+  // bucket of the element need to be compared. Unconsumed matches are preferred, but an element
+  // that was already consumed still counts as an exact match, e.g. for duplicates in the actual
+  // list.
+  private boolean consumeExactMatch(JsonNode element) {
+    var candidates = expectedElementsByFingerprint.get(fingerprintOf(element));
+    if (candidates == null) {
+      return false;
+    }
+    var matchFound = false;
+    for (var candidate : candidates) {
+      if (matchFound && consumedExpectedElements.get(candidate)) {
+        continue;
+      }
+      if (JsonComparison.isEquivalent(expectedElements.get(candidate), element, elementRules,
+          values)) {
+        matchFound = true;
+        if (!consumedExpectedElements.get(candidate)) {
+          consumedExpectedElements.set(candidate);
+          return true;
+        }
+      }
+    }
+    return matchFound;
+  }
+
+  private boolean consumeExactMatch(List<Integer> exactMatches) {
+    for (var exactMatch : exactMatches) {
+      if (!consumedExpectedElements.get(exactMatch)) {
+        consumedExpectedElements.set(exactMatch);
+        return true;
+      }
+    }
+    return !exactMatches.isEmpty();
+  }
+
+  private long fingerprintOf(JsonNode element) {
+    return JsonFingerprint.of(element, elementRules, values);
+  }
+
+  @Nullable
+  private static String idOf(JsonNode element) {
+    var id = element.get(SpdxConstants.SPDX_IDENTIFIER);
+    return id == null ? null : id.asText();
+  }
+
+  private static boolean isKeylessObject(JsonNode element) {
+    return element.isObject() && !element.has(SpdxConstants.SPDX_IDENTIFIER);
+  }
+
+  // Only elements without Spdx id are matched by natural key
+  @Nullable
+  private String naturalKeyOf(JsonNode element) {
+    if (naturalKey == null || element.has(SpdxConstants.SPDX_IDENTIFIER)) {
+      return null;
+    }
+    return naturalKey.of(element, elementRules, values);
+  }
+
+  private String describeMissingMatch(int match, @Nullable String naturalKeyValue,
+      String listName) {
+    if (naturalKeyValue != null) {
+      return match == NO_MATCH
+          ? "No element in " + listName + " list with the same " + naturalKey.describe() + "."
+          : "Multiple items in " + listName + " list with the same " + naturalKey.describe() + ".";
+    }
+    return match == NO_MATCH
+        ? "No element in " + listName + " list with a matching Spdx id or no Spdx id present."
+        : "Multiple items in " + listName + " list with the same Spdx id.";
+  }
+
+  private static int findUniqueMatch(Map<String, List<Integer>> elementsByKey, BitSet consumed,
+      @Nullable String key) {
+    if (key == null) {
+      return NO_MATCH;
+    }
+    var candidates = elementsByKey.get(key);
+    if (candidates == null) {
+      return NO_MATCH;
+    }
+    var match = NO_MATCH;
+    for (var candidate : candidates) {
+      if (!consumed.get(candidate)) {
+        if (match != NO_MATCH) {
+          return MULTIPLE_MATCHES;
+        }
+        match = candidate;
+      }
+    }
+    return match;
+  }
+
+  private static void addToIndex(Map<String, List<Integer>> index, @Nullable String key,
+      int elementIndex) {
+    if (key != null) {
+      index.computeIfAbsent(key, k -> new ArrayList<>()).add(elementIndex);
+    }
+  }
+}
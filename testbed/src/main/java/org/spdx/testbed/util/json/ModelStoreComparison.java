@@ -0,0 +1,516 @@
+// SPDX-FileCopyrightText: TNG Technology Consulting GmbH
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.spdx.testbed.util.json;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import javax.annotation.Nullable;
+import org.spdx.library.InvalidSPDXAnalysisException;
+import org.spdx.library.SpdxConstants;
+import org.spdx.library.model.IndividualUriValue;
+import org.spdx.library.model.TypedValue;
+import org.spdx.storage.IModelStore;
+
+/**
+ * Compares two SPDX documents by walking the property graphs of their model stores, without
+ * serializing them to json first. The semantics follow {@link JsonComparison}: Values are
+ * normalized, values equivalent to null are treated as absent, and the ordering of collections
+ * does not matter.
+ *
+ * <p>Elements with an Spdx id are identified by their id. Each of them is compared exactly once,
+ * no matter how often it is referenced, which also prevents infinite recursion along related
+ * elements. Anonymous elements, like checksums or relationships, are identified by their content
+ * instead: Like blank nodes in rdf, they get a content hash covering their type and all their
+ * properties, where references to elements with an Spdx id are hashed by id. Anonymous elements
+ * with the same hash are equal, so collections are matched by hash, and only leftover anonymous
+ * elements of the same type are compared property by property if they are the only ones of their
+ * type.
+ *
+ * <p>The paths of the differences consist of the property names of the model store. Properties of
+ * the document are found at the root, properties of other elements with an Spdx id below their id,
+ * e.g. /SPDXRef-1/fileName. Values are rendered as json only for the reported differences. The
+ * {@link ComparisonRules} are applied as well, except for the ordering of lists, since collections
+ * in the model store are unordered anyway. The rules select json fields, so collection properties
+ * are matched by the plural name of their json list, e.g. hasFile by hasFiles. Leftover anonymous
+ * elements with a natural key are paired if they are the only ones of their type and key.
+ */
+public class ModelStoreComparison {
+
+  private static final long ELEMENT_SEED = 0x1b873593cc9e2d51L;
+  private static final long ID_SEED = 0x62a9d9ed799705f5L;
+  private static final long COLLECTION_SEED = 0x4cf5ad432745937fL;
+  private static final long VALUE_SEED = 0x2545f4914f6cdd1dL;
+  private static final long CYCLE_SEED = 0x3c6ef372fe94f82bL;
+  private static final char KEY_SEPARATOR = '\u0000';
+
+  private final Document actual;
+  private final Document expected;
+  private final ComparisonRules rules;
+  private final DifferenceCollector collector;
+  private final NormalizedValues values = new NormalizedValues();
+  private final Set<String> comparedIds = new HashSet<>();
+  private final Queue<String> pendingIds = new ArrayDeque<>();
+  // Anonymous elements currently compared, to stop at cycles
+  private final Set<String> anonymousIdsInProgress = new HashSet<>();
+
+  private ModelStoreComparison(Document actual, Document expected, ComparisonRules rules,
+      DifferenceCollector collector) {
+    this.actual = actual;
+    this.expected = expected;
+    this.rules = rules;
+    this.collector = collector;
+  }
+
+  /**
+   * Compares the documents with the provided uris in the provided model stores, which may be the
+   * same store, and passes the detected differences to the collector.
+   *
+   * @throws InvalidSPDXAnalysisException In case the model stores cannot be read
+   */
+  public static void findDifferences(IModelStore actualStore, String actualDocumentUri,
+      IModelStore expectedStore, String expectedDocumentUri, ComparisonRules rules,
+      DifferenceCollector collector) throws InvalidSPDXAnalysisException {
+    new ModelStoreComparison(new Document(actualStore, actualDocumentUri),
+        new Document(expectedStore, expectedDocumentUri), rules, collector).compare();
+  }
+
+  private void compare() throws InvalidSPDXAnalysisException {
+    comparedIds.add(SpdxConstants.SPDX_DOCUMENT_ID);
+    compareElements(SpdxConstants.SPDX_DOCUMENT_ID, SpdxConstants.SPDX_DOCUMENT_ID,
+        JsonPath.of("", rules.root()), null);
+    comparePendingElements();
+
+    // Elements that are not referenced from the document are compared as well
+    var actualIds = actual.getIdentifiedElementIds();
+    var expectedIds = expected.getIdentifiedElementIds();
+    for (var id : actualIds) {
+      if (!expectedIds.contains(id)) {
+        collector.add(Difference.builder()
+            .actualValue(actual.renderElement(id, new HashSet<>()))
+            .path(pathOf(id))
+            .comment("No element with this Spdx id in expected document."));
+      } else if (comparedIds.add(id)) {
+        pendingIds.add(id);
+        comparePendingElements();
+      }
+    }
+    for (var id : expectedIds) {
+      if (!actualIds.contains(id)) {
+        collector.add(Difference.builder()
+            .expectedValue(expected.renderElement(id, new HashSet<>()))
+            .path(pathOf(id))
+            .comment("No element with this Spdx id in actual document."));
+      }
+    }
+  }
+
+  private void comparePendingElements() throws InvalidSPDXAnalysisException {
+    while (!pendingIds.isEmpty()) {
+      var id = pendingIds.poll();
+      compareElements(id, id, pathOf(id), null);
+    }
+  }
+
+  private JsonPath pathOf(String id) {
+    return JsonPath.of("/" + id, rules.root());
+  }
+
+  // Elements with an Spdx id are compared later on, if both documents contain them
+  private void enqueue(String id) {
+    if (actual.store.exists(actual.uri, id) && expected.store.exists(expected.uri, id)
+        && comparedIds.add(id)) {
+      pendingIds.add(id);
+    }
+  }
+
+  private void compareElements(String actualId, String expectedId, JsonPath path,
+      @Nullable JsonPath referencePath) throws InvalidSPDXAnalysisException {
+    var actualPropertyNames = actual.store.getPropertyValueNames(actual.uri, actualId);
+    var expectedPropertyNames = expected.store.getPropertyValueNames(expected.uri, expectedId);
+    var propertyNames = new TreeSet<>(actualPropertyNames);
+    propertyNames.addAll(expectedPropertyNames);
+
+    for (var propertyName : propertyNames) {
+      var isActualCollection = actualPropertyNames.contains(propertyName)
+          && actual.store.isCollectionProperty(actual.uri, actualId, propertyName);
+      var isExpectedCollection = expectedPropertyNames.contains(propertyName)
+          && expected.store.isCollectionProperty(expected.uri, expectedId, propertyName);
+      var isCollection = isActualCollection || isExpectedCollection;
+      var ruleName = toJsonFieldName(propertyName, isCollection);
+      var newPath = path.field(propertyName, ruleName);
+      var newReferencePath = referencePath == null ? null
+          : referencePath.field(propertyName, ruleName);
+      List<Object> actualValues = actualPropertyNames.contains(propertyName)
+          ? actual.getValues(actualId, propertyName, isActualCollection) : List.of();
+      List<Object> expectedValues = expectedPropertyNames.contains(propertyName)
+          ? expected.getValues(expectedId, propertyName, isExpectedCollection) : List.of();
+
+      if (actualValues.isEmpty() && expectedValues.isEmpty()) {
+        continue;
+      }
+      if (actualValues.isEmpty() || expectedValues.isEmpty()) {
+        collector.add(Difference.builder()
+            .actualValue(actual.render(actualValues, isCollection))
+            .expectedValue(expected.render(expectedValues, isCollection))
+            .path(newPath)
+            .pathInReferenceDoc(newReferencePath));
+        continue;
+      }
+      if (newPath.rules().isCommonFieldSkipped() || newPath.rules().isContentSkipped()) {
+        continue;
+      }
+
+      if (isCollection) {
+        compareCollections(actualValues, expectedValues, newPath, newReferencePath);
+      } else {
+        compareValues(actualValues.get(0), expectedValues.get(0), newPath, newReferencePath);
+      }
+    }
+  }
+
+  private void compareValues(Object actualValue, Object expectedValue, JsonPath path,
+      @Nullable JsonPath referencePath) throws InvalidSPDXAnalysisException {
+    var valueRules = path.rules();
+    if (actual.hashOf(actualValue, valueRules) == expected.hashOf(expectedValue, valueRules)) {
+      if (actualValue instanceof TypedValue && !actual.isAnonymous(actualValue)) {
+        enqueue(((TypedValue) actualValue).getId());
+      }
+      return;
+    }
+    if (areAnonymousOfSameType(actualValue, expectedValue)) {
+      compareAnonymousElements((TypedValue) actualValue, (TypedValue) expectedValue, path,
+          referencePath);
+      return;
+    }
+    collector.add(Difference.builder()
+        .actualValue(actual.render(actualValue, new HashSet<>()))
+        .expectedValue(expected.render(expectedValue, new HashSet<>()))
+        .path(path)
+        .pathInReferenceDoc(referencePath));
+  }
+
+  private void compareAnonymousElements(TypedValue actualValue, TypedValue expectedValue,
+      JsonPath path, @Nullable JsonPath referencePath) throws InvalidSPDXAnalysisException {
+    if (!anonymousIdsInProgress.add(actualValue.getId())) {
+      return;
+    }
+    compareElements(actualValue.getId(), expectedValue.getId(), path, referencePath);
+    anonymousIdsInProgress.remove(actualValue.getId());
+  }
+
+  // Values with equal hashes are matched first. Leftover anonymous elements are compared by
+  // their properties if they are the only leftovers of their type on both sides.
+  private void compareCollections(List<Object> actualValues, List<Object> expectedValues,
+      JsonPath path, @Nullable JsonPath referencePath) throws InvalidSPDXAnalysisException {
+    var elementRules = path.rules().element();
+    var expectedListPath = referencePath == null ? path : referencePath;
+    var expectedPositionsByHash = new HashMap<Long, ArrayDeque<Integer>>();
+    for (var position = 0; position < expectedValues.size(); position++) {
+      expectedPositionsByHash.computeIfAbsent(
+          expected.hashOf(expectedValues.get(position), elementRules),
+          hash -> new ArrayDeque<>()).add(position);
+    }
+
+    var matchedExpectedPositions = new BitSet();
+    var unmatchedActualPositions = new ArrayList<Integer>();
+    for (var position = 0; position < actualValues.size(); position++) {
+      var value = actualValues.get(position);
+      var expectedPositions = expectedPositionsByHash.get(actual.hashOf(value, elementRules));
+      if (expectedPositions == null || expectedPositions.isEmpty()) {
+        unmatchedActualPositions.add(position);
+        continue;
+      }
+      matchedExpectedPositions.set(expectedPositions.poll());
+      if (value instanceof TypedValue && !actual.isAnonymous(value)) {
+        enqueue(((TypedValue) value).getId());
+      }
+    }
+    var unmatchedExpectedPositions = new ArrayList<Integer>();
+    for (var position = matchedExpectedPositions.nextClearBit(0);
+        position < expectedValues.size();
+        position = matchedExpectedPositions.nextClearBit(position + 1)) {
+      unmatchedExpectedPositions.add(position);
+    }
+
+    // Anonymous elements that are the only leftovers of their type and natural key on both sides
+    // are paired
+    var actualKeys = getPairingKeys(actual, actualValues, unmatchedActualPositions,
+        elementRules);
+    var expectedKeys = getPairingKeys(expected, expectedValues, unmatchedExpectedPositions,
+        elementRules);
+    var actualPositionsByKey = groupByKey(actualKeys);
+    var expectedPositionsByKey = groupByKey(expectedKeys);
+    var pairedExpectedPositions = new HashSet<Integer>();
+    for (var actualPosition : unmatchedActualPositions) {
+      var value = actualValues.get(actualPosition);
+      var key = actualKeys.get(actualPosition);
+      var actualPositionsOfKey = actualPositionsByKey.get(key);
+      var expectedPositionsOfKey = expectedPositionsByKey.get(key);
+      if (actualPositionsOfKey != null && actualPositionsOfKey.size() == 1
+          && expectedPositionsOfKey != null && expectedPositionsOfKey.size() == 1) {
+        var expectedPosition = expectedPositionsOfKey.get(0);
+        pairedExpectedPositions.add(expectedPosition);
+        compareAnonymousElements((TypedValue) value,
+            (TypedValue) expectedValues.get(expectedPosition), path.element(actualPosition),
+            expectedListPath.element(expectedPosition));
+        continue;
+      }
+      collector.add(Difference.builder()
+          .actualValue(actual.render(value, new HashSet<>()))
+          .path(path.element(actualPosition))
+          .pathInReferenceDoc(expectedListPath)
+          .comment("No element with equal content in expected list."));
+    }
+    for (var expectedPosition : unmatchedExpectedPositions) {
+      if (pairedExpectedPositions.contains(expectedPosition)) {
+        continue;
+      }
+      collector.add(Difference.builder()
+          .expectedValue(expected.render(expectedValues.get(expectedPosition), new HashSet<>()))
+          .pathInReferenceDoc(expectedListPath.element(expectedPosition))
+          .path(path)
+          .comment("No element with equal content in actual list."));
+    }
+  }
+
+  // The key consists of the type of an anonymous element, and of its natural key if the rules of
+  // the collection define one and the element has any of the key properties
+  private Map<Integer, String> getPairingKeys(Document document, List<Object> collectionValues,
+      List<Integer> positions, ComparisonRules.State elementRules)
+      throws InvalidSPDXAnalysisException {
+    var naturalKey = elementRules.naturalKey();
+    var keys = new HashMap<Integer, String>();
+    for (var position : positions) {
+      var value = collectionValues.get(position);
+      if (!document.isAnonymous(value)) {
+        continue;
+      }
+      var key = ((TypedValue) value).getType();
+      if (naturalKey != null) {
+        var naturalKeyValue = naturalKey.of(
+            document.renderElement(((TypedValue) value).getId(), new HashSet<>()), elementRules,
+            values);
+        if (naturalKeyValue != null) {
+          key += KEY_SEPARATOR + naturalKeyValue;
+        }
+      }
+      keys.put(position, key);
+    }
+    return keys;
+  }
+
+  private static Map<String, List<Integer>> groupByKey(Map<Integer, String> keys) {
+    var positionsByKey = new HashMap<String, List<Integer>>();
+    keys.forEach((position, key) ->
+        positionsByKey.computeIfAbsent(key, k -> new ArrayList<>()).add(position));
+    return positionsByKey;
+  }
+
+  /**
+   * Returns the name of the json field that holds the values of the property, which is the plural
+   * of the property name for collections, e.g. checksums for checksum.
+   */
+  static String toJsonFieldName(String propertyName, boolean isCollection) {
+    return isCollection && !propertyName.endsWith("s") ? propertyName + "s" : propertyName;
+  }
+
+  private boolean areAnonymousOfSameType(Object actualValue, Object expectedValue) {
+    return actual.isAnonymous(actualValue) && expected.isAnonymous(expectedValue)
+        && ((TypedValue) actualValue).getType().equals(((TypedValue) expectedValue).getType());
+  }
+
+  /**
+   * One of the compared documents, with the content hashes of its anonymous elements.
+   */
+  private static final class Document {
+
+    private final IModelStore store;
+    private final String uri;
+    // The hashes depend on the rules, so they are stored per state of the rules
+    private final Map<ComparisonRules.State, Map<String, Long>> anonymousHashes =
+        new IdentityHashMap<>();
+    private final Set<String> idsInProgress = new HashSet<>();
+
+    Document(IModelStore store, String uri) {
+      this.store = store;
+      this.uri = uri;
+    }
+
+    Set<String> getIdentifiedElementIds() throws InvalidSPDXAnalysisException {
+      try (var items = store.getAllItems(uri, null)) {
+        return items.map(TypedValue::getId)
+            .filter(id -> store.getIdType(id) != IModelStore.IdType.Anonymous)
+            .collect(Collectors.toCollection(TreeSet::new));
+      }
+    }
+
+    /**
+     * Returns the values of the property that are not equivalent to null. The property must be
+     * present.
+     */
+    List<Object> getValues(String id, String propertyName, boolean isCollection)
+        throws InvalidSPDXAnalysisException {
+      var values = new ArrayList<>();
+      if (isCollection) {
+        var iterator = store.listValues(uri, id, propertyName);
+        while (iterator.hasNext()) {
+          var value = iterator.next();
+          if (!isEquivalentToNull(value)) {
+            values.add(value);
+          }
+        }
+      } else {
+        store.getValue(uri, id, propertyName)
+            .filter(value -> !isEquivalentToNull(value))
+            .ifPresent(values::add);
+      }
+      return values;
+    }
+
+    boolean isAnonymous(Object value) {
+      return value instanceof TypedValue
+          && store.getIdType(((TypedValue) value).getId()) == IModelStore.IdType.Anonymous;
+    }
+
+    long hashOf(Object value, ComparisonRules.State rules) throws InvalidSPDXAnalysisException {
+      if (!(value instanceof TypedValue)) {
+        return JsonFingerprint.mix(VALUE_SEED ^ JsonFingerprint.hash(normalize(value, rules)));
+      }
+      var id = ((TypedValue) value).getId();
+      if (!isAnonymous(value)) {
+        return JsonFingerprint.mix(ID_SEED ^ JsonFingerprint.hash(id));
+      }
+      var hashes = anonymousHashes.computeIfAbsent(rules, state -> new HashMap<>());
+      var hash = hashes.get(id);
+      if (hash == null) {
+        if (!idsInProgress.add(id)) {
+          return CYCLE_SEED;
+        }
+        hash = hashElement((TypedValue) value, rules);
+        idsInProgress.remove(id);
+        hashes.put(id, hash);
+      }
+      return hash;
+    }
+
+    // Properties and collection elements are combined by addition, so their order does not matter
+    private long hashElement(TypedValue element, ComparisonRules.State rules)
+        throws InvalidSPDXAnalysisException {
+      var hash = ELEMENT_SEED ^ JsonFingerprint.hash(element.getType());
+      for (var propertyName : store.getPropertyValueNames(uri, element.getId())) {
+        var isCollection = store.isCollectionProperty(uri, element.getId(), propertyName);
+        var propertyRules = rules.field(toJsonFieldName(propertyName, isCollection));
+        var values = getValues(element.getId(), propertyName, isCollection);
+        if (values.isEmpty()) {
+          continue;
+        }
+        long valueHash;
+        if (isCollection) {
+          valueHash = COLLECTION_SEED;
+          for (var value : values) {
+            valueHash += JsonFingerprint.mix(hashOf(value, propertyRules.element()));
+          }
+        } else {
+          valueHash = hashOf(values.get(0), propertyRules);
+        }
+        hash += JsonFingerprint.mix(JsonFingerprint.hash(propertyName) * 31 + valueHash);
+      }
+      return JsonFingerprint.mix(hash);
+    }
+
+    @Nullable
+    JsonNode render(List<Object> values, boolean isCollection)
+        throws InvalidSPDXAnalysisException {
+      if (values.isEmpty()) {
+        return null;
+      }
+      if (!isCollection) {
+        return render(values.get(0), new HashSet<>());
+      }
+      var array = JsonNodeFactory.instance.arrayNode();
+      for (var value : values) {
+        array.add(render(value, new HashSet<>()));
+      }
+      return array;
+    }
+
+    /**
+     * Renders the value as json. Elements with an Spdx id are rendered as their id, anonymous
+     * elements with their properties.
+     */
+    JsonNode render(Object value, Set<String> renderedIds) throws InvalidSPDXAnalysisException {
+      if (value instanceof IndividualUriValue) {
+        return JsonNodeFactory.instance.textNode(((IndividualUriValue) value).getIndividualURI());
+      }
+      if (value instanceof Boolean) {
+        return JsonNodeFactory.instance.booleanNode((Boolean) value);
+      }
+      if (value instanceof Integer) {
+        return JsonNodeFactory.instance.numberNode((Integer) value);
+      }
+      if (!(value instanceof TypedValue)) {
+        return JsonNodeFactory.instance.textNode(value.toString());
+      }
+      var id = ((TypedValue) value).getId();
+      return isAnonymous(value) ? renderElement(id, renderedIds)
+          : JsonNodeFactory.instance.textNode(id);
+    }
+
+    /**
+     * Renders the properties of the element as json object. Elements that are already being
+     * rendered are rendered as their id, to stop at cycles.
+     */
+    JsonNode renderElement(String id, Set<String> renderedIds)
+        throws InvalidSPDXAnalysisException {
+      if (!renderedIds.add(id)) {
+        return JsonNodeFactory.instance.textNode(id);
+      }
+      ObjectNode object = JsonNodeFactory.instance.objectNode();
+      for (var propertyName : new TreeSet<>(store.getPropertyValueNames(uri, id))) {
+        var isCollection = store.isCollectionProperty(uri, id, propertyName);
+        var values = getValues(id, propertyName, isCollection);
+        if (values.isEmpty()) {
+          continue;
+        }
+        if (isCollection) {
+          var array = object.putArray(propertyName);
+          for (var element : values) {
+            array.add(render(element, renderedIds));
+          }
+        } else {
+          object.set(propertyName, render(values.get(0), renderedIds));
+        }
+      }
+      renderedIds.remove(id);
+      return object;
+    }
+
+    private static String normalize(Object value, ComparisonRules.State rules) {
+      var text = value instanceof IndividualUriValue
+          ? ((IndividualUriValue) value).getIndividualURI() : value.toString();
+      return rules.normalize(NormalizedValues.normalize(text));
+    }
+
+    private static boolean isEquivalentToNull(Object value) {
+      var text = value instanceof IndividualUriValue
+          ? ((IndividualUriValue) value).getIndividualURI() : value.toString();
+      return !(value instanceof TypedValue) && (SpdxConstants.NOASSERTION_VALUE.equals(text)
+          || SpdxConstants.URI_VALUE_NOASSERTION.equals(text));
+    }
+  }
+}
@@ -0,0 +1,64 @@
+// SPDX-FileCopyrightText: TNG Technology Consulting GmbH
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.spdx.testbed.util.json;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * Identifies elements of Spdx lists whose elements don't have an Spdx id, like checksums or
+ * relationships, by the values of a few fields. Elements with the same natural key are considered
+ * to describe the same thing, so they are compared field by field instead of being reported as a
+ * whole. The keys are configured per list via {@link ComparisonRules}.
+ */
+final class NaturalKey {
+
+  private static final char SEPARATOR = '\u0000';
+
+  private final List<String> fieldNames;
+
+  NaturalKey(List<String> fieldNames) {
+    this.fieldNames = List.copyOf(fieldNames);
+  }
+
+  /**
+   * Returns the key of the provided element, built from the normalized values of the key fields.
+   * Elements that are no objects or don't have any of the key fields don't have a key.
+   *
+   * @param elementRules state of the rules at the element
+   */
+  @Nullable
+  String of(JsonNode element, ComparisonRules.State elementRules, NormalizedValues values) {
+    if (!element.isObject()) {
+      return null;
+    }
+    var key = new StringBuilder();
+    var hasKeyField = false;
+    for (var i = 0; i < fieldNames.size(); i++) {
+      if (i > 0) {
+        key.append(SEPARATOR);
+      }
+      var fieldName = fieldNames.get(i);
+      var value = element.get(fieldName);
+      if (value == null || JsonComparison.isEquivalentToNull(value)) {
+        continue;
+      }
+      if (!value.isValueNode()) {
+        return null;
+      }
+      key.append(values.of(value, elementRules.field(fieldName)));
+      hasKeyField = true;
+    }
+    return hasKeyField ? key.toString() : null;
+  }
+
+  /**
+   * Describes the key fields for comments in differences.
+   */
+  String describe() {
+    return String.join(", ", fieldNames);
+  }
+}
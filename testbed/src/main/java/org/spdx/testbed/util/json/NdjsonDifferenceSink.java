@@ -0,0 +1,75 @@
+// SPDX-FileCopyrightText: TNG Technology Consulting GmbH
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.spdx.testbed.util.json;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes the differences it receives as newline-delimited json, one compact json object per
+ * line. The output is buffered, so only the difference being written is held in memory, and the
+ * written lines can be read while the comparison is still running once they are flushed.
+ */
+public class NdjsonDifferenceSink implements DifferenceSink, Closeable {
+
+  // The writer is flushed and closed by the sink, not after every difference
+  private static final ObjectWriter WRITER = new ObjectMapper().writer()
+      .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+      .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+  private final Writer writer;
+
+  public NdjsonDifferenceSink(Writer writer) {
+    this.writer = writer instanceof BufferedWriter ? writer : new BufferedWriter(writer);
+  }
+
+  /**
+   * Creates a sink that writes to the provided file, replacing any previous content.
+   *
+   * @throws IOException In case the file cannot be opened
+   */
+  public static NdjsonDifferenceSink toFile(Path file) throws IOException {
+    return new NdjsonDifferenceSink(Files.newBufferedWriter(file, StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Writes the provided difference as a single line.
+   *
+   * @throws UncheckedIOException In case the difference cannot be written
+   */
+  @Override
+  public void add(Difference difference) {
+    try {
+      WRITER.writeValue(writer, difference);
+      writer.write('\n');
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Writes all buffered lines to the underlying writer.
+   *
+   * @throws IOException In case the lines cannot be written
+   */
+  public void flush() throws IOException {
+    writer.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    writer.close();
+  }
+}
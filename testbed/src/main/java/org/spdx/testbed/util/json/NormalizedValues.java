@@ -0,0 +1,256 @@
+// SPDX-FileCopyrightText: TNG Technology Consulting GmbH
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.spdx.testbed.util.json;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.spdx.library.SpdxConstants;
+
+/**
+ * Side table holding the normalized values of the leaves of the compared documents. Each leaf is
+ * normalized once per comparison and looked up by identity afterwards, no matter how often it is
+ * probed while matching list elements or computing fingerprints. Most texts are already in their
+ * normalized form, which is detected without copying them, so only the remaining leaves are stored
+ * in the table. The table may be shared by concurrent tasks.
+ *
+ * <p>The normalization removes surrounding whitespace, converts windows line endings and replaces
+ * the uri form of none values by the simple form. Noassertion values don't need to be normalized,
+ * since they are equivalent to null and never compared as values.
+ *
+ * <p>Documents that are compared as a whole can be canonicalized up front. This stores a content
+ * hash for each of their objects and lists, like in a Merkle tree: The hash covers the normalized
+ * values of all leaves below the node, but neither the order of fields nor the order of list
+ * elements, and leaves out everything that is equivalent to null. Only lists that the
+ * {@link ComparisonRules} compare in order are hashed by position. Two canonicalized subtrees with
+ * the same hash cannot have any differences, so the comparison skips them without visiting their
+ * children. Unlike for {@link JsonFingerprint}, nothing else is ignored, and the hash has 128 bits
+ * in two lanes that use different seeds and different hash functions for texts, so that a real
+ * difference is only hidden if both lanes collide at once.
+ */
+final class NormalizedValues {
+
+  private static final long OBJECT_SEED = 0x8cb92ba72f3d8dd7L;
+  private static final long ARRAY_SEED = 0x4cf5ad432745937fL;
+  private static final long VALUE_SEED = 0x2545f4914f6cdd1dL;
+  private static final long NULL_SEED = 0x3c6ef372fe94f82bL;
+  // Seeds of the second lane
+  private static final long SECOND_OBJECT_SEED = 0xa54ff53a5f1d36f1L;
+  private static final long SECOND_ARRAY_SEED = 0x510e527fade682d1L;
+  private static final long SECOND_VALUE_SEED = 0x9b05688c2b3e6c1fL;
+  private static final long SECOND_NULL_SEED = 0x1f83d9abfb41bd6bL;
+  private static final long SECOND_LANE_SEED = 0x5be0cd19137e2179L;
+
+  private final Map<NodeKey, String> normalizedValues = new ConcurrentHashMap<>();
+  private final Map<NodeKey, ContentHash> contentHashes = new ConcurrentHashMap<>();
+
+  /**
+   * Returns the normalized value of the provided value node.
+   */
+  String of(JsonNode valueNode) {
+    if (valueNode.isTextual() && isNormalized(valueNode.textValue())) {
+      return valueNode.textValue();
+    }
+    var key = new NodeKey(valueNode);
+    var normalizedValue = normalizedValues.get(key);
+    if (normalizedValue == null) {
+      normalizedValue = normalize(valueNode.asText());
+      normalizedValues.putIfAbsent(key, normalizedValue);
+    }
+    return normalizedValue;
+  }
+
+  /**
+   * Returns the normalized value of the provided value node, including the normalization
+   * configured for the node by the {@link ComparisonRules}. Only the general normalization is
+   * stored in the table.
+   */
+  String of(JsonNode valueNode, ComparisonRules.State rules) {
+    return rules.normalize(of(valueNode));
+  }
+
+  boolean areEquivalent(JsonNode actualValueNode, JsonNode expectedValueNode,
+      ComparisonRules.State rules) {
+    return of(actualValueNode, rules).equals(of(expectedValueNode, rules));
+  }
+
+  /**
+   * Stores the content hashes of the provided node and all objects and lists below it.
+   *
+   * @param rules state of the rules at the node
+   */
+  void canonicalize(JsonNode node, ComparisonRules.State rules) {
+    hashContent(node, rules);
+  }
+
+  /**
+   * Checks whether both nodes are canonicalized and have the same content hash. This is never the
+   * case for nodes that haven't been canonicalized, e.g. during a streaming comparison.
+   */
+  boolean haveSameContent(JsonNode actualNode, JsonNode expectedNode) {
+    if (contentHashes.isEmpty() || !actualNode.isContainerNode()
+        || !expectedNode.isContainerNode()) {
+      return false;
+    }
+    var actualHash = contentHashes.get(new NodeKey(actualNode));
+    // Empty containers and containers with only null-equivalent content have the same hash, but
+    // only the former are equivalent to null
+    return actualHash != null && actualHash.equals(contentHashes.get(new NodeKey(expectedNode)))
+        && JsonComparison.isEquivalentToNull(actualNode)
+        == JsonComparison.isEquivalentToNull(expectedNode);
+  }
+
+  // Fields and list elements are combined by addition, so their order does not matter, but
+  // duplicates in lists do. Lists that are compared in order are combined by position instead.
+  // The normalizations configured by the rules are left out, which only makes the hash stricter.
+  private ContentHash hashContent(JsonNode node, ComparisonRules.State rules) {
+    long first;
+    long second;
+    if (node.isObject()) {
+      first = OBJECT_SEED;
+      second = SECOND_OBJECT_SEED;
+      var fields = node.fields();
+      while (fields.hasNext()) {
+        var field = fields.next();
+        if (!JsonComparison.isEquivalentToNull(field.getValue())) {
+          var fieldHash = hashContent(field.getValue(), rules.field(field.getKey()));
+          first += JsonFingerprint.mix(JsonFingerprint.hash(field.getKey()) * 31
+              + fieldHash.first);
+          second += mixSecond(hashSecond(field.getKey()) * 37 + fieldHash.second);
+        }
+      }
+    } else if (node.isArray() && rules.isOrdered()) {
+      first = ARRAY_SEED;
+      second = SECOND_ARRAY_SEED;
+      for (var element : node) {
+        if (JsonComparison.isEquivalentToNull(element)) {
+          first = JsonFingerprint.mix(first * 31 + NULL_SEED);
+          second = mixSecond(second * 37 + SECOND_NULL_SEED);
+        } else {
+          var elementHash = hashContent(element, rules.element());
+          first = JsonFingerprint.mix(first * 31 + elementHash.first);
+          second = mixSecond(second * 37 + elementHash.second);
+        }
+      }
+    } else if (node.isArray()) {
+      first = ARRAY_SEED;
+      second = SECOND_ARRAY_SEED;
+      for (var element : node) {
+        if (!JsonComparison.isEquivalentToNull(element)) {
+          var elementHash = hashContent(element, rules.element());
+          first += JsonFingerprint.mix(elementHash.first);
+          second += mixSecond(elementHash.second);
+        }
+      }
+    } else {
+      var value = of(node);
+      return new ContentHash(JsonFingerprint.mix(VALUE_SEED ^ JsonFingerprint.hash(value)),
+          mixSecond(SECOND_VALUE_SEED ^ hashSecond(value)));
+    }
+    var contentHash = new ContentHash(JsonFingerprint.mix(first), mixSecond(second));
+    contentHashes.put(new NodeKey(node), contentHash);
+    return contentHash;
+  }
+
+  // Multiplicative hash, which is unrelated to the FNV hash of the first lane
+  private static long hashSecond(String s) {
+    long hash = SECOND_LANE_SEED;
+    for (var i = 0; i < s.length(); i++) {
+      hash = (hash + s.charAt(i)) * 0x9e3779b97f4a7c15L;
+    }
+    return hash;
+  }
+
+  private static long mixSecond(long z) {
+    return JsonFingerprint.mix(z ^ SECOND_LANE_SEED);
+  }
+
+  private static boolean isNormalized(String value) {
+    if (value.isEmpty()) {
+      return true;
+    }
+    return value.charAt(0) > ' ' && value.charAt(value.length() - 1) > ' '
+        && value.indexOf('\r') < 0 && !SpdxConstants.URI_VALUE_NONE.equals(value);
+  }
+
+  /**
+   * Normalizes the provided value without caching. The string is only copied if the normalization
+   * changes it.
+   */
+  static String normalize(String value) {
+    var start = 0;
+    var end = value.length();
+    while (start < end && value.charAt(start) <= ' ') {
+      start++;
+    }
+    while (end > start && value.charAt(end - 1) <= ' ') {
+      end--;
+    }
+
+    String normalizedValue;
+    var carriageReturn = value.indexOf('\r', start);
+    if (carriageReturn < 0 || carriageReturn >= end) {
+      normalizedValue = value.substring(start, end);
+    } else {
+      var builder = new StringBuilder(end - start);
+      for (var index = start; index < end; index++) {
+        var character = value.charAt(index);
+        if (character != '\r' || index + 1 >= end || value.charAt(index + 1) != '\n') {
+          builder.append(character);
+        }
+      }
+      normalizedValue = builder.toString();
+    }
+
+    // None values are treated the same, regardless of whether it's the uri form or the simple
+    // form. We convert all to the simple form to make comparison easier.
+    if (SpdxConstants.URI_VALUE_NONE.equals(normalizedValue)) {
+      return SpdxConstants.NONE_VALUE;
+    }
+    return normalizedValue;
+  }
+
+  private static final class ContentHash {
+
+    private final long first;
+    private final long second;
+
+    ContentHash(long first, long second) {
+      this.first = first;
+      this.second = second;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      return other instanceof ContentHash && ((ContentHash) other).first == first
+          && ((ContentHash) other).second == second;
+    }
+
+    @Override
+    public int hashCode() {
+      return Long.hashCode(first ^ second);
+    }
+  }
+
+  // Json nodes implement a deep equals, but the table is meant for exactly the visited nodes
+  private static final class NodeKey {
+
+    private final JsonNode node;
+
+    NodeKey(JsonNode node) {
+      this.node = node;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      return other instanceof NodeKey && ((NodeKey) other).node == node;
+    }
+
+    @Override
+    public int hashCode() {
+      return System.identityHashCode(node);
+    }
+  }
+}
@@ -0,0 +1,357 @@
+// SPDX-FileCopyrightText: TNG Technology Consulting GmbH
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.spdx.testbed.util.json;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import javax.annotation.Nullable;
+
+/**
+ * Compares two json documents with the same semantics as {@link JsonComparison}, but distributes
+ * the work on a {@link ForkJoinPool}. The top-level sections and all lists or objects with at least
+ * 64 members are compared in separate tasks. For large lists, the search for
+ * exact matches is split into chunks, and the comparisons of matched elements are forked in batches
+ * of the same size. Everything below is compared sequentially. The results of all tasks are merged
+ * in the order of the sequential comparison, so without a budget the returned differences are
+ * identical to those of {@link JsonComparison#findDifferences(ObjectNode, ObjectNode)}.
+ *
+ * <p>Tasks buffer their differences until all differences before them are known. All buffers
+ * share the budget of the provided {@link DifferenceCollector}, and only count the differences
+ * once it is exhausted, so at most twice the budget is held in memory. The number of differences
+ * is the same as in the sequential comparison, but once the budget is exhausted, which of them
+ * are retained depends on the order in which the tasks detect them. If the collector passes its
+ * differences on to a {@link DifferenceSink}, the documents are compared sequentially, so that the
+ * sink receives each difference as soon as it is detected.
+ */
+public class ParallelJsonComparison {
+
+  // Lists and objects with fewer members are compared sequentially, exact matches are searched
+  // in chunks of this size, and matched elements are compared in batches of this size
+  private static final int LIST_CHUNK_SIZE = 64;
+
+  /**
+   * Compares the two provided ObjectNodes using the provided pool and returns a list of detected
+   * differences.
+   */
+  public static List<Difference> findDifferences(ObjectNode actualNode, ObjectNode expectedNode,
+      ForkJoinPool pool) {
+    var collector = DifferenceCollector.unlimited();
+    findDifferences(actualNode, expectedNode, pool, collector);
+    return collector.getDifferences();
+  }
+
+  /**
+   * Same as {@link #findDifferences(ObjectNode, ObjectNode, ForkJoinPool)}, but passes the detected
+   * differences to the provided collector.
+   */
+  public static void findDifferences(ObjectNode actualNode, ObjectNode expectedNode,
+      ForkJoinPool pool, DifferenceCollector collector) {
+    findDifferences(actualNode, expectedNode, ComparisonRules.DEFAULT, pool, collector);
+  }
+
+  /**
+   * Same as {@link #findDifferences(ObjectNode, ObjectNode, ForkJoinPool, DifferenceCollector)},
+   * but applies the provided rules instead of the default ones.
+   */
+  public static void findDifferences(ObjectNode actualNode, ObjectNode expectedNode,
+      ComparisonRules rules, ForkJoinPool pool, DifferenceCollector collector) {
+    if (collector.hasSink()) {
+      JsonComparison.findDifferences(actualNode, expectedNode, rules, collector);
+      return;
+    }
+
+    // Both documents are canonicalized concurrently, see JsonComparison
+    var values = new NormalizedValues();
+    var expectedCanonicalization = pool.submit(
+        () -> values.canonicalize(expectedNode, rules.root()));
+    values.canonicalize(actualNode, rules.root());
+    expectedCanonicalization.join();
+
+    var comparison = new Comparison(values, collector, collector.createSharedBudget());
+    var rootTask = new ComparisonTask(actualNode, expectedNode, JsonPath.of("", rules.root()),
+        null, comparison, true);
+    pool.invoke(ForkJoinTask.adapt(() -> rootTask.compareInto(collector)));
+  }
+
+  /**
+   * State that is shared by all tasks of a comparison.
+   */
+  private static class Comparison {
+
+    private final NormalizedValues values;
+    // Only used for its budget
+    private final DifferenceCollector template;
+    private final AtomicInteger sharedBudget;
+
+    Comparison(NormalizedValues values, DifferenceCollector template,
+        AtomicInteger sharedBudget) {
+      this.values = values;
+      this.template = template;
+      this.sharedBudget = sharedBudget;
+    }
+
+    DifferenceCollector createBuffer() {
+      return template.createBuffer(sharedBudget);
+    }
+
+    void compareSequentially(JsonNode actualNode, JsonNode expectedNode, JsonPath path,
+        @Nullable JsonPath referencePath, DifferenceCollector collector) {
+      JsonComparison.collectDifferences(actualNode, expectedNode, path, referencePath, values,
+          collector);
+    }
+  }
+
+  private static class ComparisonTask extends RecursiveTask<DifferenceCollector> {
+
+    private final JsonNode actualNode;
+    private final JsonNode expectedNode;
+    private final JsonPath path;
+    @Nullable
+    private final JsonPath referencePath;
+    private final Comparison comparison;
+    // The fields of the root are the top-level sections, which are all compared in separate tasks
+    private final boolean root;
+
+    ComparisonTask(JsonNode actualNode, JsonNode expectedNode, JsonPath path,
+        @Nullable JsonPath referencePath, Comparison comparison, boolean root) {
+      this.actualNode = actualNode;
+      this.expectedNode = expectedNode;
+      this.path = path;
+      this.referencePath = referencePath;
+      this.comparison = comparison;
+      this.root = root;
+    }
+
+    @Override
+    protected DifferenceCollector compute() {
+      return compareInto(comparison.createBuffer());
+    }
+
+    DifferenceCollector compareInto(DifferenceCollector collector) {
+      if (comparison.values.haveSameContent(actualNode, expectedNode)) {
+        return collector;
+      }
+      if (JsonComparison.isEquivalentToNull(actualNode)
+          || JsonComparison.isEquivalentToNull(expectedNode) || path.rules().isContentSkipped()) {
+        comparison.compareSequentially(actualNode, expectedNode, path, referencePath, collector);
+      } else if (actualNode instanceof ObjectNode && expectedNode instanceof ObjectNode) {
+        compareObjects((ObjectNode) actualNode, (ObjectNode) expectedNode, collector);
+      } else if (actualNode instanceof ArrayNode && expectedNode instanceof ArrayNode
+          && actualNode.size() >= LIST_CHUNK_SIZE) {
+        compareLists((ArrayNode) actualNode, (ArrayNode) expectedNode, collector);
+      } else {
+        comparison.compareSequentially(actualNode, expectedNode, path, referencePath, collector);
+      }
+      return collector;
+    }
+
+    private void compareObjects(ObjectNode actualObject, ObjectNode expectedObject,
+        DifferenceCollector collector) {
+      var parts = new OrderedParts(comparison, root);
+      var actualFields = actualObject.fields();
+      while (actualFields.hasNext()) {
+        var actualField = actualFields.next();
+        var fieldName = actualField.getKey();
+        var expectedValue = expectedObject.get(fieldName);
+        if (expectedValue == null) {
+          continue;
+        }
+        var fieldPath = path.field(fieldName);
+        if (fieldPath.rules().isCommonFieldSkipped()) {
+          continue;
+        }
+        parts.compare(actualField.getValue(), expectedValue, fieldPath,
+            referencePath == null ? null : referencePath.field(fieldName));
+      }
+      parts.joinInto(collector);
+      JsonComparison.addExclusiveFieldDifferences(actualObject, expectedObject, path,
+          referencePath, collector);
+    }
+
+    private void compareLists(ArrayNode actualList, ArrayNode expectedList,
+        DifferenceCollector collector) {
+      if (path.rules().isOrdered()) {
+        var parts = new OrderedParts(comparison, false);
+        JsonComparison.compareInOrder(actualList, expectedList, path, referencePath, parts);
+        parts.joinInto(collector);
+        return;
+      }
+
+      var expectedListPath = referencePath == null ? path : referencePath;
+      var listMatcher = new ListMatcher(expectedList, path, expectedListPath, comparison.values);
+
+      // Searching exact matches does not change the matcher, so it can be done concurrently.
+      // Consuming the matches has to happen in order, though.
+      @SuppressWarnings("unchecked")
+      List<Integer>[] exactMatches = new List[actualList.size()];
+      new ExactMatchSearch(listMatcher, actualList, exactMatches, 0, actualList.size()).invoke();
+
+      var parts = new OrderedParts(comparison, false);
+      for (var position = 0; position < actualList.size(); position++) {
+        listMatcher.matchActualElement(actualList.get(position), position,
+            exactMatches[position], parts);
+      }
+      listMatcher.matchRemainingExpectedElements(parts);
+      parts.joinInto(collector);
+    }
+  }
+
+  /**
+   * Compares a batch of small nodes sequentially.
+   */
+  private static class BatchTask extends RecursiveTask<DifferenceCollector> {
+
+    private final List<ComparedNodes> batch;
+    private final Comparison comparison;
+
+    BatchTask(List<ComparedNodes> batch, Comparison comparison) {
+      this.batch = batch;
+      this.comparison = comparison;
+    }
+
+    @Override
+    protected DifferenceCollector compute() {
+      var collector = comparison.createBuffer();
+      for (var nodes : batch) {
+        nodes.compareInto(comparison, collector);
+      }
+      return collector;
+    }
+  }
+
+  private static class ComparedNodes {
+
+    private final JsonNode actualNode;
+    private final JsonNode expectedNode;
+    private final JsonPath path;
+    @Nullable
+    private final JsonPath referencePath;
+
+    ComparedNodes(JsonNode actualNode, JsonNode expectedNode, JsonPath path,
+        @Nullable JsonPath referencePath) {
+      this.actualNode = actualNode;
+      this.expectedNode = expectedNode;
+      this.path = path;
+      this.referencePath = referencePath;
+    }
+
+    void compareInto(Comparison comparison, DifferenceCollector collector) {
+      comparison.compareSequentially(actualNode, expectedNode, path, referencePath, collector);
+    }
+  }
+
+  private static class ExactMatchSearch extends RecursiveAction {
+
+    private final ListMatcher listMatcher;
+    private final ArrayNode actualList;
+    private final List<Integer>[] exactMatches;
+    private final int from;
+    private final int to;
+
+    ExactMatchSearch(ListMatcher listMatcher, ArrayNode actualList, List<Integer>[] exactMatches,
+        int from, int to) {
+      this.listMatcher = listMatcher;
+      this.actualList = actualList;
+      this.exactMatches = exactMatches;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= LIST_CHUNK_SIZE) {
+        for (var position = from; position < to; position++) {
+          var element = actualList.get(position);
+          exactMatches[position] = JsonComparison.isEquivalentToNull(element) ? List.of()
+              : listMatcher.findExactMatches(element);
+        }
+        return;
+      }
+      var middle = (from + to) >>> 1;
+      invokeAll(new ExactMatchSearch(listMatcher, actualList, exactMatches, from, middle),
+          new ExactMatchSearch(listMatcher, actualList, exactMatches, middle, to));
+    }
+  }
+
+  /**
+   * Collects differences and comparisons in the order they are added, and merges their results
+   * into a collector in that order. Large nodes are compared in forked tasks, and small ones in
+   * batches, which are forked once they are full. The comparisons of a batch that is not full are
+   * run while merging, directly into the collector.
+   */
+  private static class OrderedParts implements ListMatcher.Output {
+
+    private final List<Consumer<DifferenceCollector>> parts = new ArrayList<>();
+    private final Comparison comparison;
+    private final boolean forkAllContainers;
+    private List<ComparedNodes> batch = new ArrayList<>();
+
+    OrderedParts(Comparison comparison, boolean forkAllContainers) {
+      this.comparison = comparison;
+      this.forkAllContainers = forkAllContainers;
+    }
+
+    @Override
+    public void addDifference(Difference.DifferenceBuilder difference) {
+      closeBatch();
+      parts.add(collector -> collector.add(difference));
+    }
+
+    @Override
+    public void compareMatchedElements(JsonNode actualElement, JsonNode expectedElement,
+        JsonPath actualElementPath, JsonPath expectedElementPath) {
+      compare(actualElement, expectedElement, actualElementPath, expectedElementPath);
+    }
+
+    void compare(JsonNode actualNode, JsonNode expectedNode, JsonPath path,
+        @Nullable JsonPath referencePath) {
+      if (actualNode.isContainerNode() && expectedNode.isContainerNode()
+          && (forkAllContainers || isLarge(actualNode) || isLarge(expectedNode))) {
+        closeBatch();
+        var task = new ComparisonTask(actualNode, expectedNode, path, referencePath, comparison,
+            false);
+        task.fork();
+        parts.add(collector -> collector.addAll(task.join()));
+        return;
+      }
+      batch.add(new ComparedNodes(actualNode, expectedNode, path, referencePath));
+      if (batch.size() == LIST_CHUNK_SIZE) {
+        var task = new BatchTask(batch, comparison);
+        task.fork();
+        parts.add(collector -> collector.addAll(task.join()));
+        batch = new ArrayList<>();
+      }
+    }
+
+    void joinInto(DifferenceCollector collector) {
+      closeBatch();
+      for (var part : parts) {
+        part.accept(collector);
+      }
+    }
+
+    private void closeBatch() {
+      if (batch.isEmpty()) {
+        return;
+      }
+      var pending = batch;
+      parts.add(collector -> pending.forEach(nodes -> nodes.compareInto(comparison, collector)));
+      batch = new ArrayList<>();
+    }
+
+    private static boolean isLarge(JsonNode node) {
+      return node.size() >= LIST_CHUNK_SIZE;
+    }
+  }
+}
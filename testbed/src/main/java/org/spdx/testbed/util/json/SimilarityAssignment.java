@@ -0,0 +1,266 @@
+// SPDX-FileCopyrightText: TNG Technology Consulting GmbH
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.spdx.testbed.util.json;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pairs list elements that could neither be matched exactly nor by a key, based on the similarity
+ * of their leaves. Paired elements are compared field by field, which results in more precise
+ * differences than reporting both elements as a whole. The similarity of two elements is the
+ * number of leaves they share, see {@link JsonFingerprint#ofLeaves}. Elements are only paired if
+ * at least a third of all their leaves are shared.
+ *
+ * <p>Up to {@value #EXACT_ASSIGNMENT_LIMIT} elements per side, the pairing minimizes the total
+ * number of differing leaves via the Hungarian algorithm. Its cubic runtime is not acceptable for
+ * larger lists, so those only consider candidates with a similar MinHash signature and pair them
+ * greedily by descending similarity.
+ */
+final class SimilarityAssignment {
+
+  static final int NO_MATCH = -1;
+
+  private static final int EXACT_ASSIGNMENT_LIMIT = 100;
+  // Elements that share a third of their leaves collide in at least one band with a probability
+  // of about 85%, elements that share half of them with about 99%
+  private static final int BANDS = 16;
+  private static final int ROWS_PER_BAND = 2;
+  private static final int MAX_CANDIDATES = 32;
+  private static final long INFINITY = Long.MAX_VALUE / 4;
+
+  private SimilarityAssignment() {
+  }
+
+  /**
+   * Returns the index of the paired expected element for each actual element, or
+   * {@link #NO_MATCH} if an element is not paired.
+   *
+   * @param elementRules state of the rules at the elements
+   */
+  static int[] assign(List<JsonNode> actualElements, List<JsonNode> expectedElements,
+      ComparisonRules.State elementRules, NormalizedValues values) {
+    var actualLeaves = leavesOf(actualElements, elementRules, values);
+    var expectedLeaves = leavesOf(expectedElements, elementRules, values);
+    if (Math.max(actualLeaves.length, expectedLeaves.length) <= EXACT_ASSIGNMENT_LIMIT) {
+      return assignOptimally(actualLeaves, expectedLeaves);
+    }
+    return assignApproximately(actualLeaves, expectedLeaves);
+  }
+
+  private static long[][] leavesOf(List<JsonNode> elements, ComparisonRules.State elementRules,
+      NormalizedValues values) {
+    var leaves = new long[elements.size()][];
+    for (var i = 0; i < leaves.length; i++) {
+      leaves[i] = JsonFingerprint.ofLeaves(elements.get(i), elementRules, values);
+    }
+    return leaves;
+  }
+
+  /**
+   * Returns the number of leaves both elements share, or zero if they are not similar enough to
+   * be paired.
+   */
+  private static int similarity(long[] actualLeaves, long[] expectedLeaves) {
+    var shared = 0;
+    var i = 0;
+    var j = 0;
+    while (i < actualLeaves.length && j < expectedLeaves.length) {
+      if (actualLeaves[i] < expectedLeaves[j]) {
+        i++;
+      } else if (actualLeaves[i] > expectedLeaves[j]) {
+        j++;
+      } else {
+        shared++;
+        i++;
+        j++;
+      }
+    }
+    var union = actualLeaves.length + expectedLeaves.length - shared;
+    return shared > 0 && 3 * shared >= union ? shared : 0;
+  }
+
+  // Minimizing the number of differing leaves is the same as maximizing the number of shared
+  // leaves, so the costs are the negated similarities. Pairs with a cost of zero are not paired.
+  private static int[] assignOptimally(long[][] actualLeaves, long[][] expectedLeaves) {
+    // The algorithm requires at most as many rows as columns
+    var transposed = actualLeaves.length > expectedLeaves.length;
+    var rows = transposed ? expectedLeaves : actualLeaves;
+    var columns = transposed ? actualLeaves : expectedLeaves;
+
+    var costs = new long[rows.length + 1][columns.length + 1];
+    for (var row = 1; row <= rows.length; row++) {
+      for (var column = 1; column <= columns.length; column++) {
+        costs[row][column] = -similarity(rows[row - 1], columns[column - 1]);
+      }
+    }
+    var rowsByColumn = solveAssignment(costs, rows.length, columns.length);
+
+    var result = new int[actualLeaves.length];
+    Arrays.fill(result, NO_MATCH);
+    for (var column = 1; column <= columns.length; column++) {
+      var row = rowsByColumn[column];
+      if (row == 0 || costs[row][column] == 0) {
+        continue;
+      }
+      if (transposed) {
+        result[column - 1] = row - 1;
+      } else {
+        result[row - 1] = column - 1;
+      }
+    }
+    return result;
+  }
+
+  // Hungarian algorithm with potentials for a 1-based cost matrix with rowCount <= columnCount.
+  // Returns the row assigned to each column, with zero for unassigned columns.
+  private static int[] solveAssignment(long[][] costs, int rowCount, int columnCount) {
+    var rowPotentials = new long[rowCount + 1];
+    var columnPotentials = new long[columnCount + 1];
+    var rowsByColumn = new int[columnCount + 1];
+    var previousColumns = new int[columnCount + 1];
+    var minima = new long[columnCount + 1];
+    var used = new boolean[columnCount + 1];
+
+    for (var row = 1; row <= rowCount; row++) {
+      rowsByColumn[0] = row;
+      var column = 0;
+      Arrays.fill(minima, INFINITY);
+      Arrays.fill(used, false);
+      do {
+        used[column] = true;
+        var currentRow = rowsByColumn[column];
+        var delta = INFINITY;
+        var nextColumn = 0;
+        for (var candidate = 1; candidate <= columnCount; candidate++) {
+          if (used[candidate]) {
+            continue;
+          }
+          var reducedCost = costs[currentRow][candidate] - rowPotentials[currentRow]
+              - columnPotentials[candidate];
+          if (reducedCost < minima[candidate]) {
+            minima[candidate] = reducedCost;
+            previousColumns[candidate] = column;
+          }
+          if (minima[candidate] < delta) {
+            delta = minima[candidate];
+            nextColumn = candidate;
+          }
+        }
+        for (var candidate = 0; candidate <= columnCount; candidate++) {
+          if (used[candidate]) {
+            rowPotentials[rowsByColumn[candidate]] += delta;
+            columnPotentials[candidate] -= delta;
+          } else {
+            minima[candidate] -= delta;
+          }
+        }
+        column = nextColumn;
+      } while (rowsByColumn[column] != 0);
+
+      // Flip the augmenting path
+      do {
+        var previousColumn = previousColumns[column];
+        rowsByColumn[column] = rowsByColumn[previousColumn];
+        column = previousColumn;
+      } while (column != 0);
+    }
+    return rowsByColumn;
+  }
+
+  // Expected elements are indexed by the bands of their MinHash signatures. Each actual element
+  // is only compared with a bounded number of expected elements from its buckets, which keeps the
+  // runtime linear in the number of elements.
+  private static int[] assignApproximately(long[][] actualLeaves, long[][] expectedLeaves) {
+    var buckets = new ArrayList<Map<Long, List<Integer>>>(BANDS);
+    for (var band = 0; band < BANDS; band++) {
+      buckets.add(new HashMap<>());
+    }
+    for (var j = 0; j < expectedLeaves.length; j++) {
+      if (expectedLeaves[j].length == 0) {
+        continue;
+      }
+      var bandHashes = bandHashesOf(expectedLeaves[j]);
+      for (var band = 0; band < BANDS; band++) {
+        buckets.get(band).computeIfAbsent(bandHashes[band], key -> new ArrayList<>()).add(j);
+      }
+    }
+
+    var candidates = new ArrayList<Candidate>();
+    for (var i = 0; i < actualLeaves.length; i++) {
+      if (actualLeaves[i].length == 0) {
+        continue;
+      }
+      var bandHashes = bandHashesOf(actualLeaves[i]);
+      var visited = new HashSet<Integer>();
+      for (var band = 0; band < BANDS && visited.size() < MAX_CANDIDATES; band++) {
+        var bucket = buckets.get(band).getOrDefault(bandHashes[band], List.of());
+        for (var j : bucket) {
+          if (visited.size() >= MAX_CANDIDATES) {
+            break;
+          }
+          if (visited.add(j)) {
+            var similarity = similarity(actualLeaves[i], expectedLeaves[j]);
+            if (similarity > 0) {
+              candidates.add(new Candidate(i, j, similarity));
+            }
+          }
+        }
+      }
+    }
+
+    // The order of the candidates only depends on the input, so the pairing is deterministic
+    candidates.sort(Comparator.comparingInt((Candidate candidate) -> -candidate.similarity)
+        .thenComparingInt(candidate -> candidate.actualIndex)
+        .thenComparingInt(candidate -> candidate.expectedIndex));
+    var result = new int[actualLeaves.length];
+    Arrays.fill(result, NO_MATCH);
+    var pairedExpectedElements = new boolean[expectedLeaves.length];
+    for (var candidate : candidates) {
+      if (result[candidate.actualIndex] == NO_MATCH
+          && !pairedExpectedElements[candidate.expectedIndex]) {
+        result[candidate.actualIndex] = candidate.expectedIndex;
+        pairedExpectedElements[candidate.expectedIndex] = true;
+      }
+    }
+    return result;
+  }
+
+  private static long[] bandHashesOf(long[] leaves) {
+    var bandHashes = new long[BANDS];
+    for (var band = 0; band < BANDS; band++) {
+      long bandHash = band;
+      for (var row = 0; row < ROWS_PER_BAND; row++) {
+        var seed = (band * ROWS_PER_BAND + row + 1) * 0x9e3779b97f4a7c15L;
+        var minimum = Long.MAX_VALUE;
+        for (var leaf : leaves) {
+          minimum = Math.min(minimum, JsonFingerprint.mix(leaf ^ seed));
+        }
+        bandHash = JsonFingerprint.mix(bandHash * 31 + minimum);
+      }
+      bandHashes[band] = bandHash;
+    }
+    return bandHashes;
+  }
+
+  private static class Candidate {
+
+    private final int actualIndex;
+    private final int expectedIndex;
+    private final int similarity;
+
+    Candidate(int actualIndex, int expectedIndex, int similarity) {
+      this.actualIndex = actualIndex;
+      this.expectedIndex = expectedIndex;
+      this.similarity = similarity;
+    }
+  }
+}
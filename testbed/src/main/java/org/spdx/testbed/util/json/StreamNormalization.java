@@ -0,0 +1,54 @@
+// SPDX-FileCopyrightText: TNG Technology Consulting GmbH
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.spdx.testbed.util.json;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * Normalization of the top-level fields of a document that {@link StreamingJsonComparison}
+ * applies while it reads the document, so that documents can be normalized without holding them
+ * as a tree. The comparison sees the same document as if the normalization had been applied to
+ * the tree of the whole document:
+ *
+ * <ul>
+ *   <li>Each element of a top-level list is passed through {@link #normalizeElement} once it is
+ *   read.</li>
+ *   <li>The {@link #getAdditionalElements() additional elements} are appended to their top-level
+ *   lists, which are created if the document doesn't contain them.</li>
+ *   <li>Top-level objects and lists with a {@link #getSkippedValue skipped value} are not read.
+ *   They are replaced by that value if they have content, and dropped otherwise.</li>
+ * </ul>
+ */
+public interface StreamNormalization {
+
+  /**
+   * Returns the normalized element of the list in the provided top-level field. An element that
+   * the normalization changes is copied rather than changed in place, so that the comparison can
+   * tell whether the element still matches its source.
+   */
+  default JsonNode normalizeElement(String fieldName, JsonNode element) {
+    return element;
+  }
+
+  /**
+   * Returns the elements to append to the list in each top-level field. A top-level field that
+   * doesn't hold a list is replaced by a list of its additional elements.
+   */
+  default Map<String, List<JsonNode>> getAdditionalElements() {
+    return Map.of();
+  }
+
+  /**
+   * Returns the value that replaces the content of the object or list in the provided top-level
+   * field, or null if the content is read.
+   */
+  @Nullable
+  default JsonNode getSkippedValue(String fieldName) {
+    return null;
+  }
+}
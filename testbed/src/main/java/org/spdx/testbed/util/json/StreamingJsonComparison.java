@@ -0,0 +1,578 @@
+// SPDX-FileCopyrightText: TNG Technology Consulting GmbH
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.spdx.testbed.util.json;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * Compares a json document that is read from a token stream against a reference document. The
+ * semantics are the same as in {@link JsonComparison}, but the actual document is never
+ * materialized as a whole: Objects are traversed token by token alongside the reference, and lists
+ * are compared one element at a time via a {@link ListMatcher} that indexes the reference list.
+ * Only list elements without exact match and subtrees that differ from the reference are
+ * buffered.
+ *
+ * <p>If the document is provided as a buffer, the differences reference objects and lists that
+ * only exist in the actual document by their range in the buffer instead of holding them as
+ * trees.
+ *
+ * <p>A {@link StreamNormalization} may be applied to the top-level fields of the document while it
+ * is read, in place of normalizing the tree of the document before a {@link JsonComparison}.
+ */
+public class StreamingJsonComparison {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  /**
+   * Compares the document provided by the parser with the expected document and returns a list of
+   * detected differences. The parser must not have been advanced yet.
+   *
+   * @throws IOException in case of parsing errors
+   */
+  public static List<Difference> findDifferences(JsonParser actualParser,
+      ObjectNode expectedNode) throws IOException {
+    var collector = DifferenceCollector.unlimited();
+    findDifferences(actualParser, expectedNode, collector);
+    return collector.getDifferences();
+  }
+
+  /**
+   * Same as {@link #findDifferences(JsonParser, ObjectNode)}, but passes the detected differences
+   * to the provided collector.
+   *
+   * @throws IOException in case of parsing errors
+   */
+  public static void findDifferences(JsonParser actualParser, ObjectNode expectedNode,
+      DifferenceCollector collector) throws IOException {
+    findDifferences(actualParser, expectedNode, ComparisonRules.DEFAULT, collector);
+  }
+
+  /**
+   * Same as {@link #findDifferences(JsonParser, ObjectNode, DifferenceCollector)}, but applies the
+   * provided rules instead of the default ones.
+   *
+   * @throws IOException in case of parsing errors
+   */
+  public static void findDifferences(JsonParser actualParser, ObjectNode expectedNode,
+      ComparisonRules rules, DifferenceCollector collector) throws IOException {
+    findDocumentDifferences(actualParser, expectedNode, rules, null, null, collector);
+  }
+
+  /**
+   * Same as {@link #findDifferences(JsonParser, ObjectNode, ComparisonRules, DifferenceCollector)},
+   * but applies the provided normalization to the top-level fields of the document while it is
+   * read.
+   *
+   * @throws IOException in case of parsing errors
+   */
+  public static void findDifferences(JsonParser actualParser, ObjectNode expectedNode,
+      ComparisonRules rules, StreamNormalization normalization, DifferenceCollector collector)
+      throws IOException {
+    findDocumentDifferences(actualParser, expectedNode, rules, normalization, null, collector);
+  }
+
+  /**
+   * Same as {@link #findDifferences(JsonParser, ObjectNode, ComparisonRules, DifferenceCollector)},
+   * but reads the document from the provided buffer, from its position up to its limit. The
+   * differences may reference the buffer, so its content must not change as long as they are
+   * used.
+   *
+   * @throws IOException in case of parsing errors
+   */
+  public static void findDifferences(ByteBuffer actualJson, ObjectNode expectedNode,
+      ComparisonRules rules, DifferenceCollector collector) throws IOException {
+    findDifferences(actualJson, expectedNode, rules, null, collector);
+  }
+
+  /**
+   * Same as {@link #findDifferences(ByteBuffer, ObjectNode, ComparisonRules, DifferenceCollector)},
+   * but applies the provided normalization to the top-level fields of the document while it is
+   * read. Values that the differences reference by their range in the buffer are reported as they
+   * are in the document, without the normalization.
+   *
+   * @throws IOException in case of parsing errors
+   */
+  public static void findDifferences(ByteBuffer actualJson, ObjectNode expectedNode,
+      ComparisonRules rules, @Nullable StreamNormalization normalization,
+      DifferenceCollector collector) throws IOException {
+    var source = actualJson.slice();
+    try (var actualParser = MAPPER.createParser(
+        new ByteBufferBackedInputStream(source.duplicate()))) {
+      findDocumentDifferences(actualParser, expectedNode, rules, normalization, source,
+          collector);
+    }
+  }
+
+  // The normalization only applies if the document is an object, as it applies to its fields
+  private static void findDocumentDifferences(JsonParser actualParser, ObjectNode expectedNode,
+      ComparisonRules rules, @Nullable StreamNormalization normalization,
+      @Nullable ByteBuffer source, DifferenceCollector collector) throws IOException {
+    if (actualParser.nextToken() == null) {
+      throw new IOException("The input does not contain a json document.");
+    }
+    var path = JsonPath.of("", rules.root());
+    var values = new NormalizedValues();
+    if (normalization != null && actualParser.currentToken() == JsonToken.START_OBJECT
+        && !JsonComparison.isEquivalentToNull(expectedNode) && !path.rules().isContentSkipped()) {
+      findDifferencesInObject(actualParser, expectedNode, path, null, values, source,
+          normalization, collector);
+    } else {
+      findDifferences(actualParser, expectedNode, path, null, values, source, null, collector);
+    }
+  }
+
+  // Compares the value at the current token and leaves the parser at its last token
+  private static void findDifferences(JsonParser actualParser, JsonNode expectedNode,
+      JsonPath path, @Nullable JsonPath referencePath, NormalizedValues values,
+      @Nullable ByteBuffer source, @Nullable TopLevelList list, DifferenceCollector collector)
+      throws IOException {
+    var token = actualParser.currentToken();
+    var expectedIsNull = JsonComparison.isEquivalentToNull(expectedNode);
+
+    if (list != null && token != JsonToken.START_ARRAY && list.hasAdditionalElements()) {
+      // The value is replaced by a list of the additional elements
+      JsonNode actualNode = list.normalize(MAPPER.readTree(actualParser));
+      JsonComparison.collectDifferences(actualNode, expectedNode, path, referencePath, values,
+          collector);
+    } else if (token.isStructStart() && !expectedIsNull && path.rules().isContentSkipped()) {
+      skipContent(actualParser, expectedNode, path, referencePath, list, collector);
+    } else if (token == JsonToken.START_OBJECT && expectedNode.isObject() && !expectedIsNull) {
+      findDifferencesInObject(actualParser, (ObjectNode) expectedNode, path, referencePath,
+          values, source, null, collector);
+    } else if (token == JsonToken.START_ARRAY && expectedNode.isArray() && !expectedIsNull) {
+      findDifferencesInArray(actualParser, (ArrayNode) expectedNode, path, referencePath,
+          values, source, list, collector);
+    } else {
+      // Scalars, mismatching types and anything compared to null are small or differ anyway
+      JsonNode actualNode = MAPPER.readTree(actualParser);
+      JsonComparison.collectDifferences(list == null ? actualNode : list.normalize(actualNode),
+          expectedNode, path, referencePath, values, collector);
+    }
+  }
+
+  // Only the null equivalence is compared, so the content is skipped without reading it
+  private static void skipContent(JsonParser actualParser, JsonNode expectedNode, JsonPath path,
+      @Nullable JsonPath referencePath, @Nullable TopLevelList list,
+      DifferenceCollector collector) throws IOException {
+    var startToken = actualParser.currentToken();
+    var token = actualParser.nextToken();
+    if (token.isStructEnd()) {
+      if (list != null && list.hasAdditionalElements()) {
+        return;
+      }
+      collector.add(Difference.builder()
+          .actualValue(startToken == JsonToken.START_OBJECT ? MAPPER.createObjectNode()
+              : MAPPER.createArrayNode())
+          .expectedValue(expectedNode)
+          .path(path)
+          .pathInReferenceDoc(referencePath));
+      return;
+    }
+    skipToEnd(actualParser, token);
+  }
+
+  // Advances the parser from the provided token inside a container to the end of the container
+  private static void skipToEnd(JsonParser actualParser, JsonToken token) throws IOException {
+    var depth = 1;
+    while (!token.isStructEnd() || --depth > 0) {
+      if (token.isStructStart()) {
+        depth++;
+      }
+      token = actualParser.nextToken();
+    }
+  }
+
+  // Advances the parser from the start to the end of a container and returns whether it has content
+  private static boolean skipToEndIfNotEmpty(JsonParser actualParser) throws IOException {
+    var token = actualParser.nextToken();
+    if (token.isStructEnd()) {
+      return false;
+    }
+    skipToEnd(actualParser, token);
+    return true;
+  }
+
+  /**
+   * Reads the value at the current token, or returns null if it is equivalent to null. Containers
+   * are skipped and referenced by their range if the source is present.
+   */
+  @Nullable
+  private static DifferenceValue readActualValue(JsonParser actualParser,
+      @Nullable ByteBuffer source) throws IOException {
+    if (source == null || !actualParser.currentToken().isStructStart()) {
+      JsonNode value = MAPPER.readTree(actualParser);
+      return JsonComparison.isEquivalentToNull(value) ? null : DifferenceValue.of(value);
+    }
+    var start = actualParser.getTokenLocation().getByteOffset();
+    var token = actualParser.nextToken();
+    if (token.isStructEnd()) {
+      return null;
+    }
+    skipToEnd(actualParser, token);
+    return DifferenceValue.ofSource(source, (int) start,
+        (int) actualParser.getCurrentLocation().getByteOffset());
+  }
+
+  // The normalization is only passed for the document, whose fields it applies to
+  private static void findDifferencesInObject(JsonParser actualParser, ObjectNode expectedNode,
+      JsonPath path, @Nullable JsonPath referencePath, NormalizedValues values,
+      @Nullable ByteBuffer source, @Nullable StreamNormalization normalization,
+      DifferenceCollector collector) throws IOException {
+    // Differences of common fields come first, so only the others need to be buffered
+    var actualExclusiveFieldDifferences = collector.createEmptyCopy();
+    var actualFieldNames = new HashSet<String>();
+
+    while (actualParser.nextToken() == JsonToken.FIELD_NAME) {
+      var fieldName = actualParser.getCurrentName();
+      var token = actualParser.nextToken();
+
+      var newPath = path.field(fieldName);
+      var newReferencePath = referencePath == null ? null : referencePath.field(fieldName);
+      var list = normalization == null ? null : new TopLevelList(normalization, fieldName);
+
+      var skippedValue = normalization == null || !token.isStructStart() ? null
+          : normalization.getSkippedValue(fieldName);
+      if (skippedValue != null) {
+        if (skipToEndIfNotEmpty(actualParser)) {
+          actualFieldNames.add(fieldName);
+          compareNormalizedField(skippedValue, expectedNode, fieldName, newPath,
+              newReferencePath, values, collector, actualExclusiveFieldDifferences);
+        }
+        continue;
+      }
+      actualFieldNames.add(fieldName);
+
+      if (expectedNode.has(fieldName)) {
+        if (newPath.rules().isCommonFieldSkipped()) {
+          actualParser.skipChildren();
+          continue;
+        }
+        findDifferences(actualParser, expectedNode.get(fieldName), newPath, newReferencePath,
+            values, source, list, collector);
+      } else {
+        var value = list == null ? readActualValue(actualParser, source)
+            : readNormalizedValue(actualParser, list, source);
+        if (value != null) {
+          actualExclusiveFieldDifferences.add(Difference.builder()
+              .actualValue(value)
+              .path(newPath)
+              .pathInReferenceDoc(newReferencePath));
+        }
+      }
+    }
+
+    if (normalization != null) {
+      // Lists that the document doesn't contain are created for their additional elements
+      for (var entry : normalization.getAdditionalElements().entrySet()) {
+        var fieldName = entry.getKey();
+        if (actualFieldNames.add(fieldName)) {
+          compareNormalizedField(MAPPER.createArrayNode().addAll(entry.getValue()), expectedNode,
+              fieldName, path.field(fieldName),
+              referencePath == null ? null : referencePath.field(fieldName), values, collector,
+              actualExclusiveFieldDifferences);
+        }
+      }
+    }
+
+    if (actualFieldNames.isEmpty()) {
+      // An empty object is equivalent to null, while the expected object is not
+      collector.add(Difference.builder()
+          .actualValue(MAPPER.createObjectNode())
+          .expectedValue(expectedNode)
+          .path(path)
+          .pathInReferenceDoc(referencePath));
+      return;
+    }
+
+    // Same ordering as in JsonComparison
+    collector.addAll(actualExclusiveFieldDifferences);
+    var expectedFields = expectedNode.fields();
+    while (expectedFields.hasNext()) {
+      var field = expectedFields.next();
+      if (actualFieldNames.contains(field.getKey())
+          || JsonComparison.isEquivalentToNull(field.getValue())) {
+        continue;
+      }
+      collector.add(Difference.builder()
+          .expectedValue(field.getValue())
+          .path(path.field(field.getKey()))
+          .pathInReferenceDoc(referencePath == null ? null :
+              referencePath.field(field.getKey())));
+    }
+  }
+
+  // Compares a field whose value is not read from the parser, but results from the normalization
+  private static void compareNormalizedField(JsonNode actualValue, ObjectNode expectedNode,
+      String fieldName, JsonPath path, @Nullable JsonPath referencePath, NormalizedValues values,
+      DifferenceCollector collector, DifferenceCollector actualExclusiveFieldDifferences) {
+    var expectedValue = expectedNode.get(fieldName);
+    if (expectedValue != null) {
+      if (!path.rules().isCommonFieldSkipped()) {
+        JsonComparison.collectDifferences(actualValue, expectedValue, path, referencePath, values,
+            collector);
+      }
+    } else if (!JsonComparison.isEquivalentToNull(actualValue)) {
+      actualExclusiveFieldDifferences.add(Difference.builder()
+          .actualValue(actualValue)
+          .path(path)
+          .pathInReferenceDoc(referencePath));
+    }
+  }
+
+  /**
+   * Same as {@link #readActualValue}, but normalizes the value. Lists are referenced by their
+   * range in the source if the normalization doesn't change them, which is checked one element
+   * at a time. Otherwise, they are read as a tree.
+   */
+  @Nullable
+  private static DifferenceValue readNormalizedValue(JsonParser actualParser, TopLevelList list,
+      @Nullable ByteBuffer source) throws IOException {
+    if (source == null || actualParser.currentToken() != JsonToken.START_ARRAY
+        || list.hasAdditionalElements()) {
+      JsonNode value = list.normalize(MAPPER.readTree(actualParser));
+      return JsonComparison.isEquivalentToNull(value) ? null : DifferenceValue.of(value);
+    }
+    var start = (int) actualParser.getTokenLocation().getByteOffset();
+    var isEmpty = true;
+    var isNormalized = true;
+    while (actualParser.nextToken() != JsonToken.END_ARRAY) {
+      JsonNode element = MAPPER.readTree(actualParser);
+      isEmpty = false;
+      isNormalized &= list.normalizeElement(element) == element;
+    }
+    if (isEmpty) {
+      return null;
+    }
+    var value = DifferenceValue.ofSource(source, start,
+        (int) actualParser.getCurrentLocation().getByteOffset());
+    return isNormalized ? value : DifferenceValue.of(list.normalize(value.toJsonNode()));
+  }
+
+  private static void findDifferencesInArray(JsonParser actualParser, ArrayNode expectedNode,
+      JsonPath path, @Nullable JsonPath referencePath, NormalizedValues values,
+      @Nullable ByteBuffer source, @Nullable TopLevelList list, DifferenceCollector collector)
+      throws IOException {
+    if (path.rules().isOrdered()) {
+      findDifferencesInOrder(actualParser, expectedNode, path, referencePath, values, source,
+          list, collector);
+      return;
+    }
+
+    var expectedListPath = referencePath == null ? path : referencePath;
+    var listMatcher = new ListMatcher(expectedNode, path, expectedListPath, values);
+    var output = source == null ? ListMatcher.collectingInto(values, collector)
+        : new SourceReferencingOutput(ListMatcher.collectingInto(values, collector), source);
+
+    var position = 0;
+    while (actualParser.nextToken() != JsonToken.END_ARRAY) {
+      // Only one element is held at a time, unless the matcher retains it
+      var start = actualParser.getTokenLocation().getByteOffset();
+      var isContainer = actualParser.currentToken().isStructStart();
+      JsonNode element = MAPPER.readTree(actualParser);
+      var normalizedElement = list == null ? element : list.normalizeElement(element);
+      // Elements changed by the normalization are reported as they are compared
+      if (source != null && isContainer && normalizedElement == element) {
+        ((SourceReferencingOutput) output).setRange(position, start,
+            actualParser.getCurrentLocation().getByteOffset());
+      }
+      listMatcher.matchActualElement(normalizedElement, position, output);
+      position++;
+    }
+    if (list != null) {
+      for (var element : list.getAdditionalElements()) {
+        listMatcher.matchActualElement(element, position, output);
+        position++;
+      }
+    }
+
+    if (position == 0) {
+      addEmptyListDifference(expectedNode, path, referencePath, collector);
+      return;
+    }
+
+    listMatcher.matchRemainingExpectedElements(output);
+  }
+
+  // Same as JsonComparison.compareInOrder, but each actual element is compared while it is read
+  private static void findDifferencesInOrder(JsonParser actualParser, ArrayNode expectedNode,
+      JsonPath path, @Nullable JsonPath referencePath, NormalizedValues values,
+      @Nullable ByteBuffer source, @Nullable TopLevelList list, DifferenceCollector collector)
+      throws IOException {
+    var expectedListPath = referencePath == null ? path : referencePath;
+    var position = 0;
+    while (actualParser.nextToken() != JsonToken.END_ARRAY) {
+      var expectedElement = expectedNode.get(position);
+      if (list != null) {
+        // Normalized elements are compared as trees
+        compareElementInOrder(list.normalizeElement(MAPPER.readTree(actualParser)),
+            expectedElement, position, path, expectedListPath, values, collector);
+      } else if (expectedElement != null) {
+        findDifferences(actualParser, expectedElement, path.element(position),
+            expectedListPath.element(position), values, source, null, collector);
+      } else {
+        var element = readActualValue(actualParser, source);
+        if (element != null) {
+          collector.add(Difference.builder()
+              .actualValue(element)
+              .path(path.element(position))
+              .pathInReferenceDoc(expectedListPath)
+              .comment(JsonComparison.describeMissingPosition("expected")));
+        }
+      }
+      position++;
+    }
+    if (list != null) {
+      for (var element : list.getAdditionalElements()) {
+        compareElementInOrder(element, expectedNode.get(position), position, path,
+            expectedListPath, values, collector);
+        position++;
+      }
+    }
+
+    if (position == 0) {
+      addEmptyListDifference(expectedNode, path, referencePath, collector);
+      return;
+    }
+
+    for (; position < expectedNode.size(); position++) {
+      var expectedElement = expectedNode.get(position);
+      if (!JsonComparison.isEquivalentToNull(expectedElement)) {
+        collector.add(Difference.builder()
+            .expectedValue(expectedElement)
+            .pathInReferenceDoc(expectedListPath.element(position))
+            .path(path)
+            .comment(JsonComparison.describeMissingPosition("actual")));
+      }
+    }
+  }
+
+  private static void compareElementInOrder(JsonNode element, @Nullable JsonNode expectedElement,
+      int position, JsonPath path, JsonPath expectedListPath, NormalizedValues values,
+      DifferenceCollector collector) {
+    if (expectedElement != null) {
+      JsonComparison.collectDifferences(element, expectedElement, path.element(position),
+          expectedListPath.element(position), values, collector);
+    } else if (!JsonComparison.isEquivalentToNull(element)) {
+      collector.add(Difference.builder()
+          .actualValue(element)
+          .path(path.element(position))
+          .pathInReferenceDoc(expectedListPath)
+          .comment(JsonComparison.describeMissingPosition("expected")));
+    }
+  }
+
+  // An empty list is equivalent to null, while the expected list is not
+  private static void addEmptyListDifference(ArrayNode expectedNode, JsonPath path,
+      @Nullable JsonPath referencePath, DifferenceCollector collector) {
+    collector.add(Difference.builder()
+        .actualValue(MAPPER.createArrayNode())
+        .expectedValue(expectedNode)
+        .path(path)
+        .pathInReferenceDoc(referencePath));
+  }
+
+  /**
+   * Replaces the retained trees of actual list elements without match by references to their
+   * ranges in the source, so the trees can be released once the list is compared.
+   */
+  private static final class SourceReferencingOutput implements ListMatcher.Output {
+
+    private static final int NO_RANGE = -1;
+
+    private final ListMatcher.Output output;
+    private final ByteBuffer source;
+    // Start and end offset of each element, or NO_RANGE for scalars
+    private int[] ranges = new int[0];
+
+    SourceReferencingOutput(ListMatcher.Output output, ByteBuffer source) {
+      this.output = output;
+      this.source = source;
+    }
+
+    void setRange(int position, long start, long end) {
+      if (2 * position + 1 >= ranges.length) {
+        var previousLength = ranges.length;
+        ranges = Arrays.copyOf(ranges, Math.max(2 * ranges.length, 2 * position + 16));
+        Arrays.fill(ranges, previousLength, ranges.length, NO_RANGE);
+      }
+      ranges[2 * position] = (int) start;
+      ranges[2 * position + 1] = (int) end;
+    }
+
+    @Override
+    public void addDifference(Difference.DifferenceBuilder difference) {
+      output.addDifference(difference);
+    }
+
+    @Override
+    public void addActualElementDifference(Difference.DifferenceBuilder difference,
+        int position) {
+      if (2 * position + 1 < ranges.length && ranges[2 * position] != NO_RANGE) {
+        difference.actualValue(
+            DifferenceValue.ofSource(source, ranges[2 * position], ranges[2 * position + 1]));
+      }
+      output.addDifference(difference);
+    }
+
+    @Override
+    public void compareMatchedElements(JsonNode actualElement, JsonNode expectedElement,
+        JsonPath actualElementPath, JsonPath expectedElementPath) {
+      output.compareMatchedElements(actualElement, expectedElement, actualElementPath,
+          expectedElementPath);
+    }
+  }
+
+  /**
+   * Normalization of a top-level field of the document, which applies to the list the field
+   * holds.
+   */
+  private static final class TopLevelList {
+
+    private final StreamNormalization normalization;
+    private final String fieldName;
+
+    TopLevelList(StreamNormalization normalization, String fieldName) {
+      this.normalization = normalization;
+      this.fieldName = fieldName;
+    }
+
+    JsonNode normalizeElement(JsonNode element) {
+      return normalization.normalizeElement(fieldName, element);
+    }
+
+    List<JsonNode> getAdditionalElements() {
+      return normalization.getAdditionalElements().getOrDefault(fieldName, List.of());
+    }
+
+    boolean hasAdditionalElements() {
+      return !getAdditionalElements().isEmpty();
+    }
+
+    // Normalizes a value that has been read as a whole
+    JsonNode normalize(JsonNode value) {
+      if (!value.isArray()) {
+        return hasAdditionalElements() ? MAPPER.createArrayNode().addAll(getAdditionalElements())
+            : value;
+      }
+      var elements = (ArrayNode) value;
+      for (var i = 0; i < elements.size(); i++) {
+        elements.set(i, normalizeElement(elements.get(i)));
+      }
+      return elements.addAll(getAdditionalElements());
+    }
+  }
+}
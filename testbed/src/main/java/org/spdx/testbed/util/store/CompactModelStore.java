@@ -0,0 +1,765 @@
+// SPDX-FileCopyrightText: TNG Technology Consulting GmbH
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.spdx.testbed.util.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+import javax.annotation.Nullable;
+import org.spdx.jacksonstore.MultiFormatStore;
+import org.spdx.library.InvalidSPDXAnalysisException;
+import org.spdx.library.SpdxConstants;
+import org.spdx.library.model.ExternalSpdxElement;
+import org.spdx.library.model.IndividualUriValue;
+import org.spdx.library.model.SimpleUriValue;
+import org.spdx.library.model.SpdxDocument;
+import org.spdx.library.model.SpdxModelFactory;
+import org.spdx.library.model.SpdxNoAssertionElement;
+import org.spdx.library.model.SpdxNoneElement;
+import org.spdx.library.model.TypedValue;
+import org.spdx.library.model.enumerations.SpdxEnumFactory;
+import org.spdx.library.model.license.ExternalExtractedLicenseInfo;
+import org.spdx.library.model.license.LicenseInfoFactory;
+import org.spdx.library.model.license.SpdxNoAssertionLicense;
+import org.spdx.library.model.license.SpdxNoneLicense;
+import org.spdx.storage.IModelStore;
+import org.spdx.tools.InvalidFileNameException;
+import org.spdx.tools.SpdxToolsHelper;
+
+/**
+ * Model store that holds documents in a compact form, for input documents that are too large for
+ * the {@link org.spdx.storage.simple.InMemSpdxStore}. Ids, types, property names and uris are
+ * interned to ints, the properties of each element are held in primitive arrays, and texts are
+ * stored as UTF-8 in a memory-mapped temporary file. Values are only turned into objects when
+ * they are read.
+ *
+ * <p>The store supports everything that is needed to deserialize documents into it and to
+ * serialize or compare them, with the semantics of the in-memory store of the library: Ids are
+ * case-insensitive, and collections don't contain the same value twice. Texts that are replaced or
+ * removed keep occupying their space until the store is closed.
+ */
+public class CompactModelStore implements IModelStore {
+
+  private static final String ANONYMOUS_PREFIX = "__anon__";
+  private static final String GENERATED_ID_INFIX = "gnrtd";
+
+  // Values are encoded as longs, with a tag in the upper bits. No encoded value is zero.
+  private static final int TAG_SHIFT = 60;
+  private static final long PAYLOAD_MASK = (1L << TAG_SHIFT) - 1;
+  private static final long NO_VALUE = 0;
+  // Address of a text in the off-heap strings
+  private static final int STRING = 1;
+  // Address of an interned text in the off-heap strings, used for the members of collections so
+  // they can be compared by their code
+  private static final int INTERNED_STRING = 2;
+  private static final int BOOLEAN = 3;
+  private static final int INTEGER = 4;
+  // Index of an element in the same document
+  private static final int ELEMENT = 5;
+  // Symbol of the uri of an individual value
+  private static final int URI = 6;
+  // Index of a collection
+  private static final int COLLECTION = 7;
+
+  // Collections above this size are indexed, so adding all their members takes linear time
+  private static final int INDEXED_COLLECTION_SIZE = 16;
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private final Map<String, Document> documents = new HashMap<>();
+  private final List<String> documentUris = new ArrayList<>();
+  // Types, property names and uris
+  private final SymbolTable symbols = new SymbolTable(false);
+  private final OffHeapStrings strings = new OffHeapStrings();
+
+  private int collectionCount;
+  private long[][] collectionMembers = new long[16][];
+  private int[] collectionSizes = new int[16];
+  private LongSet[] collectionIndexes = new LongSet[16];
+  private int nextGeneratedId;
+
+  /**
+   * Deserializes the document in the provided file into a new compact store. Formats which the
+   * store doesn't support deserializing into it, i.e. those that don't have a json, xml or yaml
+   * based serialization, are deserialized via {@link SpdxToolsHelper} instead.
+   */
+  public static SpdxDocument deserializeDocument(File file) throws IOException,
+      InvalidFileNameException, InvalidSPDXAnalysisException {
+    return deserializeDocument(file, SpdxToolsHelper.fileToFileType(file));
+  }
+
+  /**
+   * Deserializes the document in the provided file and format into a new compact store, like
+   * {@link #deserializeDocument(File)}.
+   */
+  public static SpdxDocument deserializeDocument(File file, SpdxToolsHelper.SerFileType fileType)
+      throws IOException, InvalidFileNameException, InvalidSPDXAnalysisException {
+    var format = toFormat(fileType);
+    if (format.isEmpty()) {
+      return SpdxToolsHelper.deserializeDocument(file, fileType);
+    }
+    var store = new MultiFormatStore(new CompactModelStore(), format.get());
+    try (var input = Files.newInputStream(file.toPath())) {
+      var documentUri = store.deserialize(input);
+      return new SpdxDocument(store, documentUri, null, false);
+    }
+  }
+
+  private static Optional<MultiFormatStore.Format> toFormat(
+      SpdxToolsHelper.SerFileType fileType) {
+    switch (fileType) {
+      case JSON:
+        return Optional.of(MultiFormatStore.Format.JSON);
+      case XML:
+        return Optional.of(MultiFormatStore.Format.XML);
+      case YAML:
+        return Optional.of(MultiFormatStore.Format.YAML);
+      default:
+        return Optional.empty();
+    }
+  }
+
+  @Override
+  public synchronized boolean exists(String documentUri, String id) {
+    var document = documents.get(documentUri);
+    return document != null && document.find(id) != SymbolTable.ABSENT;
+  }
+
+  @Override
+  public synchronized void create(String documentUri, String id, String type)
+      throws InvalidSPDXAnalysisException {
+    var document = documents.get(documentUri);
+    if (document == null) {
+      document = new Document();
+      documents.put(documentUri, document);
+      documentUris.add(documentUri);
+    }
+    if (document.find(id) != SymbolTable.ABSENT) {
+      throw new InvalidSPDXAnalysisException(
+          "Object with ID " + id + " already exists in document " + documentUri);
+    }
+    document.create(id, symbols.intern(type));
+  }
+
+  @Override
+  public synchronized List<String> getPropertyValueNames(String documentUri, String id)
+      throws InvalidSPDXAnalysisException {
+    var document = getDocument(documentUri, id);
+    var element = document.get(documentUri, id);
+    var names = new ArrayList<String>(document.propertyCounts[element]);
+    for (var i = 0; i < document.propertyCounts[element]; i++) {
+      names.add(symbols.get(document.propertyNames[element][i]));
+    }
+    return names;
+  }
+
+  @Override
+  public synchronized void setValue(String documentUri, String id, String propertyName,
+      Object value) throws InvalidSPDXAnalysisException {
+    var document = getDocument(documentUri, id);
+    var element = document.get(documentUri, id);
+    if (value == null) {
+      document.remove(element, symbols.find(propertyName));
+      return;
+    }
+    long encodedValue;
+    if (value instanceof String) {
+      encodedValue = tagged(STRING, strings.add((String) value));
+    } else {
+      encodedValue = encodeMember(document, value, true);
+    }
+    document.put(element, symbols.intern(propertyName), encodedValue);
+  }
+
+  @Override
+  public synchronized Optional<Object> getValue(String documentUri, String id,
+      String propertyName) throws InvalidSPDXAnalysisException {
+    var document = getDocument(documentUri, id);
+    var value = document.get(document.get(documentUri, id), symbols.find(propertyName));
+    return value == NO_VALUE ? Optional.empty() : Optional.of(decode(document, value));
+  }
+
+  @Override
+  public synchronized String getNextId(IdType idType, String documentUri)
+      throws InvalidSPDXAnalysisException {
+    String prefix;
+    switch (idType) {
+      case Anonymous:
+        prefix = ANONYMOUS_PREFIX;
+        break;
+      case LicenseRef:
+        prefix = SpdxConstants.NON_STD_LICENSE_ID_PRENUM;
+        break;
+      case DocumentRef:
+        prefix = SpdxConstants.EXTERNAL_DOC_REF_PRENUM;
+        break;
+      case SpdxId:
+        prefix = SpdxConstants.SPDX_ELEMENT_REF_PRENUM;
+        break;
+      default:
+        throw new InvalidSPDXAnalysisException("Cannot generate ids of type " + idType);
+    }
+    var document = documents.get(documentUri);
+    String id;
+    do {
+      id = prefix + GENERATED_ID_INFIX + nextGeneratedId++;
+    } while (document != null && document.find(id) != SymbolTable.ABSENT);
+    return id;
+  }
+
+  @Override
+  public synchronized void removeProperty(String documentUri, String id, String propertyName)
+      throws InvalidSPDXAnalysisException {
+    var document = getDocument(documentUri, id);
+    document.remove(document.get(documentUri, id), symbols.find(propertyName));
+  }
+
+  @Override
+  public synchronized List<String> getDocumentUris() {
+    return new ArrayList<>(documentUris);
+  }
+
+  @Override
+  public synchronized Stream<TypedValue> getAllItems(String documentUri,
+      @Nullable String typeFilter) throws InvalidSPDXAnalysisException {
+    var document = documents.get(documentUri);
+    if (document == null) {
+      return Stream.empty();
+    }
+    var type = typeFilter == null ? SymbolTable.ABSENT : symbols.find(typeFilter);
+    if (typeFilter != null && type == SymbolTable.ABSENT) {
+      return Stream.empty();
+    }
+    var items = new ArrayList<TypedValue>();
+    for (var element = document.created.nextSetBit(0); element >= 0;
+        element = document.created.nextSetBit(element + 1)) {
+      if (typeFilter == null || document.types[element] == type) {
+        items.add(typedValue(document, element));
+      }
+    }
+    return items.stream();
+  }
+
+  @Override
+  public IModelStoreLock enterCriticalSection(String documentUri, boolean readLockRequested) {
+    var criticalSectionLock = readLockRequested ? lock.readLock() : lock.writeLock();
+    criticalSectionLock.lock();
+    return criticalSectionLock::unlock;
+  }
+
+  @Override
+  public void leaveCriticalSection(IModelStoreLock lock) {
+    lock.unlock();
+  }
+
+  @Override
+  public synchronized boolean removeValueFromCollection(String documentUri, String id,
+      String propertyName, Object value) throws InvalidSPDXAnalysisException {
+    var document = getDocument(documentUri, id);
+    var collection = getCollection(document, document.get(documentUri, id), propertyName);
+    var member = encodeMember(document, value, false);
+    if (collection == SymbolTable.ABSENT || member == NO_VALUE) {
+      return false;
+    }
+    var members = collectionMembers[collection];
+    var size = collectionSizes[collection];
+    for (var i = 0; i < size; i++) {
+      if (members[i] == member) {
+        System.arraycopy(members, i + 1, members, i, size - i - 1);
+        collectionSizes[collection]--;
+        // The index is rebuilt when it is needed again
+        collectionIndexes[collection] = null;
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public synchronized int collectionSize(String documentUri, String id, String propertyName)
+      throws InvalidSPDXAnalysisException {
+    var document = getDocument(documentUri, id);
+    var collection = getCollection(document, document.get(documentUri, id), propertyName);
+    return collection == SymbolTable.ABSENT ? 0 : collectionSizes[collection];
+  }
+
+  @Override
+  public synchronized boolean collectionContains(String documentUri, String id,
+      String propertyName, Object value) throws InvalidSPDXAnalysisException {
+    var document = getDocument(documentUri, id);
+    var collection = getCollection(document, document.get(documentUri, id), propertyName);
+    var member = encodeMember(document, value, false);
+    return collection != SymbolTable.ABSENT && member != NO_VALUE
+        && contains(collection, member);
+  }
+
+  @Override
+  public synchronized void clearValueCollection(String documentUri, String id,
+      String propertyName) throws InvalidSPDXAnalysisException {
+    var document = getDocument(documentUri, id);
+    var collection = getCollection(document, document.get(documentUri, id), propertyName);
+    if (collection != SymbolTable.ABSENT) {
+      collectionSizes[collection] = 0;
+      collectionIndexes[collection] = null;
+    }
+  }
+
+  @Override
+  public synchronized boolean addValueToCollection(String documentUri, String id,
+      String propertyName, Object value) throws InvalidSPDXAnalysisException {
+    var document = getDocument(documentUri, id);
+    var element = document.get(documentUri, id);
+    var collection = getCollection(document, element, propertyName);
+    if (collection == SymbolTable.ABSENT) {
+      collection = createCollection();
+      document.put(element, symbols.intern(propertyName), tagged(COLLECTION, collection));
+    }
+    var member = encodeMember(document, value, true);
+    if (contains(collection, member)) {
+      return false;
+    }
+    var size = collectionSizes[collection];
+    if (size == collectionMembers[collection].length) {
+      collectionMembers[collection] = Arrays.copyOf(collectionMembers[collection], 2 * size);
+    }
+    collectionMembers[collection][size] = member;
+    collectionSizes[collection]++;
+    if (collectionIndexes[collection] != null) {
+      collectionIndexes[collection].add(member);
+    }
+    return true;
+  }
+
+  @Override
+  public synchronized Iterator<Object> listValues(String documentUri, String id,
+      String propertyName) throws InvalidSPDXAnalysisException {
+    var document = getDocument(documentUri, id);
+    var collection = getCollection(document, document.get(documentUri, id), propertyName);
+    if (collection == SymbolTable.ABSENT) {
+      return Collections.emptyIterator();
+    }
+    return decodeCollection(document, collection).iterator();
+  }
+
+  @Override
+  public synchronized boolean isCollectionMembersAssignableTo(String documentUri, String id,
+      String propertyName, Class<?> clazz) throws InvalidSPDXAnalysisException {
+    var document = getDocument(documentUri, id);
+    var collection = getCollection(document, document.get(documentUri, id), propertyName);
+    if (collection == SymbolTable.ABSENT) {
+      return true;
+    }
+    for (var member : decodeCollection(document, collection)) {
+      if (!isAssignableTo(member, clazz)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public synchronized boolean isPropertyValueAssignableTo(String documentUri, String id,
+      String propertyName, Class<?> clazz) throws InvalidSPDXAnalysisException {
+    var value = getValue(documentUri, id, propertyName);
+    return value.isPresent() && isAssignableTo(value.get(), clazz);
+  }
+
+  @Override
+  public synchronized boolean isCollectionProperty(String documentUri, String id,
+      String propertyName) throws InvalidSPDXAnalysisException {
+    var document = getDocument(documentUri, id);
+    var value = document.get(document.get(documentUri, id), symbols.find(propertyName));
+    return tag(value) == COLLECTION;
+  }
+
+  @Override
+  public IdType getIdType(String id) {
+    if (id.startsWith(ANONYMOUS_PREFIX)) {
+      return IdType.Anonymous;
+    }
+    if (id.startsWith(SpdxConstants.NON_STD_LICENSE_ID_PRENUM)) {
+      return IdType.LicenseRef;
+    }
+    if (id.startsWith(SpdxConstants.EXTERNAL_DOC_REF_PRENUM)) {
+      return IdType.DocumentRef;
+    }
+    if (id.startsWith(SpdxConstants.SPDX_ELEMENT_REF_PRENUM)) {
+      return IdType.SpdxId;
+    }
+    if (SpdxConstants.NOASSERTION_VALUE.equals(id) || SpdxConstants.NONE_VALUE.equals(id)) {
+      return IdType.Literal;
+    }
+    if (LicenseInfoFactory.isSpdxListedLicenseId(id)
+        || LicenseInfoFactory.isSpdxListedExceptionId(id)) {
+      return IdType.ListedLicense;
+    }
+    return IdType.Unkown;
+  }
+
+  @Override
+  public synchronized Optional<String> getCaseSensisitiveId(String documentUri,
+      String caseInsensisitiveId) {
+    var document = documents.get(documentUri);
+    var element = document == null ? SymbolTable.ABSENT : document.find(caseInsensisitiveId);
+    return element == SymbolTable.ABSENT ? Optional.empty()
+        : Optional.of(document.ids.get(element));
+  }
+
+  @Override
+  public synchronized Optional<TypedValue> getTypedValue(String documentUri, String id)
+      throws InvalidSPDXAnalysisException {
+    var document = documents.get(documentUri);
+    var element = document == null ? SymbolTable.ABSENT : document.find(id);
+    return element == SymbolTable.ABSENT ? Optional.empty()
+        : Optional.of(typedValue(document, element));
+  }
+
+  @Override
+  public synchronized void delete(String documentUri, String id)
+      throws InvalidSPDXAnalysisException {
+    var document = getDocument(documentUri, id);
+    var element = document.get(documentUri, id);
+    // Values referencing the element are kept, like values referencing elements not created yet
+    document.created.clear(element);
+    document.propertyCounts[element] = 0;
+  }
+
+  @Override
+  public synchronized void close() {
+    documents.clear();
+    documentUris.clear();
+    strings.clear();
+    collectionCount = 0;
+    collectionMembers = new long[16][];
+    collectionSizes = new int[16];
+    collectionIndexes = new LongSet[16];
+  }
+
+  private Document getDocument(String documentUri, String id)
+      throws InvalidSPDXAnalysisException {
+    var document = documents.get(documentUri);
+    if (document == null) {
+      throw new InvalidSPDXAnalysisException(
+          "Object with ID " + id + " does not exist in document " + documentUri);
+    }
+    return document;
+  }
+
+  // Returns the collection of the property, or ABSENT if the property has no value
+  private int getCollection(Document document, int element, String propertyName)
+      throws InvalidSPDXAnalysisException {
+    var value = document.get(element, symbols.find(propertyName));
+    if (value == NO_VALUE) {
+      return SymbolTable.ABSENT;
+    }
+    if (tag(value) != COLLECTION) {
+      throw new InvalidSPDXAnalysisException("Property " + propertyName + " of "
+          + document.ids.get(element) + " is not a collection");
+    }
+    return (int) payload(value);
+  }
+
+  private int createCollection() {
+    if (collectionCount == collectionSizes.length) {
+      collectionMembers = Arrays.copyOf(collectionMembers, 2 * collectionCount);
+      collectionSizes = Arrays.copyOf(collectionSizes, 2 * collectionCount);
+      collectionIndexes = Arrays.copyOf(collectionIndexes, 2 * collectionCount);
+    }
+    collectionMembers[collectionCount] = new long[4];
+    return collectionCount++;
+  }
+
+  private boolean contains(int collection, long member) {
+    var size = collectionSizes[collection];
+    if (size <= INDEXED_COLLECTION_SIZE) {
+      var members = collectionMembers[collection];
+      for (var i = 0; i < size; i++) {
+        if (members[i] == member) {
+          return true;
+        }
+      }
+      return false;
+    }
+    if (collectionIndexes[collection] == null) {
+      var index = new LongSet(size);
+      for (var i = 0; i < size; i++) {
+        index.add(collectionMembers[collection][i]);
+      }
+      collectionIndexes[collection] = index;
+    }
+    return collectionIndexes[collection].contains(member);
+  }
+
+  /**
+   * Encodes a value that is not a text, or the member of a collection. Unless symbols, texts and
+   * elements may be added, returns NO_VALUE for values that can't be contained in the store.
+   */
+  private long encodeMember(Document document, Object value, boolean add)
+      throws InvalidSPDXAnalysisException {
+    if (value instanceof String) {
+      var address = add ? strings.intern((String) value) : strings.find((String) value);
+      return address == OffHeapStrings.ABSENT ? NO_VALUE : tagged(INTERNED_STRING, address);
+    }
+    if (value instanceof Boolean) {
+      return tagged(BOOLEAN, (Boolean) value ? 1 : 0);
+    }
+    if (value instanceof Integer) {
+      return tagged(INTEGER, (Integer) value & 0xFFFFFFFFL);
+    }
+    if (value instanceof TypedValue) {
+      var typedValue = (TypedValue) value;
+      var element = add ? document.reference(typedValue.getId(),
+          symbols.intern(typedValue.getType())) : document.ids.find(typedValue.getId());
+      return element == SymbolTable.ABSENT ? NO_VALUE : tagged(ELEMENT, element);
+    }
+    if (value instanceof IndividualUriValue) {
+      var uri = ((IndividualUriValue) value).getIndividualURI();
+      var symbol = add ? symbols.intern(uri) : symbols.find(uri);
+      return symbol == SymbolTable.ABSENT ? NO_VALUE : tagged(URI, symbol);
+    }
+    throw new InvalidSPDXAnalysisException(
+        "Values of type " + value.getClass().getName() + " can't be stored");
+  }
+
+  private Object decode(Document document, long value) throws InvalidSPDXAnalysisException {
+    var payload = payload(value);
+    switch (tag(value)) {
+      case STRING:
+      case INTERNED_STRING:
+        return strings.get(payload);
+      case BOOLEAN:
+        return payload != 0;
+      case INTEGER:
+        return (int) payload;
+      case ELEMENT:
+        return typedValue(document, (int) payload);
+      case URI:
+        return new SimpleUriValue(symbols.get((int) payload));
+      default:
+        return decodeCollection(document, (int) payload);
+    }
+  }
+
+  private List<Object> decodeCollection(Document document, int collection)
+      throws InvalidSPDXAnalysisException {
+    var members = new ArrayList<>(collectionSizes[collection]);
+    for (var i = 0; i < collectionSizes[collection]; i++) {
+      members.add(decode(document, collectionMembers[collection][i]));
+    }
+    return members;
+  }
+
+  private TypedValue typedValue(Document document, int element)
+      throws InvalidSPDXAnalysisException {
+    return new TypedValue(document.ids.get(element), symbols.get(document.types[element]));
+  }
+
+  // Same assignability as in the in-memory store of the library
+  private static boolean isAssignableTo(Object value, Class<?> clazz) {
+    if (clazz.isAssignableFrom(value.getClass())) {
+      return true;
+    }
+    if (value instanceof TypedValue) {
+      try {
+        return clazz.isAssignableFrom(
+            SpdxModelFactory.typeToClass(((TypedValue) value).getType()));
+      } catch (InvalidSPDXAnalysisException e) {
+        return false;
+      }
+    }
+    if (!(value instanceof IndividualUriValue)) {
+      return false;
+    }
+    var uri = ((IndividualUriValue) value).getIndividualURI();
+    if (SpdxConstants.URI_VALUE_NOASSERTION.equals(uri)) {
+      return clazz.isAssignableFrom(SpdxNoAssertionLicense.class)
+          || clazz.isAssignableFrom(SpdxNoAssertionElement.class);
+    }
+    if (SpdxConstants.URI_VALUE_NONE.equals(uri)) {
+      return clazz.isAssignableFrom(SpdxNoneLicense.class)
+          || clazz.isAssignableFrom(SpdxNoneElement.class);
+    }
+    var spdxEnum = SpdxEnumFactory.uriToEnum.get(uri);
+    if (spdxEnum != null) {
+      return clazz.isAssignableFrom(spdxEnum.getClass());
+    }
+    // Elements and licenses of external documents are referenced by their uri
+    return uri.contains("#") && (clazz.isAssignableFrom(ExternalSpdxElement.class)
+        || clazz.isAssignableFrom(ExternalExtractedLicenseInfo.class));
+  }
+
+  private static long tagged(int tag, long payload) {
+    return ((long) tag << TAG_SHIFT) | payload;
+  }
+
+  private static int tag(long value) {
+    return (int) (value >>> TAG_SHIFT);
+  }
+
+  private static long payload(long value) {
+    return value & PAYLOAD_MASK;
+  }
+
+  /**
+   * Elements of a document, indexed by the symbols of their ids. Elements that are only referenced
+   * by values have a symbol, but are not created yet.
+   */
+  private static final class Document {
+
+    private final SymbolTable ids = new SymbolTable(true);
+    private final BitSet created = new BitSet();
+    private int[] types = new int[16];
+    // Property names and encoded values of each element, in the order of their first assignment
+    private int[] propertyCounts = new int[16];
+    private int[][] propertyNames = new int[16][];
+    private long[][] propertyValues = new long[16][];
+
+    // Returns the created element with the id, or ABSENT
+    int find(String id) {
+      var element = ids.find(id);
+      return element != SymbolTable.ABSENT && created.get(element) ? element
+          : SymbolTable.ABSENT;
+    }
+
+    int get(String documentUri, String id) throws InvalidSPDXAnalysisException {
+      var element = find(id);
+      if (element == SymbolTable.ABSENT) {
+        throw new InvalidSPDXAnalysisException(
+            "Object with ID " + id + " does not exist in document " + documentUri);
+      }
+      return element;
+    }
+
+    void create(String id, int type) {
+      var element = reference(id, type);
+      types[element] = type;
+      created.set(element);
+    }
+
+    // Returns the element with the id, adding it without creating it if necessary
+    int reference(String id, int type) {
+      var element = ids.find(id);
+      if (element != SymbolTable.ABSENT) {
+        return element;
+      }
+      element = ids.intern(id);
+      if (element == types.length) {
+        types = Arrays.copyOf(types, 2 * element);
+        propertyCounts = Arrays.copyOf(propertyCounts, 2 * element);
+        propertyNames = Arrays.copyOf(propertyNames, 2 * element);
+        propertyValues = Arrays.copyOf(propertyValues, 2 * element);
+      }
+      types[element] = type;
+      return element;
+    }
+
+    long get(int element, int name) {
+      var index = indexOf(element, name);
+      return index == SymbolTable.ABSENT ? NO_VALUE : propertyValues[element][index];
+    }
+
+    void put(int element, int name, long value) {
+      var index = indexOf(element, name);
+      if (index != SymbolTable.ABSENT) {
+        propertyValues[element][index] = value;
+        return;
+      }
+      var count = propertyCounts[element];
+      if (propertyNames[element] == null) {
+        propertyNames[element] = new int[4];
+        propertyValues[element] = new long[4];
+      } else if (count == propertyNames[element].length) {
+        propertyNames[element] = Arrays.copyOf(propertyNames[element], 2 * count);
+        propertyValues[element] = Arrays.copyOf(propertyValues[element], 2 * count);
+      }
+      propertyNames[element][count] = name;
+      propertyValues[element][count] = value;
+      propertyCounts[element]++;
+    }
+
+    void remove(int element, int name) {
+      var index = indexOf(element, name);
+      if (index == SymbolTable.ABSENT) {
+        return;
+      }
+      var remaining = propertyCounts[element] - index - 1;
+      System.arraycopy(propertyNames[element], index + 1, propertyNames[element], index,
+          remaining);
+      System.arraycopy(propertyValues[element], index + 1, propertyValues[element], index,
+          remaining);
+      propertyCounts[element]--;
+    }
+
+    private int indexOf(int element, int name) {
+      for (var i = 0; i < propertyCounts[element]; i++) {
+        if (propertyNames[element][i] == name) {
+          return i;
+        }
+      }
+      return SymbolTable.ABSENT;
+    }
+  }
+
+  /**
+   * Open addressing set of encoded values, which is possible since no encoded value is zero.
+   */
+  private static final class LongSet {
+
+    private long[] slots;
+    private int size;
+
+    LongSet(int expectedSize) {
+      slots = new long[Integer.highestOneBit(4 * expectedSize)];
+    }
+
+    boolean contains(long value) {
+      var mask = slots.length - 1;
+      for (var slot = hash(value) & mask; slots[slot] != NO_VALUE; slot = (slot + 1) & mask) {
+        if (slots[slot] == value) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    // The value must not be contained yet
+    void add(long value) {
+      if (2 * ++size > slots.length) {
+        var previousSlots = slots;
+        slots = new long[2 * slots.length];
+        for (var previousValue : previousSlots) {
+          if (previousValue != NO_VALUE) {
+            insert(previousValue);
+          }
+        }
+      }
+      insert(value);
+    }
+
+    private void insert(long value) {
+      var mask = slots.length - 1;
+      var slot = hash(value) & mask;
+      while (slots[slot] != NO_VALUE) {
+        slot = (slot + 1) & mask;
+      }
+      slots[slot] = value;
+    }
+
+    private static int hash(long value) {
+      return (int) ((value * 0x9E3779B97F4A7C15L) >>> 32);
+    }
+  }
+}
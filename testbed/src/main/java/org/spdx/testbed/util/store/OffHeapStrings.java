@@ -0,0 +1,197 @@
+// SPDX-FileCopyrightText: TNG Technology Consulting GmbH
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.spdx.testbed.util.store;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * Append-only storage of strings in a memory-mapped temporary file, so large texts neither occupy
+ * the heap nor count against the limit of direct memory. Each string is encoded as UTF-8, prefixed
+ * by its length, and is addressed by a long that consists of the index of its chunk and its
+ * position in the chunk. The file is deleted once the storage is cleared, and the chunks are
+ * unmapped once the storage is no longer referenced.
+ *
+ * <p>Strings can also be interned, so that equal interned strings have the same address. The
+ * interned strings are found via a table of their addresses, which holds no strings on the heap.
+ */
+final class OffHeapStrings {
+
+  static final long ABSENT = -1;
+
+  private static final int CHUNK_SIZE = 1 << 24;
+
+  private final List<ByteBuffer> chunks = new ArrayList<>();
+  @Nullable
+  private FileChannel file;
+  private long fileSize;
+  @Nullable
+  private ByteBuffer current;
+
+  // Address + 1 of each interned string, or zero for free slots, and the hashes of the strings
+  private long[] internedSlots = new long[16];
+  private int[] internedHashes = new int[16];
+  private int internedCount;
+
+  /**
+   * Stores the string and returns its address, which is never negative.
+   *
+   * @throws UncheckedIOException In case the temporary file can't be created or extended
+   */
+  long add(String value) {
+    return add(value.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Returns the address of the interned string that is equal to the provided one, storing and
+   * interning it first if there is none.
+   *
+   * @throws UncheckedIOException In case the temporary file can't be created or extended
+   */
+  long intern(String value) {
+    var bytes = value.getBytes(StandardCharsets.UTF_8);
+    var hash = hash(bytes);
+    var address = find(bytes, hash);
+    if (address != ABSENT) {
+      return address;
+    }
+    address = add(bytes);
+    if (2 * ++internedCount > internedSlots.length) {
+      rehash();
+    }
+    insert(address, hash);
+    return address;
+  }
+
+  /**
+   * Returns the address of the interned string that is equal to the provided one, or
+   * {@link #ABSENT} if there is none.
+   */
+  long find(String value) {
+    var bytes = value.getBytes(StandardCharsets.UTF_8);
+    return find(bytes, hash(bytes));
+  }
+
+  String get(long address) {
+    var chunk = chunks.get((int) (address >>> Integer.SIZE)).duplicate();
+    var position = (int) address;
+    var bytes = new byte[chunk.getInt(position)];
+    chunk.position(position + Integer.BYTES);
+    chunk.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Releases all strings and deletes the temporary file.
+   *
+   * @throws UncheckedIOException In case the temporary file can't be closed
+   */
+  void clear() {
+    chunks.clear();
+    current = null;
+    internedSlots = new long[16];
+    internedHashes = new int[16];
+    internedCount = 0;
+    if (file != null) {
+      try {
+        file.close();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      } finally {
+        file = null;
+        fileSize = 0;
+      }
+    }
+  }
+
+  private long add(byte[] bytes) {
+    var requiredSize = Integer.BYTES + bytes.length;
+    if (current == null || current.remaining() < requiredSize) {
+      // Strings larger than a chunk get a chunk of their own
+      current = map(Math.max(CHUNK_SIZE, requiredSize));
+      chunks.add(current);
+    }
+    var address = ((long) (chunks.size() - 1) << Integer.SIZE) | current.position();
+    current.putInt(bytes.length).put(bytes);
+    return address;
+  }
+
+  // Mapping a region beyond the end of the file extends it
+  private ByteBuffer map(int size) {
+    try {
+      if (file == null) {
+        var path = Files.createTempFile("spdx-testbed-strings", ".bin");
+        file = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE,
+            StandardOpenOption.DELETE_ON_CLOSE);
+      }
+      var chunk = file.map(FileChannel.MapMode.READ_WRITE, fileSize, size);
+      fileSize += size;
+      return chunk;
+    } catch (IOException e) {
+      throw new UncheckedIOException("The texts can't be stored in a temporary file.", e);
+    }
+  }
+
+  private long find(byte[] bytes, int hash) {
+    var mask = internedSlots.length - 1;
+    for (var slot = hash & mask; internedSlots[slot] != 0; slot = (slot + 1) & mask) {
+      var address = internedSlots[slot] - 1;
+      if (internedHashes[slot] == hash && matches(address, bytes)) {
+        return address;
+      }
+    }
+    return ABSENT;
+  }
+
+  private boolean matches(long address, byte[] bytes) {
+    var chunk = chunks.get((int) (address >>> Integer.SIZE));
+    var position = (int) address;
+    if (chunk.getInt(position) != bytes.length) {
+      return false;
+    }
+    for (var i = 0; i < bytes.length; i++) {
+      if (chunk.get(position + Integer.BYTES + i) != bytes[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void rehash() {
+    var previousSlots = internedSlots;
+    var previousHashes = internedHashes;
+    internedSlots = new long[2 * previousSlots.length];
+    internedHashes = new int[2 * previousHashes.length];
+    for (var slot = 0; slot < previousSlots.length; slot++) {
+      if (previousSlots[slot] != 0) {
+        insert(previousSlots[slot] - 1, previousHashes[slot]);
+      }
+    }
+  }
+
+  private void insert(long address, int hash) {
+    var mask = internedSlots.length - 1;
+    var slot = hash & mask;
+    while (internedSlots[slot] != 0) {
+      slot = (slot + 1) & mask;
+    }
+    internedSlots[slot] = address + 1;
+    internedHashes[slot] = hash;
+  }
+
+  private static int hash(byte[] bytes) {
+    var hash = Arrays.hashCode(bytes);
+    return hash ^ (hash >>> 16);
+  }
+}
@@ -0,0 +1,103 @@
+// SPDX-FileCopyrightText: TNG Technology Consulting GmbH
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.spdx.testbed.util.store;
+
+import java.util.Arrays;
+
+/**
+ * Interns strings to consecutive ints, starting at zero. The symbols are held in an open
+ * addressing table of ints, so apart from the strings themselves no objects are allocated per
+ * symbol. Optionally, strings that only differ in case are interned to the same symbol, which keeps
+ * the case of the string that was interned first.
+ */
+final class SymbolTable {
+
+  static final int ABSENT = -1;
+
+  private final boolean ignoreCase;
+  private String[] symbols = new String[16];
+  // Symbol + 1 of each slot, or zero for free slots
+  private int[] slots = new int[32];
+  private int size;
+
+  SymbolTable(boolean ignoreCase) {
+    this.ignoreCase = ignoreCase;
+  }
+
+  /**
+   * Returns the symbol of the string, or {@link #ABSENT} if it is not interned.
+   */
+  int find(String value) {
+    var mask = slots.length - 1;
+    for (var slot = hash(value) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+      if (matches(symbols[slots[slot] - 1], value)) {
+        return slots[slot] - 1;
+      }
+    }
+    return ABSENT;
+  }
+
+  /**
+   * Returns the symbol of the string, interning it if necessary.
+   */
+  int intern(String value) {
+    var symbol = find(value);
+    if (symbol != ABSENT) {
+      return symbol;
+    }
+    if (size == symbols.length) {
+      symbols = Arrays.copyOf(symbols, 2 * size);
+    }
+    symbols[size] = value;
+    if (2 * ++size > slots.length) {
+      rehash();
+    } else {
+      insert(size - 1);
+    }
+    return size - 1;
+  }
+
+  String get(int symbol) {
+    return symbols[symbol];
+  }
+
+  int size() {
+    return size;
+  }
+
+  private void rehash() {
+    slots = new int[2 * slots.length];
+    for (var symbol = 0; symbol < size; symbol++) {
+      insert(symbol);
+    }
+  }
+
+  private void insert(int symbol) {
+    var mask = slots.length - 1;
+    var slot = hash(symbols[symbol]) & mask;
+    while (slots[slot] != 0) {
+      slot = (slot + 1) & mask;
+    }
+    slots[slot] = symbol + 1;
+  }
+
+  private boolean matches(String symbol, String value) {
+    return ignoreCase ? symbol.equalsIgnoreCase(value) : symbol.equals(value);
+  }
+
+  // Consistent with equalsIgnoreCase, which compares the upper and the lower case of each char
+  private int hash(String value) {
+    int hash;
+    if (ignoreCase) {
+      hash = 0;
+      for (var i = 0; i < value.length(); i++) {
+        hash = 31 * hash + Character.toLowerCase(Character.toUpperCase(value.charAt(i)));
+      }
+    } else {
+      hash = value.hashCode();
+    }
+    return hash ^ (hash >>> 16);
+  }
+}
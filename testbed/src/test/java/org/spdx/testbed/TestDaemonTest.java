@@ -0,0 +1,169 @@
+// SPDX-FileCopyrightText: TNG Technology Consulting GmbH
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.spdx.testbed;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+import javax.annotation.Nullable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for running tests in a daemon.
+ */
+public class TestDaemonTest {
+
+  private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+  private final PrintStream out = new PrintStream(output, true, StandardCharsets.UTF_8);
+  @TempDir
+  Path tokenDirectory;
+  private TestDaemon daemon;
+
+  @BeforeEach
+  public void setup() throws Exception {
+    daemon = TestDaemon.start(0, tokenDirectory);
+  }
+
+  @AfterEach
+  public void tearDown() throws IOException {
+    daemon.stop();
+  }
+
+  @Test
+  public void printOutputAndReturnExitCodeOfRun() throws Exception {
+    var exitCode = TestDaemon.submit(daemon.getPort(), tokenDirectory, List.of("-h"), out);
+
+    assertThat(exitCode).isEqualTo(0);
+    assertThat(output.toString(StandardCharsets.UTF_8))
+        .contains("usage: spdx-tools-java-solver.jar")
+        .doesNotContain(TestDaemon.EXIT_CODE_PREFIX + 0);
+  }
+
+  @Test
+  public void reportFailureOfRun(@TempDir Path tempDir) throws Exception {
+    var missingManifest = tempDir.resolve("missing.ndjson").toString();
+
+    var exitCode = TestDaemon.submit(daemon.getPort(), tokenDirectory,
+        List.of("-s", "-b", missingManifest), out);
+
+    assertThat(exitCode).isEqualTo(1);
+    assertThat(output.toString(StandardCharsets.UTF_8)).contains("The run failed");
+  }
+
+  @Test
+  public void returnFailureExitCodeOfBatchWithFailedEntries(@TempDir Path tempDir)
+      throws Exception {
+    var manifest = tempDir.resolve("manifest.ndjson");
+    Files.writeString(manifest,
+        "{\"testCase\": \"unknownTest\", \"inputFile\": \"input.json\"}\n");
+
+    var exitCode = TestDaemon.submit(daemon.getPort(), tokenDirectory,
+        List.of("-b", manifest.toString()), out);
+
+    assertThat(exitCode).isEqualTo(1);
+    assertThat(output.toString(StandardCharsets.UTF_8))
+        .contains("1 tests of the batch failed or found differences.");
+  }
+
+  @Test
+  public void rejectDaemonOptionsInRequests() throws Exception {
+    var exitCode = TestDaemon.submit(daemon.getPort(), tokenDirectory, List.of("-S", "0"), out);
+
+    assertThat(exitCode).isEqualTo(1);
+    assertThat(output.toString(StandardCharsets.UTF_8))
+        .contains("can't be passed to a daemon");
+  }
+
+  @Test
+  public void reportUnknownTestCaseNamesToClient(@TempDir Path tempDir) throws Exception {
+    var inputFile = tempDir.resolve("input.json").toString();
+
+    TestDaemon.submit(daemon.getPort(), tokenDirectory, List.of("-t", "unknownTest", "-f",
+        inputFile), out);
+
+    assertThat(output.toString(StandardCharsets.UTF_8))
+        .contains("No test case found for name unknownTest!");
+  }
+
+  @Test
+  public void writeTokenReadableOnlyByOwner() throws Exception {
+    var tokenFile = TestDaemon.getTokenFile(tokenDirectory, daemon.getPort());
+
+    assertThat(Files.readString(tokenFile)).isNotBlank();
+    if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+      assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(tokenFile)))
+          .isEqualTo("rw-------");
+    }
+  }
+
+  @Test
+  public void rejectRequestsWithoutToken() throws Exception {
+    assertThat(send(loopbackHost(), "application/json", null)).isEqualTo(403);
+    assertThat(send(loopbackHost(), "application/json", "wrong")).isEqualTo(403);
+  }
+
+  @Test
+  public void rejectRequestsWithOtherContentType() throws Exception {
+    assertThat(send(loopbackHost(), "text/plain", readToken())).isEqualTo(415);
+  }
+
+  @Test
+  public void rejectRequestsForOtherHosts() throws Exception {
+    assertThat(send("attacker.example:" + daemon.getPort(), "application/json", readToken()))
+        .isEqualTo(403);
+  }
+
+  @Test
+  public void acceptRequestsWithTokenForLoopbackHost() throws Exception {
+    assertThat(send(loopbackHost(), "application/json; charset=utf-8", readToken()))
+        .isEqualTo(200);
+  }
+
+  private String loopbackHost() {
+    return InetAddress.getLoopbackAddress().getHostAddress() + ":" + daemon.getPort();
+  }
+
+  private String readToken() throws IOException {
+    return Files.readString(TestDaemon.getTokenFile(tokenDirectory, daemon.getPort())).trim();
+  }
+
+  // Written by hand, since the http clients of the JDK don't allow setting the Host header
+  private int send(String host, String contentType, @Nullable String token) throws IOException {
+    var body = "[\"-h\"]";
+    try (var socket = new Socket(InetAddress.getLoopbackAddress(), daemon.getPort())) {
+      var request = new StringBuilder()
+          .append("POST /run HTTP/1.1\r\n")
+          .append("Host: ").append(host).append("\r\n")
+          .append("Content-Type: ").append(contentType).append("\r\n")
+          .append("Content-Length: ").append(body.length()).append("\r\n")
+          .append("Connection: close\r\n");
+      if (token != null) {
+        request.append("Authorization: Bearer ").append(token).append("\r\n");
+      }
+      request.append("\r\n").append(body);
+      socket.getOutputStream().write(request.toString().getBytes(StandardCharsets.US_ASCII));
+      socket.getOutputStream().flush();
+      var reader = new BufferedReader(
+          new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+      // e.g. HTTP/1.1 403 Forbidden
+      return Integer.parseInt(reader.readLine().split(" ")[1]);
+    }
+  }
+}
@@ -0,0 +1,197 @@
+// SPDX-FileCopyrightText: TNG Technology Consulting GmbH
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.spdx.testbed;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for running test cases in overlapping stages.
+ */
+public class TestPipelineTest {
+
+  private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+  private final PrintStream out = new PrintStream(output, true, StandardCharsets.UTF_8);
+
+  @Test
+  public void compareConcurrentlyAndReturnResultsInOrder() throws Exception {
+    var concurrentComparisons = new CountDownLatch(3);
+    var testCases = new ArrayList<TestCase>();
+    for (var i = 0; i < 6; i++) {
+      var success = i % 2 == 0;
+      testCases.add(new FakeTestCase("test" + i, inputFile -> () -> {
+        // Only completes if three comparisons run at the same time
+        concurrentComparisons.countDown();
+        assertThat(await(concurrentComparisons)).isTrue();
+        return report -> {
+          report.println("Report of " + inputFile);
+          return TestResult.builder().success(success).build();
+        };
+      }));
+    }
+
+    var results = new TestPipeline(2, 3, 2, 1, out)
+        .run(testCases, List.of("a", "b", "c", "d", "e", "f"));
+
+    assertThat(results).hasSize(6);
+    for (var i = 0; i < 6; i++) {
+      assertThat(results.get(i).success).isEqualTo(i % 2 == 0);
+    }
+    assertThat(output.toString(StandardCharsets.UTF_8)).contains("Report of a", "Report of f");
+  }
+
+  @Test
+  public void runRemainingTestsIfOneFails() {
+    var testCases = new ArrayList<TestCase>();
+    testCases.add(new FakeTestCase("failing", inputFile -> {
+      throw new IOException("unreadable " + inputFile);
+    }));
+    testCases.add(new FakeTestCase("succeeding", inputFile -> () -> report -> {
+      report.println("Report of " + inputFile);
+      return TestResult.builder().success(true).build();
+    }));
+
+    assertThatThrownBy(() -> new TestPipeline(1, 1, 1, 0, out)
+        .run(testCases, List.of("a", "b")))
+        .isInstanceOf(IOException.class)
+        .hasMessageContaining("unreadable a");
+    assertThat(output.toString(StandardCharsets.UTF_8))
+        .contains("Could not run failing against a: unreadable a", "Report of b");
+  }
+
+  @Test
+  public void holdAtMostTheTestsOfWorkersAndQueues() throws Exception {
+    var preparedTests = new AtomicInteger();
+    var maxPreparedTests = new AtomicInteger();
+    var testCases = Collections.<TestCase>nCopies(20, new FakeTestCase("test", inputFile -> {
+      maxPreparedTests.accumulateAndGet(preparedTests.incrementAndGet(), Math::max);
+      return () -> {
+        sleep();
+        preparedTests.decrementAndGet();
+        return report -> TestResult.builder().success(true).build();
+      };
+    }));
+
+    new TestPipeline(1, 1, 1, 1, out).run(testCases, Collections.nCopies(20, "input"));
+
+    // One test in the hands of each preparing and comparing worker, and one in the queue between
+    assertThat(maxPreparedTests.get()).isLessThanOrEqualTo(3);
+  }
+
+  @Test
+  public void passOutcomesToListenerUntilSourceFails() {
+    var succeeding = new FakeTestCase("succeeding",
+        inputFile -> () -> report -> TestResult.builder().success(true).build());
+    var failing = new FakeTestCase("failing", inputFile -> {
+      throw new IOException("unreadable " + inputFile);
+    });
+    var tasks = new ArrayDeque<>(List.of(new TestPipeline.Task(succeeding, "a", null),
+        new TestPipeline.Task(failing, "b", null)));
+    var outcomes = Collections.synchronizedList(new ArrayList<String>());
+
+    assertThatThrownBy(() -> new TestPipeline(1, 1, 1, 1, out).run(() -> {
+      if (tasks.isEmpty()) {
+        throw new IOException("manifest unreadable");
+      }
+      return tasks.poll();
+    }, (position, task, result, failure) -> outcomes.add(position + " " + task.getInputFile() + " "
+        + (result != null ? result.success : failure.getMessage()))))
+        .isInstanceOf(IOException.class)
+        .hasMessageContaining("manifest unreadable");
+    assertThat(outcomes).containsExactlyInAnyOrder("0 a true", "1 b unreadable b");
+  }
+
+  @Test
+  public void printReportsOfTestCasesWithoutPreparationAsAWhole() throws Exception {
+    TestCase testCase = new PrintingTestCase();
+    var inputFiles = List.of("a", "b", "c", "d", "e", "f");
+
+    new TestPipeline(1, 3, 1, 1, out).run(Collections.nCopies(6, testCase), inputFiles);
+
+    var report = output.toString(StandardCharsets.UTF_8);
+    for (var inputFile : inputFiles) {
+      assertThat(report).contains(
+          "Start of " + inputFile + System.lineSeparator() + "End of " + inputFile);
+    }
+  }
+
+  private static boolean await(CountDownLatch latch) {
+    try {
+      return latch.await(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static void sleep() {
+    try {
+      Thread.sleep(5);
+    } catch (InterruptedException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  @FunctionalInterface
+  private interface Preparation {
+
+    TestCase.PreparedTest prepare(String inputFile) throws IOException;
+  }
+
+  // Relies on the default preparation, which runs the whole test when comparing
+  private static final class PrintingTestCase implements TestCase {
+
+    @Override
+    public TestResult test(String inputFile, PrintStream out) {
+      out.println("Start of " + inputFile);
+      sleep();
+      out.println("End of " + inputFile);
+      return TestResult.builder().success(true).build();
+    }
+
+    @Override
+    public String getName() {
+      return "printing";
+    }
+  }
+
+  private static final class FakeTestCase implements TestCase {
+
+    private final String name;
+    private final Preparation preparation;
+
+    FakeTestCase(String name, Preparation preparation) {
+      this.name = name;
+      this.preparation = preparation;
+    }
+
+    @Override
+    public TestResult test(String inputFile, PrintStream out) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public PreparedTest prepare(String inputFile) throws IOException {
+      return preparation.prepare(inputFile);
+    }
+
+    @Override
+    public String getName() {
+      return name;
+    }
+  }
+}
@@ -0,0 +1,168 @@
+// SPDX-FileCopyrightText: TNG Technology Consulting GmbH
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.spdx.testbed.generationtestcases;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.spdx.library.model.SpdxDocument;
+import org.spdx.testbed.TestOptions;
+import org.spdx.testbed.util.Comparisons;
+import org.spdx.testbed.util.TestCaseFinder;
+import org.spdx.testbed.util.json.ComparisonRules;
+import org.spdx.testbed.util.json.DifferenceCollector;
+import org.spdx.tools.SpdxToolsHelper;
+
+/**
+ * Tests for the logic shared by all generation test cases.
+ */
+public class GenerationTestCaseTest {
+
+  private static final String INPUT_DIRECTORY = "src/test/resources/testInput/generation/";
+  private static final String DOCUMENT_INPUT = INPUT_DIRECTORY + "DocumentTest.xml";
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  @TempDir
+  Path tempDir;
+
+  @Test
+  public void nameDifferencesFilesAfterTheInputFile() {
+    var testCase = new GenerationMinimalTestCase();
+
+    var fileName = testCase.getDifferencesFileName("tool a/out put.json");
+
+    assertThat(fileName).startsWith(testCase.getName() + "-out_put.json-");
+    assertThat(testCase.getDifferencesFileName("tool b/out put.json")).isNotEqualTo(fileName);
+    assertThat(testCase.getDifferencesFileName("tool a/../tool a/out put.json"))
+        .isEqualTo(fileName);
+  }
+
+  @Test
+  public void writeDifferencesToInputFilesWithTheSameNameToDifferentFiles() throws Exception {
+    var differencesDirectory = tempDir.resolve("differences");
+    var options = TestOptions.builder().differencesDirectory(differencesDirectory).build();
+    var otherInput = Files.createDirectories(tempDir.resolve("other")).resolve("DocumentTest.xml");
+    Files.copy(Path.of(DOCUMENT_INPUT), otherInput);
+    var testCase = new GenerationMinimalTestCase();
+    var output = new ByteArrayOutputStream();
+    var out = new PrintStream(output, true, StandardCharsets.UTF_8);
+
+    testCase.prepare(DOCUMENT_INPUT, null, options).compare().print(out);
+    testCase.prepare(otherInput.toString(), null, options).compare().print(out);
+
+    try (var files = Files.list(differencesDirectory)) {
+      var differencesFiles = files.toArray(Path[]::new);
+      assertThat(differencesFiles).hasSize(2);
+      for (var differencesFile : differencesFiles) {
+        assertThat(Files.size(differencesFile)).isPositive();
+        assertThat(output.toString(StandardCharsets.UTF_8))
+            .contains("differences were written to " + differencesFile + ".");
+      }
+    }
+  }
+
+  @Test
+  public void keepReferenceOnlyInKeptReferencesOfOptions() throws Exception {
+    var keptReferences = new ConcurrentHashMap<Class<?>, ObjectNode>();
+    var options = TestOptions.builder().keptReferences(keptReferences).build();
+    var testCase = new GenerationMinimalTestCase();
+
+    var firstReference = testCase.getReferenceJson(options);
+    var secondReference = testCase.getReferenceJson(options);
+
+    assertThat(keptReferences).containsOnlyKeys(GenerationMinimalTestCase.class);
+    assertThat(secondReference).isEqualTo(firstReference).isNotSameAs(firstReference)
+        .isNotSameAs(keptReferences.get(GenerationMinimalTestCase.class));
+  }
+
+  @Test
+  public void buildReferenceOnReferenceBuilderOnlyIfItIsNotKept() throws Exception {
+    var builds = new AtomicInteger();
+    var options = TestOptions.builder()
+        .keptReferences(new ConcurrentHashMap<>())
+        .referenceBuilder(task -> {
+          builds.incrementAndGet();
+          task.run();
+        })
+        .build();
+    var testCase = new GenerationMinimalTestCase();
+
+    testCase.prepare(DOCUMENT_INPUT, null, options).compare();
+    testCase.prepare(DOCUMENT_INPUT, null, options).compare();
+
+    assertThat(builds.get()).isEqualTo(1);
+  }
+
+  // Each input is compared with the references of all test cases, so that the normalization is
+  // checked against documents that differ, too
+  @Test
+  public void detectSameDifferencesInSerializedReferencesWithAndWithoutDeserializing()
+      throws Exception {
+    for (var testCase : findGenerationTestCases()) {
+      var input = writeJson(testCase.buildReferenceDocument(), testCase.getName());
+
+      assertThatJsonInputPathsAgree(input);
+    }
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {"MinimalTest", "BaselineSbomTest", "DocumentTest", "PackageTest",
+      "FileTest", "SnippetTest", "LicenseTest", "RelationshipTest"})
+  public void detectSameDifferencesInConvertedInputsWithAndWithoutDeserializing(String inputName)
+      throws Exception {
+    var document = SpdxToolsHelper.deserializeDocument(
+        new File(INPUT_DIRECTORY + inputName + ".xml"), SpdxToolsHelper.SerFileType.XML);
+    var input = writeJson(document, inputName);
+
+    assertThatJsonInputPathsAgree(input);
+  }
+
+  private void assertThatJsonInputPathsAgree(Path input) throws Exception {
+    for (var testCase : findGenerationTestCases()) {
+      var referenceJson = Comparisons.asJson(testCase.buildReferenceDocument());
+      var deserialized = DifferenceCollector.unlimited();
+      var read = DifferenceCollector.unlimited();
+
+      Comparisons.findDifferencesInSerializedJson(testCase.getInputDoc(input.toString()),
+          referenceJson.deepCopy(), ComparisonRules.DEFAULT, ForkJoinPool.commonPool(),
+          deserialized);
+      Comparisons.findDifferencesInJson(Comparisons.readJson(input), referenceJson.deepCopy(),
+          ComparisonRules.DEFAULT, ForkJoinPool.commonPool(), read);
+
+      assertThat(read.getDifferences())
+          .as("%s against %s", input.getFileName(), testCase.getName())
+          .isEqualTo(deserialized.getDifferences());
+    }
+  }
+
+  private Path writeJson(SpdxDocument document, String name) throws Exception {
+    var file = tempDir.resolve(name + ".json");
+    MAPPER.writerWithDefaultPrettyPrinter().writeValue(file.toFile(), Comparisons.asJson(document));
+    return file;
+  }
+
+  private static List<GenerationTestCase> findGenerationTestCases() {
+    return new TestCaseFinder().findAllTestCases().stream()
+        .filter(testCase -> testCase instanceof GenerationTestCase)
+        .map(testCase -> (GenerationTestCase) testCase)
+        .collect(Collectors.toList());
+  }
+}
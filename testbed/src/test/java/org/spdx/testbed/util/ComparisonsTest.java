@@ -6,13 +6,21 @@ package org.spdx.testbed.util;
 
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.spdx.testbed.util.Comparisons.findDifferencesInModelStores;
 import static org.spdx.testbed.util.Comparisons.findDifferencesInSerializedJson;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.databind.node.TextNode;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.spdx.library.InvalidSPDXAnalysisException;
 import org.spdx.library.ModelCopyManager;
 import org.spdx.library.SpdxConstants;
@@ -22,12 +30,17 @@ import org.spdx.library.model.Checksum;
 import org.spdx.library.model.SpdxDocument;
 import org.spdx.library.model.SpdxFile;
 import org.spdx.library.model.SpdxModelFactory;
+import org.spdx.library.model.enumerations.AnnotationType;
 import org.spdx.library.model.enumerations.ChecksumAlgorithm;
+import org.spdx.library.model.enumerations.RelationshipType;
 import org.spdx.library.model.license.LicenseInfoFactory;
 import org.spdx.library.model.license.SpdxNoAssertionLicense;
 import org.spdx.storage.IModelStore;
 import org.spdx.storage.simple.InMemSpdxStore;
+import org.spdx.testbed.util.json.ComparisonRules;
 import org.spdx.testbed.util.json.Difference;
+import org.spdx.testbed.util.json.DifferenceCollector;
+import org.spdx.testbed.util.json.JsonComparison;
 
 /**
  * Tests for methods comparing SPDX documents.
@@ -282,6 +295,126 @@ public class ComparisonsTest {
     assertThat(differences).isEmpty();
   }
 
+  @Test
+  public void detectDifferencesInModelStores() throws InvalidSPDXAnalysisException {
+    var firstDoc = buildMinimalDocumentWithFile();
+    var secondDoc = buildMinimalDocumentWithFile();
+
+    firstDoc.setName(" " + firstDoc.getName().get() + "\r\n");
+    firstDoc.getCreationInfo().setComment("firstComment");
+    secondDoc.getCreationInfo().setComment("secondComment");
+    var firstFile = (SpdxFile) firstDoc.getDocumentDescribes().stream().findFirst().get();
+    firstFile.getFileContributors().add("fileContributor");
+
+    var differences = findDifferencesInModelStores(firstDoc, secondDoc);
+
+    assertThat(differences).containsExactly(
+        Difference.builder()
+            .actualValue(new TextNode("firstComment"))
+            .expectedValue(new TextNode("secondComment"))
+            .path("/" + SpdxConstants.PROP_SPDX_CREATION_INFO + "/"
+                + SpdxConstants.RDFS_PROP_COMMENT)
+            .build(),
+        Difference.builder()
+            .actualValue(MAPPER.createArrayNode().add("fileContributor"))
+            .path("/SPDXRef-file/" + SpdxConstants.PROP_FILE_CONTRIBUTOR)
+            .build());
+  }
+
+  @Test
+  public void matchAnonymousElementsInModelStoresByContent()
+      throws InvalidSPDXAnalysisException {
+    var firstDoc = buildMinimalDocumentWithFile();
+    var secondDoc = buildMinimalDocumentWithFile();
+
+    for (var doc : List.of(firstDoc, secondDoc)) {
+      var file = (SpdxFile) doc.getDocumentDescribes().stream().findFirst().get();
+      file.addRelationship(doc.createRelationship(doc, RelationshipType.DESCRIBED_BY, null));
+      file.addAnnotation(doc.createAnnotation("Tool: spdx-testbed", AnnotationType.OTHER,
+          "2022-01-01T00:00:00Z", doc == firstDoc ? "first" : "second"));
+    }
+
+    var differences = findDifferencesInModelStores(firstDoc, secondDoc);
+
+    assertThat(differences).hasSize(1);
+    assertThat(differences.get(0).getActualValue()).isEqualTo(new TextNode("first"));
+    assertThat(differences.get(0).getExpectedValue()).isEqualTo(new TextNode("second"));
+    assertThat(differences.get(0).getPath())
+        .startsWith("/SPDXRef-file/" + SpdxConstants.PROP_ANNOTATION + "/");
+  }
+
+  // The rules name the json field hasFiles, while the model store holds the property hasFile
+  @Test
+  public void skipFilesOfPackagesInModelStoresLikeInJson() throws InvalidSPDXAnalysisException {
+    var firstDoc = buildMinimalDocumentWithFile();
+    var secondDoc = buildMinimalDocumentWithFile();
+    for (var doc : List.of(firstDoc, secondDoc)) {
+      var describedFile = (SpdxFile) doc.getDocumentDescribes().stream().findFirst().get();
+      var otherFile = doc.createSpdxFile("SPDXRef-other", "./bar.txt",
+              LicenseInfoFactory.parseSPDXLicenseString("MIT"), List.of(),
+              "Copyright 2022 Anonymous Developer", Checksum.create(doc.getModelStore(),
+                  doc.getDocumentUri(), ChecksumAlgorithm.SHA1,
+                  "3da541559918a808c2402bba5012f6c60b27661c"))
+          .build();
+      var spdxPackage = doc.createPackage("SPDXRef-package", "package name", null, null, null)
+          .setFilesAnalyzed(false)
+          .build();
+      spdxPackage.getFiles().add(doc == firstDoc ? describedFile : otherFile);
+      doc.getDocumentDescribes().add(spdxPackage);
+    }
+
+    assertThat(findDifferencesInModelStores(firstDoc, secondDoc)).isEmpty();
+    assertThat(findDifferencesInSerializedJson(firstDoc, secondDoc)).isEmpty();
+  }
+
+  @Test
+  public void readOnlyComparedSections(@TempDir Path directory) throws IOException {
+    var file = directory.resolve("document.json");
+    Files.writeString(file, "{\"SPDXID\": \"SPDXRef-DOCUMENT\", \"name\": \"doc\","
+        + "\"files\": [{\"SPDXID\": \"SPDXRef-file\", \"checksums\": [{}]}],"
+        + "\"snippets\": [], \"packages\": [{\"SPDXID\": \"SPDXRef-package\"}]}");
+    var expectedJson = (ObjectNode) MAPPER.readTree("{\"SPDXID\": \"SPDXRef-DOCUMENT\","
+        + "\"name\": \"doc\", \"packages\": [{\"SPDXID\": \"SPDXRef-package\"}]}");
+
+    var json = Comparisons.readJson(file, EnumSet.of(DocumentSection.PACKAGES));
+
+    assertThat(json.get("packages")).isEqualTo(expectedJson.get("packages"));
+    assertThat(json.has("snippets")).isFalse();
+    var differences = JsonComparison.findDifferences(json, expectedJson);
+    assertThat(differences).hasSize(1);
+    assertThat(differences.get(0).getPath()).isEqualTo("/files");
+    assertThat(differences.get(0).getExpectedValue()).isNull();
+  }
+
+  @Test
+  public void normalizeStreamedDocumentsLikeReadDocuments(@TempDir Path directory)
+      throws IOException {
+    var file = directory.resolve("document.json");
+    Files.writeString(file, "{\"SPDXID\": \"SPDXRef-DOCUMENT\", \"name\": \"doc\","
+        + "\"documentDescribes\": [\"SPDXRef-package\"],"
+        + "\"files\": [{\"SPDXID\": \"SPDXRef-file\"}], \"annotations\": [],"
+        + "\"packages\": [{\"SPDXID\": \"SPDXRef-package\", \"licenseConcluded\": \"mit\"},"
+        + "{\"SPDXID\": \"SPDXRef-other\", \"licenseDeclared\": \"apache-2.0 OR mit\"}],"
+        + "\"relationships\": [{\"spdxElementId\": \"SPDXRef-DOCUMENT\","
+        + "\"relationshipType\": \"DESCRIBES\", \"relatedSpdxElement\": \"SPDXRef-other\"}]}");
+    var expectedJson = (ObjectNode) MAPPER.readTree("{\"SPDXID\": \"SPDXRef-DOCUMENT\","
+        + "\"name\": \"doc\", \"documentDescribes\": [\"SPDXRef-package\"], \"packages\": ["
+        + "{\"SPDXID\": \"SPDXRef-package\", \"licenseConcluded\": \"MIT\"},"
+        + "{\"SPDXID\": \"SPDXRef-other\", \"licenseDeclared\": \"GPL-2.0-only\"}]}");
+    var sections = EnumSet.of(DocumentSection.PACKAGES, DocumentSection.RELATIONSHIPS);
+
+    var streamedDifferences = DifferenceCollector.unlimited();
+    Comparisons.findDifferencesInJsonFile(file, sections, expectedJson.deepCopy(),
+        ComparisonRules.DEFAULT, streamedDifferences);
+
+    var readDifferences = DifferenceCollector.unlimited();
+    Comparisons.findDifferencesInJson(Comparisons.readJson(file, sections), expectedJson,
+        ComparisonRules.DEFAULT, ForkJoinPool.commonPool(), readDifferences);
+    assertThat(readDifferences.getDifferences()).hasSize(4);
+    assertThat(streamedDifferences.getDifferences())
+        .containsExactlyInAnyOrderElementsOf(readDifferences.getDifferences());
+  }
+
   private static SpdxDocument buildMinimalDocumentWithFile() throws InvalidSPDXAnalysisException {
     var modelStore = new InMemSpdxStore();
     var documentUri = "documentUri";
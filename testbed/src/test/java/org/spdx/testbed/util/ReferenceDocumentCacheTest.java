@@ -0,0 +1,103 @@
+// SPDX-FileCopyrightText: TNG Technology Consulting GmbH
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.spdx.testbed.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.spdx.library.InvalidSPDXAnalysisException;
+import org.spdx.testbed.generationtestcases.GenerationMinimalTestCase;
+import org.spdx.testbed.util.json.JsonComparison;
+
+/**
+ * Tests for the cache of serialized reference documents.
+ */
+public class ReferenceDocumentCacheTest {
+
+  @TempDir
+  Path cacheDirectory;
+
+  @Test
+  public void buildReferenceDocumentOnlyOnce() throws InvalidSPDXAnalysisException, IOException {
+    var testCase = new GenerationMinimalTestCase();
+    var builds = new AtomicInteger();
+    ReferenceDocumentCache.ReferenceDocumentBuilder builder = () -> {
+      builds.incrementAndGet();
+      return testCase.buildReferenceDocument();
+    };
+
+    var builtJson = new ReferenceDocumentCache(cacheDirectory)
+        .getReferenceJson(testCase.getName(), testCase.getClass(), builder);
+    var cachedJson = new ReferenceDocumentCache(cacheDirectory)
+        .getReferenceJson(testCase.getName(), testCase.getClass(), builder);
+
+    assertThat(builds.get()).isEqualTo(1);
+    assertThat(cachedJson).isEqualTo(builtJson);
+    assertThat(JsonComparison.findDifferences(cachedJson,
+        Comparisons.asJson(testCase.buildReferenceDocument()))).isEmpty();
+  }
+
+  @Test
+  public void containReferenceDocumentOnceItIsBuilt()
+      throws InvalidSPDXAnalysisException, IOException {
+    var testCase = new GenerationMinimalTestCase();
+    var cache = new ReferenceDocumentCache(cacheDirectory);
+
+    var containedBeforeBuild = cache.contains(testCase.getName(), testCase.getClass());
+    cache.getReferenceJson(testCase.getName(), testCase.getClass(),
+        testCase::buildReferenceDocument);
+
+    assertThat(containedBeforeBuild).isFalse();
+    assertThat(cache.contains(testCase.getName(), testCase.getClass())).isTrue();
+  }
+
+  @Test
+  public void deleteEntriesOfSameTestCaseWithOtherContentVersions()
+      throws InvalidSPDXAnalysisException, IOException {
+    var testCase = new GenerationMinimalTestCase();
+    var otherVersion = cacheDirectory.resolve(testCase.getName() + "-0123456789abcdef.json");
+    var otherTestCase = cacheDirectory.resolve(testCase.getName() + "-other-0123456789abcdef.json");
+    Files.writeString(otherVersion, "{}");
+    Files.writeString(otherTestCase, "{}");
+
+    new ReferenceDocumentCache(cacheDirectory).getReferenceJson(testCase.getName(),
+        testCase.getClass(), testCase::buildReferenceDocument);
+
+    var entry = cacheDirectory.resolve(testCase.getName() + "-"
+        + ReferenceDocumentCache.contentVersionOf(testCase.getClass()).orElseThrow() + ".json");
+    try (var entries = Files.list(cacheDirectory)) {
+      assertThat(entries).containsExactlyInAnyOrder(entry, otherTestCase);
+    }
+  }
+
+  @Test
+  public void buildReferenceDocumentEachTimeWithoutContentVersion()
+      throws InvalidSPDXAnalysisException, IOException {
+    var testCase = new GenerationMinimalTestCase();
+    var builds = new AtomicInteger();
+    ReferenceDocumentCache.ReferenceDocumentBuilder builder = () -> {
+      builds.incrementAndGet();
+      return testCase.buildReferenceDocument();
+    };
+    // Classes of the platform are neither loaded from a jar or a directory nor have a version
+    var unversionedClass = String.class;
+
+    new ReferenceDocumentCache(cacheDirectory)
+        .getReferenceJson(testCase.getName(), unversionedClass, builder);
+    new ReferenceDocumentCache(cacheDirectory)
+        .getReferenceJson(testCase.getName(), unversionedClass, builder);
+
+    assertThat(ReferenceDocumentCache.contentVersionOf(unversionedClass)).isEmpty();
+    assertThat(builds.get()).isEqualTo(2);
+    try (var entries = Files.list(cacheDirectory)) {
+      assertThat(entries.count()).isZero();
+    }
+  }
+}
@@ -0,0 +1,52 @@
+// SPDX-FileCopyrightText: TNG Technology Consulting GmbH
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.spdx.testbed.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.IOException;
+import org.junit.jupiter.api.Test;
+import org.spdx.testbed.util.json.JsonComparison;
+
+/**
+ * Tests for the normalization of documents that are compared without deserializing them.
+ */
+public class SpdxJsonNormalizerTest {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  @Test
+  public void listDescribedElementsInBothForms() throws IOException {
+    var withDocumentDescribes = parse("{\"SPDXID\": \"SPDXRef-DOCUMENT\","
+        + "\"documentDescribes\": [\"SPDXRef-1\", \"SPDXRef-2\"]}");
+    var withRelationships = parse("{\"SPDXID\": \"SPDXRef-DOCUMENT\", \"relationships\": ["
+        + "{\"spdxElementId\": \"SPDXRef-DOCUMENT\", \"relationshipType\": \"DESCRIBES\","
+        + "\"relatedSpdxElement\": \"SPDXRef-2\"},"
+        + "{\"spdxElementId\": \"SPDXRef-DOCUMENT\", \"relationshipType\": \"DESCRIBES\","
+        + "\"relatedSpdxElement\": \"SPDXRef-1\"}]}");
+
+    SpdxJsonNormalizer.normalize(withDocumentDescribes);
+    SpdxJsonNormalizer.normalize(withRelationships);
+
+    assertThat(JsonComparison.findDifferences(withDocumentDescribes, withRelationships))
+        .isEmpty();
+    assertThat(withRelationships.get("documentDescribes")).hasSize(2);
+  }
+
+  @Test
+  public void keepDocumentsWithoutDescribedElements() throws IOException {
+    var document = parse("{\"SPDXID\": \"SPDXRef-DOCUMENT\", \"name\": \"doc\"}");
+
+    SpdxJsonNormalizer.normalize(document);
+
+    assertThat(document).isEqualTo(parse("{\"SPDXID\": \"SPDXRef-DOCUMENT\", \"name\": \"doc\"}"));
+  }
+
+  private static ObjectNode parse(String json) throws IOException {
+    return (ObjectNode) MAPPER.readTree(json);
+  }
+}
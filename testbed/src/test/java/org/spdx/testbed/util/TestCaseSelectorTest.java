@@ -6,6 +6,7 @@ import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 import java.io.IOException;
+import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -89,8 +90,8 @@ public class TestCaseSelectorTest {
   private static class TestTestCase1 implements TestCase {
 
     @Override
-    public TestResult test(String inputFile) throws InvalidSPDXAnalysisException, IOException,
-        InvalidFileNameException {
+    public TestResult test(String inputFile, PrintStream out)
+        throws InvalidSPDXAnalysisException, IOException, InvalidFileNameException {
       throw new UnsupportedOperationException("Not implemented!");
     }
 
@@ -103,8 +104,8 @@ public class TestCaseSelectorTest {
   private static class TestTestCase2 implements TestCase {
 
     @Override
-    public TestResult test(String inputFile) throws InvalidSPDXAnalysisException, IOException,
-        InvalidFileNameException {
+    public TestResult test(String inputFile, PrintStream out)
+        throws InvalidSPDXAnalysisException, IOException, InvalidFileNameException {
       throw new UnsupportedOperationException("Not implemented!");
     }
 
@@ -117,8 +118,8 @@ public class TestCaseSelectorTest {
   private static class TestTestCase3 implements TestCase {
 
     @Override
-    public TestResult test(String inputFile) throws InvalidSPDXAnalysisException, IOException,
-        InvalidFileNameException {
+    public TestResult test(String inputFile, PrintStream out)
+        throws InvalidSPDXAnalysisException, IOException, InvalidFileNameException {
       throw new UnsupportedOperationException("Not implemented!");
     }
 
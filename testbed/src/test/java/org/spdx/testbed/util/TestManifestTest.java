@@ -0,0 +1,114 @@
+// SPDX-FileCopyrightText: TNG Technology Consulting GmbH
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.spdx.testbed.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.BufferedReader;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.file.Path;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.spdx.testbed.TestCase;
+import org.spdx.testbed.TestResult;
+import org.spdx.tools.SpdxToolsHelper;
+
+/**
+ * Tests for reading the entries of batch manifests.
+ */
+public class TestManifestTest {
+
+  private static final Path BASE_DIRECTORY = Path.of("/manifests");
+
+  private final TestCase minimal = new NamedTestCase("minimal");
+  private final TestCase files = new NamedTestCase("files");
+  private final Map<String, TestCase> testCases = Map.of("minimal", minimal, "files", files);
+
+  @Test
+  public void readNdjsonEntries() throws Exception {
+    var manifest = manifest(false, "{\"testCase\": \"minimal\", \"inputFile\": \"a.json\"}\n"
+        + "\n"
+        + "{\"testCase\": \"files\", \"inputFile\": \"/out/b.spdx\", \"format\": \"tag\"}\n");
+
+    var first = manifest.next();
+    assertThat(first.getTestCase()).isSameAs(minimal);
+    assertThat(first.getInputFile()).isEqualTo(BASE_DIRECTORY.resolve("a.json").toString());
+    assertThat(first.getFormat()).isNull();
+    var second = manifest.next();
+    assertThat(second.getTestCase()).isSameAs(files);
+    assertThat(second.getInputFile()).isEqualTo(Path.of("/out/b.spdx").toString());
+    assertThat(second.getFormat()).isEqualTo(SpdxToolsHelper.SerFileType.TAG);
+    assertThat(manifest.next()).isNull();
+  }
+
+  @Test
+  public void readCsvEntries() throws Exception {
+    var manifest = manifest(true, "test_case,input_file,format\n"
+        + "minimal, a.xml ,\n"
+        + "files,\"b,\"\"c\"\".json\",JSON\n");
+
+    var first = manifest.next();
+    assertThat(first.getTestCase()).isSameAs(minimal);
+    assertThat(first.getInputFile()).isEqualTo(BASE_DIRECTORY.resolve("a.xml").toString());
+    assertThat(first.getFormat()).isNull();
+    var second = manifest.next();
+    assertThat(second.getTestCase()).isSameAs(files);
+    assertThat(second.getInputFile())
+        .isEqualTo(BASE_DIRECTORY.resolve("b,\"c\".json").toString());
+    assertThat(second.getFormat()).isEqualTo(SpdxToolsHelper.SerFileType.JSON);
+    assertThat(manifest.next()).isNull();
+  }
+
+  @Test
+  public void failInvalidEntriesWhenRun() throws Exception {
+    var manifest = manifest(false, "{\"testCase\": \"unknown\", \"inputFile\": \"a.json\"}\n"
+        + "{\"testCase\": \"minimal\", \"inputFile\": \"a.json\", \"format\": \"pdf\"}\n"
+        + "{\"testCase\": \"minimal\"}\n"
+        + "not json\n");
+
+    var unknownTestCase = manifest.next();
+    assertThat(unknownTestCase.getTestCase().getName()).isEqualTo("unknown");
+    assertThatThrownBy(() -> unknownTestCase.getTestCase().prepare("a.json"))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("Unknown test case unknown");
+    var unknownFormat = manifest.next();
+    assertThatThrownBy(() -> unknownFormat.getTestCase().prepare("a.json"))
+        .hasMessageContaining("Unknown format pdf");
+    var missingInputFile = manifest.next();
+    assertThatThrownBy(() -> missingInputFile.getTestCase().prepare(""))
+        .hasMessageContaining("line 3 needs a test case and an input file");
+    var invalidJson = manifest.next();
+    assertThat(invalidJson.getTestCase().getName()).isEqualTo("line 4");
+    assertThatThrownBy(() -> invalidJson.getTestCase().prepare(""))
+        .hasMessageContaining("not valid json");
+    assertThat(manifest.next()).isNull();
+  }
+
+  private TestManifest manifest(boolean csv, String content) {
+    return new TestManifest(new BufferedReader(new StringReader(content)), csv, BASE_DIRECTORY,
+        testCases);
+  }
+
+  private static final class NamedTestCase implements TestCase {
+
+    private final String name;
+
+    NamedTestCase(String name) {
+      this.name = name;
+    }
+
+    @Override
+    public TestResult test(String inputFile, PrintStream out) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public String getName() {
+      return name;
+    }
+  }
+}
@@ -0,0 +1,96 @@
+// SPDX-FileCopyrightText: TNG Technology Consulting GmbH
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.spdx.testbed.util.json;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the rules that adjust the comparison of json documents.
+ */
+public class ComparisonRulesTest {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  @Test
+  public void selectNodesByPathPatterns() {
+    var rules = ComparisonRules.builder()
+        .skipCommonField("a/*/b")
+        .compareInOrder("**/list")
+        .build()
+        .root();
+
+    assertThat(rules.field("a").field("x").field("b").isCommonFieldSkipped()).isTrue();
+    assertThat(rules.field("a").element().field("b").isCommonFieldSkipped()).isTrue();
+    assertThat(rules.field("b").isCommonFieldSkipped()).isFalse();
+    assertThat(rules.field("a").field("x").field("y").field("b").isCommonFieldSkipped())
+        .isFalse();
+    assertThat(rules.field("list").isOrdered()).isTrue();
+    assertThat(rules.field("c").element().field("list").isOrdered()).isTrue();
+    assertThat(rules.field("list").element().isOrdered()).isFalse();
+  }
+
+  @Test
+  public void applyProvidedRulesInAllComparisons() throws IOException {
+    var actual = "{\"checksums\": [{\"algorithm\": \"SHA1\", \"checksumValue\": \"ABC\"}],"
+        + "\"steps\": [\"a\", \"b\", \"c\"], \"comment\": \"x\", \"note\": {\"a\": \"1\"}}";
+    var expected = parse("{\"checksums\": [{\"algorithm\": \"SHA1\", \"checksumValue\": \"abc\"}],"
+        + "\"steps\": [\"b\", \"a\"], \"comment\": \"y\", \"note\": {\"a\": \"2\"}}");
+    var rules = ComparisonRules.DEFAULT.toBuilder()
+        .normalize("checksums/*/checksumValue", String::toLowerCase)
+        .compareInOrder("steps")
+        .skipCommonField("comment")
+        .skipContent("note")
+        .build();
+
+    var collector = DifferenceCollector.unlimited();
+    JsonComparison.findDifferences(parse(actual), expected, rules, collector);
+
+    assertThat(collector.getDifferences()).containsExactly(
+        Difference.builder()
+            .actualValue(parse(actual).at("/steps/0"))
+            .expectedValue(expected.at("/steps/0"))
+            .path("/steps/0")
+            .pathInReferenceDoc("/steps/0")
+            .build(),
+        Difference.builder()
+            .actualValue(parse(actual).at("/steps/1"))
+            .expectedValue(expected.at("/steps/1"))
+            .path("/steps/1")
+            .pathInReferenceDoc("/steps/1")
+            .build(),
+        Difference.builder()
+            .actualValue(parse(actual).at("/steps/2"))
+            .path("/steps/2")
+            .pathInReferenceDoc("/steps")
+            .comment("No element at this position in expected list.")
+            .build());
+
+    var parallelCollector = DifferenceCollector.unlimited();
+    var pool = new ForkJoinPool(2);
+    try {
+      ParallelJsonComparison.findDifferences(parse(actual), expected, rules, pool,
+          parallelCollector);
+    } finally {
+      pool.shutdown();
+    }
+    var streamingCollector = DifferenceCollector.unlimited();
+    StreamingJsonComparison.findDifferences(MAPPER.createParser(actual), expected, rules,
+        streamingCollector);
+
+    assertThat(parallelCollector.getDifferences()).isEqualTo(collector.getDifferences());
+    assertThat(streamingCollector.getDifferences()).isEqualTo(collector.getDifferences());
+    assertThat(JsonComparison.findDifferences(parse(actual), expected)).hasSize(4);
+  }
+
+  private static ObjectNode parse(String json) throws IOException {
+    return (ObjectNode) MAPPER.readTree(json);
+  }
+}
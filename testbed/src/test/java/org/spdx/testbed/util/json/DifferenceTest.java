@@ -0,0 +1,47 @@
+// SPDX-FileCopyrightText: TNG Technology Consulting GmbH
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.spdx.testbed.util.json;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for differences and the values they hold.
+ */
+public class DifferenceTest {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  @Test
+  public void compareValuesByContent() throws IOException {
+    var json = "{\"fileName\": \"a.txt\", \"fileTypes\": [\"SOURCE\"]}";
+    var source = ByteBuffer.wrap(("[" + json + "]").getBytes(StandardCharsets.UTF_8));
+    var sourceDifference = Difference.builder()
+        .actualValue(DifferenceValue.ofSource(source, 1, 1 + json.length()))
+        .path("/files/0")
+        .pathInReferenceDoc("/files")
+        .build();
+    var nodeDifference = Difference.builder()
+        .actualValue(MAPPER.readTree(json))
+        .path("/files/0")
+        .pathInReferenceDoc("/files")
+        .build();
+    var otherDifference = Difference.builder()
+        .actualValue(MAPPER.readTree("{\"fileName\": \"b.txt\", \"fileTypes\": [\"SOURCE\"]}"))
+        .path("/files/0")
+        .pathInReferenceDoc("/files")
+        .build();
+
+    assertThat(sourceDifference.actualValue().node()).isNull();
+    assertThat(sourceDifference).isEqualTo(nodeDifference);
+    assertThat(sourceDifference.hashCode()).isEqualTo(nodeDifference.hashCode());
+    assertThat(sourceDifference).isNotEqualTo(otherDifference);
+  }
+}
@@ -0,0 +1,309 @@
+// SPDX-FileCopyrightText: TNG Technology Consulting GmbH
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.spdx.testbed.util.json;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the comparison of json documents.
+ */
+public class JsonComparisonTest {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  @Test
+  public void matchReorderedElementsAfterNormalization() throws JsonProcessingException {
+    var actual = parse("{\"files\": ["
+        + "{\"SPDXID\": \"SPDXRef-1\", \"fileName\": \" ./foo.txt\\r\\n\"},"
+        + "{\"SPDXID\": \"SPDXRef-2\", \"comment\": \"http://spdx.org/rdf/terms#none\"}]}");
+    var expected = parse("{\"files\": ["
+        + "{\"SPDXID\": \"SPDXRef-2\", \"comment\": \"NONE\", \"fileName\": \"NOASSERTION\"},"
+        + "{\"SPDXID\": \"SPDXRef-1\", \"fileName\": \"./foo.txt\\n\"}]}");
+
+    var differences = JsonComparison.findDifferences(actual, expected);
+
+    assertThat(differences).isEmpty();
+  }
+
+  @Test
+  public void fingerprintIgnoresSkippedFieldsAndOrder() throws JsonProcessingException {
+    var first = parse("{\"a\": [1, 2, 2], \"referenceType\": \"x\", \"b\": \"NOASSERTION\"}");
+    var second = parse("{\"referenceType\": \"y\", \"a\": [\"2\", \"1\"]}");
+    var different = parse("{\"a\": [1, 3]}");
+    var rules = ComparisonRules.DEFAULT.root();
+    var values = new NormalizedValues();
+
+    assertThat(JsonFingerprint.of(first, rules, values))
+        .isEqualTo(JsonFingerprint.of(second, rules, values));
+    assertThat(JsonFingerprint.of(first, rules, values))
+        .isNotEqualTo(JsonFingerprint.of(different, rules, values));
+  }
+
+  @Test
+  public void identifyCanonicalizedSubtreesWithSameContent() throws JsonProcessingException {
+    var actual = parse("{\"files\": [{\"SPDXID\": \"SPDXRef-1\", \"fileTypes\": [\"a\", \"b\"]},"
+        + "{\"SPDXID\": \"SPDXRef-2\", \"comment\": \"x\"}], \"name\": \"a\", \"x\": {}}");
+    var expected = parse("{\"files\": [{\"SPDXID\": \"SPDXRef-2\", \"comment\": \"y\"},"
+        + "{\"fileTypes\": [\"b \", \"a\", \"NOASSERTION\"], \"SPDXID\": \"SPDXRef-1\"}],"
+        + "\"name\": \"a\", \"x\": {\"y\": \"NOASSERTION\"}}");
+    var values = new NormalizedValues();
+    values.canonicalize(actual, ComparisonRules.DEFAULT.root());
+    values.canonicalize(expected, ComparisonRules.DEFAULT.root());
+
+    assertThat(values.haveSameContent(actual.at("/files/0"), expected.at("/files/1"))).isTrue();
+    assertThat(values.haveSameContent(actual.at("/files/1"), expected.at("/files/0"))).isFalse();
+    assertThat(values.haveSameContent(actual.at("/files"), expected.at("/files"))).isFalse();
+    assertThat(values.haveSameContent(actual.at("/x"), expected.at("/x"))).isFalse();
+    assertThat(values.haveSameContent(actual, expected.deepCopy())).isFalse();
+  }
+
+  @Test
+  public void normalizeValuesLikeTheRegexBasedNormalization() {
+    var samples = new String[]{"", " ", "a", " a\r\nb \r\n", "a\r\r\nb", "\r\na\rb\n\r",
+        "http://spdx.org/rdf/terms#none", " http://spdx.org/rdf/terms#none\r\n", "NONE"};
+
+    for (var sample : samples) {
+      var expected = sample.replaceAll("\r\n", "\n").trim();
+      expected = expected.equals("http://spdx.org/rdf/terms#none") ? "NONE" : expected;
+      assertThat(NormalizedValues.normalize(sample)).isEqualTo(expected);
+    }
+  }
+
+  @Test
+  public void reportAmbiguousSpdxIds() throws JsonProcessingException {
+    var actual = parse("{\"packages\": ["
+        + "{\"SPDXID\": \"SPDXRef-1\", \"name\": \"first\"},"
+        + "{\"SPDXID\": \"SPDXRef-1\", \"name\": \"first\"},"
+        + "{\"SPDXID\": \"SPDXRef-2\", \"name\": \"second\"},"
+        + "{\"SPDXID\": \"SPDXRef-2\", \"name\": \"third\"}]}");
+    var expected = parse("{\"packages\": ["
+        + "{\"SPDXID\": \"SPDXRef-1\", \"name\": \"first\"},"
+        + "{\"SPDXID\": \"SPDXRef-2\", \"name\": \"other\"},"
+        + "{\"SPDXID\": \"SPDXRef-2\", \"name\": \"another\"}]}");
+
+    var differences = JsonComparison.findDifferences(actual, expected);
+
+    assertThat(differences).hasSize(4);
+    assertThat(differences.get(0).getComment())
+        .isEqualTo("Multiple items in expected list with the same Spdx id.");
+    assertThat(differences.get(0).getPath()).isEqualTo("/packages/2");
+    assertThat(differences.get(1).getPath()).isEqualTo("/packages/3");
+    assertThat(differences.get(2).getComment())
+        .isEqualTo("Multiple items in actual list with the same Spdx id.");
+    assertThat(differences.get(2).getExpectedValue()).isEqualTo(expected.at("/packages/1"));
+    assertThat(differences.get(3).getExpectedValue()).isEqualTo(expected.at("/packages/2"));
+  }
+
+  @Test
+  public void reportUnmatchedDuplicatesAtTheirOwnPosition() throws JsonProcessingException {
+    var actual = parse("{\"fileTypes\": [\"SOURCE\"]}");
+    var expected = parse("{\"fileTypes\": [\"SOURCE\", \"NOASSERTION\", \"SOURCE\"]}");
+
+    var differences = JsonComparison.findDifferences(actual, expected);
+
+    assertThat(differences).containsExactly(Difference.builder()
+        .expectedValue(expected.at("/fileTypes/2"))
+        .path("/fileTypes")
+        .pathInReferenceDoc("/fileTypes/2")
+        .comment("No element in actual list with a matching Spdx id or no Spdx id present.")
+        .build());
+  }
+
+  @Test
+  public void matchAllRemainingExpectedElementsById() throws JsonProcessingException {
+    var actual = parse("{\"packages\": ["
+        + "{\"SPDXID\": \"SPDXRef-1\", \"name\": \"first\"},"
+        + "{\"SPDXID\": \"SPDXRef-2\", \"name\": \"second\"},"
+        + "{\"SPDXID\": \"SPDXRef-3\", \"name\": \"third\"}]}");
+    var expected = parse("{\"packages\": ["
+        + "{\"SPDXID\": \"SPDXRef-1\", \"name\": \"1\"},"
+        + "{\"SPDXID\": \"SPDXRef-1\", \"name\": \"2\"},"
+        + "{\"SPDXID\": \"SPDXRef-2\", \"name\": \"3\"},"
+        + "{\"SPDXID\": \"SPDXRef-3\", \"name\": \"4\"}]}");
+
+    var differences = JsonComparison.findDifferences(actual, expected);
+
+    // The first actual element is ambiguous, all other elements are matched by id
+    assertThat(differences).hasSize(5);
+    assertThat(differences.get(1).getPath()).isEqualTo("/packages/1/name");
+    assertThat(differences.get(2).getPath()).isEqualTo("/packages/2/name");
+    assertThat(differences.get(3).getPath()).isEqualTo("/packages/0/name");
+    assertThat(differences.get(4).getExpectedValue()).isEqualTo(expected.at("/packages/1"));
+  }
+
+  @Test
+  public void matchElementsWithoutSpdxIdByNaturalKey() throws JsonProcessingException {
+    var actual = parse("{\"checksums\": ["
+        + "{\"algorithm\": \"SHA1\", \"checksumValue\": \"a\"},"
+        + "{\"algorithm\": \"MD5\", \"checksumValue\": \"b\"},"
+        + "{\"algorithm\": \"SHA256\", \"checksumValue\": \"c\"}]}");
+    var expected = parse("{\"checksums\": ["
+        + "{\"algorithm\": \"MD5\", \"checksumValue\": \"b\"},"
+        + "{\"algorithm\": \"SHA1\", \"checksumValue\": \"x\"}]}");
+
+    var differences = JsonComparison.findDifferences(actual, expected);
+
+    assertThat(differences).containsExactly(
+        Difference.builder()
+            .actualValue(actual.at("/checksums/0/checksumValue"))
+            .expectedValue(expected.at("/checksums/1/checksumValue"))
+            .path("/checksums/0/checksumValue")
+            .pathInReferenceDoc("/checksums/1/checksumValue")
+            .build(),
+        Difference.builder()
+            .actualValue(actual.at("/checksums/2"))
+            .path("/checksums/2")
+            .pathInReferenceDoc("/checksums")
+            .comment("No element in expected list with the same algorithm.")
+            .build());
+  }
+
+  @Test
+  public void pairElementsWithoutKeyBySimilarity() throws JsonProcessingException {
+    var actual = parse("{\"ranges\": ["
+        + "{\"startPointer\": {\"offset\": 1, \"reference\": \"SPDXRef-1\"},"
+        + "\"endPointer\": {\"offset\": 9, \"reference\": \"SPDXRef-1\"}},"
+        + "{\"startPointer\": {\"offset\": 20, \"reference\": \"SPDXRef-2\"},"
+        + "\"endPointer\": {\"offset\": 30, \"reference\": \"SPDXRef-2\"}},"
+        + "{\"startPointer\": {\"offset\": 5, \"reference\": \"SPDXRef-3\"}}]}");
+    var expected = parse("{\"ranges\": ["
+        + "{\"startPointer\": {\"offset\": 20, \"reference\": \"SPDXRef-2\"},"
+        + "\"endPointer\": {\"offset\": 31, \"reference\": \"SPDXRef-2\"}},"
+        + "{\"startPointer\": {\"offset\": 1, \"reference\": \"SPDXRef-1\"},"
+        + "\"endPointer\": {\"offset\": 8, \"reference\": \"SPDXRef-1\"}},"
+        + "{\"startPointer\": {\"offset\": 7, \"reference\": \"SPDXRef-4\"}}]}");
+
+    var differences = JsonComparison.findDifferences(actual, expected);
+
+    assertThat(differences).extracting(Difference::getPath).containsExactly(
+        "/ranges/0/endPointer/offset", "/ranges/1/endPointer/offset", "/ranges/2", "/ranges");
+    assertThat(((ListDifference) differences.get(0)).getPathInReferenceDoc())
+        .isEqualTo("/ranges/1/endPointer/offset");
+    assertThat(differences.get(3).getExpectedValue()).isEqualTo(expected.at("/ranges/2"));
+  }
+
+  @Test
+  public void pairElementsOfLargeListsWithoutKeyBySimilarity() throws JsonProcessingException {
+    var actualJson = new StringBuilder("{\"ranges\": [");
+    var expectedJson = new StringBuilder("{\"ranges\": [");
+    for (var i = 0; i < 500; i++) {
+      actualJson.append(i == 0 ? "" : ",").append(range(i, i, i + 1));
+      // Every second element has a different end, and the expected list is reversed
+      expectedJson.append(i == 0 ? "" : ",").append(range(499 - i, 499 - i,
+          (499 - i) % 2 == 0 ? 1000 : 500 - i));
+    }
+    var actual = parse(actualJson.append("]}").toString());
+    var expected = parse(expectedJson.append("]}").toString());
+
+    var differences = JsonComparison.findDifferences(actual, expected);
+
+    assertThat(differences).hasSize(250);
+    assertThat(differences.get(1).getPath()).isEqualTo("/ranges/2/endPointer/offset");
+    assertThat(((ListDifference) differences.get(1)).getPathInReferenceDoc())
+        .isEqualTo("/ranges/497/endPointer/offset");
+  }
+
+  @Test
+  public void equivalenceCheckAgreesWithDetectedDifferences() throws JsonProcessingException {
+    var actual = parse("{\"name\": \" a\\r\\nb \", \"comment\": \"NOASSERTION\","
+        + "\"externalRefs\": [{\"referenceType\": \"purl\", \"referenceLocator\": \"x\"}],"
+        + "\"hasFiles\": [\"SPDXRef-1\"], \"licenseComments\": \"NONE\"}");
+    var equivalent = parse("{\"name\": \"a\\nb\", \"hasFiles\": [\"SPDXRef-2\"],"
+        + "\"externalRefs\": [{\"referenceType\": \"cpe\", \"referenceLocator\": \"x\"}],"
+        + "\"licenseComments\": \"http://spdx.org/rdf/terms#none\"}");
+    var different = parse("{\"name\": \"a\\nb\", \"hasFiles\": [\"SPDXRef-2\"],"
+        + "\"externalRefs\": [{\"referenceType\": \"cpe\", \"referenceLocator\": \"x\"},"
+        + "{\"referenceType\": \"cpe\", \"referenceLocator\": \"y\"}]}");
+
+    assertThat(JsonComparison.isEquivalent(actual, equivalent)).isTrue();
+    assertThat(JsonComparison.findDifferences(actual, equivalent)).isEmpty();
+    assertThat(JsonComparison.isEquivalent(actual, different)).isFalse();
+    assertThat(JsonComparison.findDifferences(actual, different)).hasSize(2);
+  }
+
+  @Test
+  public void renderPathsRelativeToProvidedPrefixes() throws JsonProcessingException {
+    var actual = parse("{\"packages\": [{\"SPDXID\": \"SPDXRef-1\", \"checksums\": [],"
+        + "\"name\": \"first\"}]}");
+    var expected = parse("{\"packages\": [{\"name\": \"x\"}, {\"SPDXID\": \"SPDXRef-1\","
+        + "\"name\": \"second\"}]}");
+
+    var differences = JsonComparison.findDifferences(actual, expected, "/prefix", "/reference");
+
+    assertThat(differences).containsExactly(
+        Difference.builder()
+            .actualValue(actual.at("/packages/0/name"))
+            .expectedValue(expected.at("/packages/1/name"))
+            .path("/prefix/packages/0/name")
+            .pathInReferenceDoc("/reference/packages/1/name")
+            .build(),
+        Difference.builder()
+            .expectedValue(expected.at("/packages/0"))
+            .path("/prefix/packages")
+            .pathInReferenceDoc("/reference/packages/0")
+            .comment("No element in actual list with a matching Spdx id or no Spdx id present.")
+            .build());
+  }
+
+  @Test
+  public void countDifferencesBeyondBudgetAndTruncateLargeValues()
+      throws JsonProcessingException {
+    var actual = parse("{\"name\": \"a\", \"comment\": \"b\", \"packages\": ["
+        + "{\"name\": \"first\", \"description\": \"" + "x".repeat(100) + "\"}]}");
+    var expected = parse("{\"name\": \"c\", \"comment\": \"d\", \"packages\": ["
+        + "{\"name\": \"second\"}]}");
+    var collector = new DifferenceCollector(2, 20);
+
+    JsonComparison.findDifferences(actual, expected, collector);
+
+    assertThat(collector.getDifferences()).hasSize(2);
+    assertThat(collector.getElidedDifferenceCount()).isEqualTo(2);
+    assertThat(collector.getDifferenceCount())
+        .isEqualTo(JsonComparison.findDifferences(actual, expected).size());
+
+    collector = new DifferenceCollector(10, 20);
+    JsonComparison.findDifferences(actual, expected, collector);
+
+    assertThat(collector.getDifferences().get(2).getActualValue().asText())
+        .isEqualTo("{\"name\":\"first\",\"des... (truncated)");
+    assertThat(collector.getDifferences().get(3).getExpectedValue())
+        .isEqualTo(expected.at("/packages/0"));
+  }
+
+  @Test
+  public void detectSameDifferencesForObjectsAndListsAsForNodes() throws JsonProcessingException {
+    var actual = parse("{\"files\": [{\"SPDXID\": \"SPDXRef-1\", \"fileTypes\": [\"a\", \"b\"]},"
+        + "{\"SPDXID\": \"SPDXRef-2\", \"comment\": \"x\"}], \"name\": \"a\"}");
+    var expected = parse("{\"files\": [{\"SPDXID\": \"SPDXRef-2\", \"comment\": \"y\"},"
+        + "{\"fileTypes\": [\"b \", \"a\"], \"SPDXID\": \"SPDXRef-1\"}], \"name\": \"b\"}");
+
+    assertThat(JsonComparison.findDifferences(actual, expected, "/doc", "/reference"))
+        .isEqualTo(JsonComparison.findDifferences((JsonNode) actual, expected, "/doc",
+            "/reference"))
+        .hasSize(2);
+    assertThat(JsonComparison.findDifferences((ArrayNode) actual.get("files"),
+        (ArrayNode) expected.get("files"), "/doc/files", "/reference/files"))
+        .isEqualTo(JsonComparison.findDifferences(actual.get("files"), expected.get("files"),
+            "/doc/files", "/reference/files"))
+        .hasSize(1);
+  }
+
+  private static String range(int file, int start, int end) {
+    return String.format("{\"startPointer\": {\"offset\": %d, \"reference\": \"SPDXRef-%d\"},"
+        + "\"endPointer\": {\"offset\": %d, \"reference\": \"SPDXRef-%d\"}}", start, file,
+        end, file);
+  }
+
+  private static ObjectNode parse(String json) throws JsonProcessingException {
+    return (ObjectNode) MAPPER.readTree(json);
+  }
+}
@@ -0,0 +1,130 @@
+// SPDX-FileCopyrightText: TNG Technology Consulting GmbH
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.spdx.testbed.util.json;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for passing differences on to sinks while the comparison is running.
+ */
+public class NdjsonDifferenceSinkTest {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  @Test
+  public void writeOneDifferencePerLine() throws IOException {
+    var actual = parse("{\"name\": \"a\", \"files\": [{\"SPDXID\": \"SPDXRef-1\","
+        + "\"comment\": \"first\\nsecond\"}]}");
+    var expected = parse("{\"name\": \"b\", \"files\": [{\"SPDXID\": \"SPDXRef-1\"}]}");
+    var output = new StringWriter();
+
+    try (var sink = new NdjsonDifferenceSink(output)) {
+      JsonComparison.findDifferences(actual, expected,
+          new DifferenceCollector(Integer.MAX_VALUE, Integer.MAX_VALUE, sink));
+    }
+
+    var lines = output.toString().split("\n");
+    assertThat(lines).hasSize(2);
+    assertThat(MAPPER.readTree(lines[0])).isEqualTo(
+        parse("{\"actualValue\": \"a\", \"expectedValue\": \"b\", \"path\": \"/name\"}"));
+    assertThat(MAPPER.readTree(lines[1])).isEqualTo(parse("{\"actualValue\": \"first\\nsecond\","
+        + "\"expectedValue\": null, \"path\": \"/files/0/comment\","
+        + "\"pathInReferenceDoc\": \"/files/0/comment\"}"));
+  }
+
+  @Test
+  public void passOnlyDifferencesWithinBudgetToSink() throws IOException {
+    var actual = parse("{\"name\": \"a\", \"comment\": \"b\", \"version\": \"c\"}");
+    var expected = parse("{\"name\": \"x\", \"comment\": \"y\", \"version\": \"z\"}");
+    var sink = new CountingDifferenceSink();
+    var collector = new DifferenceCollector(2, Integer.MAX_VALUE, sink);
+
+    JsonComparison.findDifferences(actual, expected, collector);
+
+    assertThat(sink.getCount()).isEqualTo(2);
+    assertThat(collector.getDifferences()).isEmpty();
+    assertThat(collector.getElidedDifferenceCount()).isEqualTo(1);
+    assertThat(collector.getDifferenceCount()).isEqualTo(3);
+  }
+
+  @Test
+  public void passDifferencesOfParallelComparisonToSinkWithinGlobalBudget() {
+    var actual = buildDocument("actual", 200);
+    var expected = buildDocument("expected", 200);
+    var sink = new CountingDifferenceSink();
+    var collector = new DifferenceCollector(50, Integer.MAX_VALUE, sink);
+    var sequentialCollector = new DifferenceCollector(50, Integer.MAX_VALUE);
+
+    var pool = new ForkJoinPool(4);
+    try {
+      ParallelJsonComparison.findDifferences(actual, expected, ComparisonRules.DEFAULT, pool,
+          collector);
+    } finally {
+      pool.shutdown();
+    }
+    JsonComparison.findDifferences(actual, expected, sequentialCollector);
+
+    assertThat(sink.getCount()).isEqualTo(50);
+    assertThat(collector.getDifferences()).isEmpty();
+    assertThat(collector.getElidedDifferenceCount())
+        .isEqualTo(sequentialCollector.getElidedDifferenceCount())
+        .isEqualTo(151);
+  }
+
+  @Test
+  public void passDifferencesOfParallelComparisonToSinkWhileComparing() {
+    var actual = buildDocument("actual", 200);
+    var expected = buildDocument("expected", 200);
+    var sink = new CountingDifferenceSink();
+    // Records how many differences the sink has received whenever a file name is compared
+    List<Long> receivedCounts = new ArrayList<>();
+    var rules = ComparisonRules.DEFAULT.toBuilder()
+        .normalize("files/*/fileName", value -> {
+          synchronized (receivedCounts) {
+            receivedCounts.add(sink.getCount());
+          }
+          return value;
+        })
+        .build();
+
+    var pool = new ForkJoinPool(4);
+    try {
+      ParallelJsonComparison.findDifferences(actual, expected, rules, pool,
+          new DifferenceCollector(Integer.MAX_VALUE, Integer.MAX_VALUE, sink));
+    } finally {
+      pool.shutdown();
+    }
+
+    // The difference in the name reaches the sink before any file is compared
+    assertThat(receivedCounts).isNotEmpty().allMatch(count -> count >= 1);
+    assertThat(sink.getCount()).isEqualTo(201);
+  }
+
+  // The documents differ in their name and in the name of each file
+  private static ObjectNode buildDocument(String name, int fileCount) {
+    var document = MAPPER.createObjectNode();
+    document.put("name", name);
+    var files = document.putArray("files");
+    for (var i = 0; i < fileCount; i++) {
+      files.addObject()
+          .put("SPDXID", "SPDXRef-file-" + i)
+          .put("fileName", "./" + name + i + ".txt");
+    }
+    return document;
+  }
+
+  private static ObjectNode parse(String json) throws IOException {
+    return (ObjectNode) MAPPER.readTree(json);
+  }
+}
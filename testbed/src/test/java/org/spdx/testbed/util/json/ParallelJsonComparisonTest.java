@@ -0,0 +1,107 @@
+// SPDX-FileCopyrightText: TNG Technology Consulting GmbH
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.spdx.testbed.util.json;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the parallel comparison of json documents.
+ */
+public class ParallelJsonComparisonTest {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  @Test
+  public void detectSameDifferencesInSameOrderAsSequentialComparison() {
+    var actual = buildDocument(500);
+    var expected = buildDocument(500);
+    expected.put("name", "other name");
+    expected.withArray("packages").remove(42);
+    ((ObjectNode) expected.withArray("files").get(7)).put("fileName", "./renamed.txt");
+    ((ObjectNode) actual.withArray("files").get(300)).remove("SPDXID");
+    ((ObjectNode) actual.withArray("relationships").get(99))
+        .put("relationshipType", "DEPENDS_ON");
+
+    var pool = new ForkJoinPool(4);
+    try {
+      var differences = ParallelJsonComparison.findDifferences(actual, expected, pool);
+
+      assertThat(differences).hasSize(7);
+      assertThat(differences).isEqualTo(JsonComparison.findDifferences(actual, expected));
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void countSameDifferencesWithinBudgetAsSequentialComparison() {
+    var actual = buildDocument(500);
+    var expected = buildDocument(400);
+    var collector = new DifferenceCollector(50, 1000);
+    var sequentialCollector = new DifferenceCollector(50, 1000);
+
+    var pool = new ForkJoinPool(4);
+    try {
+      ParallelJsonComparison.findDifferences(actual, expected, pool, collector);
+      JsonComparison.findDifferences(actual, expected, sequentialCollector);
+
+      assertThat(collector.getDifferences()).hasSize(50).doesNotHaveDuplicates();
+      assertThat(JsonComparison.findDifferences(actual, expected))
+          .containsAll(collector.getDifferences());
+      assertThat(collector.getElidedDifferenceCount()).isEqualTo(250);
+      assertThat(sequentialCollector.getElidedDifferenceCount()).isEqualTo(250);
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void shareBudgetAcrossConcurrentlyFilledBuffers() {
+    var collector = new DifferenceCollector(10, 1000);
+    var budget = collector.createSharedBudget();
+    var first = collector.createBuffer(budget);
+    var second = collector.createBuffer(budget);
+
+    for (var i = 0; i < 8; i++) {
+      first.add(Difference.builder().path("/first/" + i).build());
+      second.add(Difference.builder().path("/second/" + i).build());
+    }
+    collector.addAll(second);
+    collector.addAll(first);
+
+    assertThat(first.getDifferences().size() + second.getDifferences().size()).isEqualTo(10);
+    assertThat(collector.getDifferences()).hasSize(10);
+    assertThat(collector.getDifferenceCount()).isEqualTo(16);
+  }
+
+  private static ObjectNode buildDocument(int elementCount) {
+    var document = MAPPER.createObjectNode();
+    document.put("name", "document name");
+    var packages = document.putArray("packages");
+    var files = document.putArray("files");
+    var relationships = document.putArray("relationships");
+    for (var i = 0; i < elementCount; i++) {
+      packages.addObject()
+          .put("SPDXID", "SPDXRef-package-" + i)
+          .put("name", "package " + i);
+      var file = files.addObject()
+          .put("SPDXID", "SPDXRef-file-" + i)
+          .put("fileName", "./file" + i + ".txt");
+      file.putArray("checksums").addObject()
+          .put("algorithm", "SHA1")
+          .put("checksumValue", Integer.toHexString(i));
+      relationships.addObject()
+          .put("spdxElementId", "SPDXRef-package-" + i)
+          .put("relationshipType", "CONTAINS")
+          .put("relatedSpdxElement", "SPDXRef-file-" + i);
+    }
+    return document;
+  }
+}
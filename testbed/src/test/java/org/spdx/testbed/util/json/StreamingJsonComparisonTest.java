@@ -0,0 +1,176 @@
+// SPDX-FileCopyrightText: TNG Technology Consulting GmbH
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.spdx.testbed.util.json;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the comparison of json documents read from a token stream.
+ */
+public class StreamingJsonComparisonTest {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  @Test
+  public void detectSameDifferencesAsTreeComparison() throws IOException {
+    var actual = "{\"name\": \"doc\", \"comment\": \"new\", \"annotations\": [],"
+        + "\"packages\": [{\"SPDXID\": \"SPDXRef-2\", \"name\": \"b\"},"
+        + "{\"SPDXID\": \"SPDXRef-1\", \"name\": \"a\", \"referenceType\": \"x\"},"
+        + "{\"SPDXID\": \"SPDXRef-3\", \"checksums\": [{\"algorithm\": \"SHA1\"}]}]}";
+    var expected = parse("{\"packages\": [{\"SPDXID\": \"SPDXRef-1\", \"name\": \"a\"},"
+        + "{\"SPDXID\": \"SPDXRef-2\", \"name\": \"c\"}, {\"SPDXID\": \"SPDXRef-4\"}],"
+        + "\"name\": \" doc\\r\\n\", \"annotations\": [{\"comment\": \"annotation\"}]}");
+
+    var differences = StreamingJsonComparison.findDifferences(MAPPER.createParser(actual),
+        expected);
+
+    assertThat(differences).hasSize(6);
+    assertThat(differences)
+        .isEqualTo(JsonComparison.findDifferences(parse(actual), expected));
+  }
+
+  @Test
+  public void skipMatchingElements() throws IOException {
+    var actual = "{\"files\": [{\"SPDXID\": \"SPDXRef-1\", \"fileTypes\": [\"SOURCE\"]},"
+        + "{\"SPDXID\": \"SPDXRef-2\", \"hasFiles\": [\"SPDXRef-3\"]}]}";
+    var expected = parse("{\"files\": [{\"SPDXID\": \"SPDXRef-2\", \"hasFiles\": [\"SPDXRef-4\"]},"
+        + "{\"SPDXID\": \"SPDXRef-1\", \"fileTypes\": [\"SOURCE\", \"NOASSERTION\"]}]}");
+
+    var differences = StreamingJsonComparison.findDifferences(MAPPER.createParser(actual),
+        expected);
+
+    assertThat(differences).isEmpty();
+  }
+
+  @Test
+  public void referenceValuesInSourceBuffer() throws IOException {
+    var actual = "{\"comment\": {\"text\": \"\u00e4\", \"lines\": [1, 2]}, \"files\": ["
+        + "{\"SPDXID\": \"SPDXRef-1\"}, \"NOASSERTION\", [], {\"fileName\": \"a.txt\"}],"
+        + "\"steps\": [\"a\", {\"b\": \"c\"}]}";
+    var expected = parse("{\"files\": [{\"SPDXID\": \"SPDXRef-2\"}], \"steps\": [\"a\"]}");
+    var rules = ComparisonRules.DEFAULT.toBuilder().compareInOrder("steps").build();
+    var source = ByteBuffer.wrap(("  " + actual).getBytes(StandardCharsets.UTF_8));
+    source.position(2);
+
+    var collector = DifferenceCollector.unlimited();
+    StreamingJsonComparison.findDifferences(source, expected, rules, collector);
+    var truncatingCollector = new DifferenceCollector(Integer.MAX_VALUE, 10);
+    StreamingJsonComparison.findDifferences(source, expected, rules, truncatingCollector);
+
+    var treeCollector = DifferenceCollector.unlimited();
+    JsonComparison.findDifferences(parse(actual), expected, rules, treeCollector);
+    var truncatingTreeCollector = new DifferenceCollector(Integer.MAX_VALUE, 10);
+    JsonComparison.findDifferences(parse(actual), expected, rules, truncatingTreeCollector);
+    assertThat(collector.getDifferences()).hasSize(5);
+    assertThat(collector.getDifferences()).isEqualTo(treeCollector.getDifferences());
+    assertThat(truncatingCollector.getDifferences())
+        .isEqualTo(truncatingTreeCollector.getDifferences());
+    assertThat(collector.getDifferences().get(0).actualValue().node()).isNull();
+  }
+
+  @Test
+  public void normalizeTopLevelFieldsWhileReading() throws IOException {
+    var actual = "{\"name\": \"doc\", \"files\": [{\"SPDXID\": \"SPDXRef-1\"}],"
+        + "\"annotations\": [], \"packages\": [{\"SPDXID\": \"SPDXRef-1\", \"name\": \"a\"},"
+        + "{\"SPDXID\": \"SPDXRef-2\", \"name\": \"b\"}], \"steps\": \"none\"}";
+    var expected = parse("{\"name\": \"doc\", \"steps\": [\"a\"], \"packages\": ["
+        + "{\"SPDXID\": \"SPDXRef-1\", \"name\": \"A\"},"
+        + "{\"SPDXID\": \"SPDXRef-3\", \"name\": \"C\"}],"
+        + "\"relationships\": [{\"relatedSpdxElement\": \"SPDXRef-1\"}]}");
+    var normalization = new TestNormalization(Map.of(
+        "packages", List.of(parse("{\"SPDXID\": \"SPDXRef-3\", \"name\": \"C\"}")),
+        "relationships", List.of(parse("{\"relatedSpdxElement\": \"SPDXRef-1\"}"),
+            parse("{\"relatedSpdxElement\": \"SPDXRef-2\"}")),
+        "steps", List.of(TextNode.valueOf("a"))));
+
+    var collector = DifferenceCollector.unlimited();
+    StreamingJsonComparison.findDifferences(MAPPER.createParser(actual), expected.deepCopy(),
+        ComparisonRules.DEFAULT, normalization, collector);
+
+    var normalizedActual = normalization.normalizeTree(parse(actual));
+    var treeDifferences = JsonComparison.findDifferences(normalizedActual, expected);
+    assertThat(treeDifferences).hasSize(3);
+    assertThat(collector.getDifferences())
+        .containsExactlyInAnyOrderElementsOf(treeDifferences);
+  }
+
+  private static ObjectNode parse(String json) throws IOException {
+    return (ObjectNode) MAPPER.readTree(json);
+  }
+
+  /**
+   * Upper-cases the names of packages, and skips files and annotations.
+   */
+  private static final class TestNormalization implements StreamNormalization {
+
+    private final Map<String, List<JsonNode>> additionalElements;
+
+    TestNormalization(Map<String, List<JsonNode>> additionalElements) {
+      this.additionalElements = additionalElements;
+    }
+
+    @Override
+    public JsonNode normalizeElement(String fieldName, JsonNode element) {
+      var name = element.path("name").asText();
+      if (!fieldName.equals("packages") || name.equals(name.toUpperCase(Locale.ROOT))) {
+        return element;
+      }
+      return ((ObjectNode) element.deepCopy()).put("name", name.toUpperCase(Locale.ROOT));
+    }
+
+    @Override
+    public Map<String, List<JsonNode>> getAdditionalElements() {
+      return additionalElements;
+    }
+
+    @Override
+    public JsonNode getSkippedValue(String fieldName) {
+      return fieldName.equals("files") || fieldName.equals("annotations")
+          ? TextNode.valueOf("skipped") : null;
+    }
+
+    // Applies the normalization to the tree of a document, for comparison
+    ObjectNode normalizeTree(ObjectNode document) {
+      var fieldNames = new ArrayList<String>();
+      document.fieldNames().forEachRemaining(fieldNames::add);
+      for (var fieldName : fieldNames) {
+        var value = document.get(fieldName);
+        if (getSkippedValue(fieldName) != null && value.isContainerNode()) {
+          if (value.isEmpty()) {
+            document.remove(fieldName);
+          } else {
+            document.set(fieldName, getSkippedValue(fieldName));
+          }
+        } else if (value.isArray()) {
+          var elements = (ArrayNode) value;
+          for (var i = 0; i < elements.size(); i++) {
+            elements.set(i, normalizeElement(fieldName, elements.get(i)));
+          }
+        }
+      }
+      additionalElements.forEach((fieldName, elements) -> {
+        var value = document.get(fieldName);
+        var list = value != null && value.isArray() ? (ArrayNode) value
+            : document.putArray(fieldName);
+        list.addAll(elements);
+      });
+      return document;
+    }
+  }
+}
@@ -0,0 +1,120 @@
+// SPDX-FileCopyrightText: TNG Technology Consulting GmbH
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.spdx.testbed.util.store;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.spdx.library.InvalidSPDXAnalysisException;
+import org.spdx.library.SpdxConstants;
+import org.spdx.library.model.IndividualUriValue;
+import org.spdx.library.model.SimpleUriValue;
+import org.spdx.library.model.TypedValue;
+
+/**
+ * Tests for the model store that holds input documents in a compact form.
+ */
+public class CompactModelStoreTest {
+
+  private static final String DOCUMENT_URI = "https://some.namespace";
+
+  @Test
+  public void readStoredValues() throws InvalidSPDXAnalysisException {
+    var store = new CompactModelStore();
+    store.create(DOCUMENT_URI, "SPDXRef-1", SpdxConstants.CLASS_SPDX_FILE);
+    store.create(DOCUMENT_URI, "SPDXRef-2", SpdxConstants.CLASS_SPDX_CHECKSUM);
+
+    store.setValue(DOCUMENT_URI, "SPDXRef-1", "fileName", "./some/file.txt");
+    store.setValue(DOCUMENT_URI, "SPDXRef-1", "flag", true);
+    store.setValue(DOCUMENT_URI, "SPDXRef-1", "offset", -42);
+    store.setValue(DOCUMENT_URI, "SPDXRef-1", "checksum",
+        new TypedValue("SPDXRef-2", SpdxConstants.CLASS_SPDX_CHECKSUM));
+    store.setValue(DOCUMENT_URI, "SPDXRef-1", "license",
+        new SimpleUriValue(SpdxConstants.URI_VALUE_NOASSERTION));
+    store.setValue(DOCUMENT_URI, "SPDXRef-1", "fileName", "./other/f\u00e4le.txt");
+
+    assertThat(store.getValue(DOCUMENT_URI, "SPDXRef-1", "fileName").get())
+        .isEqualTo("./other/f\u00e4le.txt");
+    assertThat(store.getValue(DOCUMENT_URI, "SPDXRef-1", "flag").get()).isEqualTo(true);
+    assertThat(store.getValue(DOCUMENT_URI, "SPDXRef-1", "offset").get()).isEqualTo(-42);
+    var checksum = (TypedValue) store.getValue(DOCUMENT_URI, "SPDXRef-1", "checksum").get();
+    assertThat(checksum.getId()).isEqualTo("SPDXRef-2");
+    assertThat(checksum.getType()).isEqualTo(SpdxConstants.CLASS_SPDX_CHECKSUM);
+    var license = (IndividualUriValue) store.getValue(DOCUMENT_URI, "SPDXRef-1", "license").get();
+    assertThat(license.getIndividualURI()).isEqualTo(SpdxConstants.URI_VALUE_NOASSERTION);
+    assertThat(store.getValue(DOCUMENT_URI, "SPDXRef-1", "comment")).isEmpty();
+    assertThat(store.getPropertyValueNames(DOCUMENT_URI, "SPDXRef-1"))
+        .containsExactly("fileName", "flag", "offset", "checksum", "license");
+  }
+
+  @Test
+  public void treatIdsCaseInsensitively() throws InvalidSPDXAnalysisException {
+    var store = new CompactModelStore();
+    store.create(DOCUMENT_URI, "SPDXRef-File", SpdxConstants.CLASS_SPDX_FILE);
+    store.setValue(DOCUMENT_URI, "spdxref-file", "fileName", "./file.txt");
+
+    assertThat(store.exists(DOCUMENT_URI, "SPDXREF-FILE")).isTrue();
+    assertThat(store.getCaseSensisitiveId(DOCUMENT_URI, "spdxref-file").get())
+        .isEqualTo("SPDXRef-File");
+    assertThat(store.getValue(DOCUMENT_URI, "SPDXRef-File", "fileName").get())
+        .isEqualTo("./file.txt");
+    assertThat(store.exists("https://other.namespace", "SPDXRef-File")).isFalse();
+  }
+
+  @Test
+  public void keepCollectionsFreeOfDuplicates() throws InvalidSPDXAnalysisException {
+    var store = new CompactModelStore();
+    store.create(DOCUMENT_URI, "SPDXRef-1", SpdxConstants.CLASS_SPDX_FILE);
+    var contributors = new ArrayList<Object>();
+    for (var i = 0; i < 100; i++) {
+      assertThat(store.addValueToCollection(DOCUMENT_URI, "SPDXRef-1", "contributors",
+          "contributor " + i)).isTrue();
+      contributors.add("contributor " + i);
+    }
+
+    assertThat(store.addValueToCollection(DOCUMENT_URI, "SPDXRef-1", "contributors",
+        "contributor 50")).isFalse();
+    assertThat(store.removeValueFromCollection(DOCUMENT_URI, "SPDXRef-1", "contributors",
+        "contributor 50")).isTrue();
+    assertThat(store.collectionContains(DOCUMENT_URI, "SPDXRef-1", "contributors",
+        "contributor 50")).isFalse();
+    assertThat(store.addValueToCollection(DOCUMENT_URI, "SPDXRef-1", "contributors",
+        "contributor 50")).isTrue();
+
+    contributors.remove("contributor 50");
+    contributors.add("contributor 50");
+    var values = new ArrayList<Object>();
+    store.listValues(DOCUMENT_URI, "SPDXRef-1", "contributors").forEachRemaining(values::add);
+    assertThat(values).isEqualTo(contributors);
+    assertThat(store.isCollectionProperty(DOCUMENT_URI, "SPDXRef-1", "contributors")).isTrue();
+
+    store.clearValueCollection(DOCUMENT_URI, "SPDXRef-1", "contributors");
+    assertThat(store.collectionSize(DOCUMENT_URI, "SPDXRef-1", "contributors")).isEqualTo(0);
+  }
+
+  @Test
+  public void listCreatedElementsOnly() throws InvalidSPDXAnalysisException {
+    var store = new CompactModelStore();
+    store.create(DOCUMENT_URI, "SPDXRef-1", SpdxConstants.CLASS_SPDX_FILE);
+    store.create(DOCUMENT_URI, "SPDXRef-2", SpdxConstants.CLASS_SPDX_FILE);
+    store.create(DOCUMENT_URI, "SPDXRef-3", SpdxConstants.CLASS_SPDX_CHECKSUM);
+    // References elements that are not created yet
+    store.addValueToCollection(DOCUMENT_URI, "SPDXRef-1", "related",
+        new TypedValue("SPDXRef-4", SpdxConstants.CLASS_SPDX_FILE));
+    store.delete(DOCUMENT_URI, "SPDXRef-2");
+
+    var files = new ArrayList<String>();
+    store.getAllItems(DOCUMENT_URI, SpdxConstants.CLASS_SPDX_FILE)
+        .forEach(item -> files.add(item.getId()));
+    assertThat(files).isEqualTo(List.of("SPDXRef-1"));
+    assertThat(store.exists(DOCUMENT_URI, "SPDXRef-4")).isFalse();
+
+    store.create(DOCUMENT_URI, "SPDXRef-4", SpdxConstants.CLASS_SPDX_FILE);
+    assertThat(store.getTypedValue(DOCUMENT_URI, "SPDXRef-4")).isPresent();
+    assertThat(store.getDocumentUris()).containsExactly(DOCUMENT_URI);
+  }
+}
@@ -0,0 +1,61 @@
+// SPDX-FileCopyrightText: TNG Technology Consulting GmbH
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package org.spdx.testbed.util.store;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the storage of strings in a memory-mapped temporary file.
+ */
+public class OffHeapStringsTest {
+
+  @Test
+  public void readStoredStringsAcrossChunks() {
+    var strings = new OffHeapStrings();
+    var large = "ä".repeat(10_000_000);
+    var addresses = new ArrayList<Long>();
+    for (var i = 0; i < 3; i++) {
+      addresses.add(strings.add(large + i));
+    }
+    var small = strings.add("small");
+
+    for (var i = 0; i < 3; i++) {
+      assertThat(strings.get(addresses.get(i))).isEqualTo(large + i);
+    }
+    assertThat(strings.get(small)).isEqualTo("small");
+    strings.clear();
+  }
+
+  @Test
+  public void internEqualStringsOnce() {
+    var strings = new OffHeapStrings();
+    var addresses = new ArrayList<Long>();
+    for (var i = 0; i < 100; i++) {
+      addresses.add(strings.intern("text" + i));
+    }
+    strings.add("text0");
+
+    for (var i = 0; i < 100; i++) {
+      assertThat(strings.intern("text" + i)).isEqualTo(addresses.get(i));
+      assertThat(strings.find("text" + i)).isEqualTo(addresses.get(i));
+    }
+    assertThat(strings.find("text100")).isEqualTo(OffHeapStrings.ABSENT);
+    strings.clear();
+  }
+
+  @Test
+  public void releaseStringsWhenCleared() {
+    var strings = new OffHeapStrings();
+    strings.intern("text");
+    strings.clear();
+
+    assertThat(strings.find("text")).isEqualTo(OffHeapStrings.ABSENT);
+    assertThat(strings.get(strings.intern("other"))).isEqualTo("other");
+    strings.clear();
+  }
+}